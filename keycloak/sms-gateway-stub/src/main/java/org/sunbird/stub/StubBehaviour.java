@@ -0,0 +1,151 @@
+package org.sunbird.stub;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How one stubbed endpoint misbehaves: the latency distribution of its answers, the fraction of requests that fail
+ * with a server error and the request rate above which requests are throttled.
+ *
+ * <p>Read from properties, where {@code <endpoint>.<key>} overrides the global {@code <key>}:
+ * <ul>
+ * <li>{@code latency} - {@code 0}, {@code fixed:<ms>}, {@code uniform:<min ms>:<max ms>},
+ * {@code exponential:<mean ms>} or {@code lognormal:<median ms>:<sigma>}</li>
+ * <li>{@code error_rate} - fraction of requests answered with a server error, 0 to 1</li>
+ * <li>{@code throttle_rate} - requests per second accepted before answering with a throttling error, 0 for no
+ * limit</li>
+ * </ul>
+ */
+public class StubBehaviour {
+
+    public enum Outcome {
+        SUCCESS, ERROR, THROTTLED
+    }
+
+    private final String latency;
+    private final double errorRate;
+    private final double throttleRate;
+
+    private final int distribution;
+    private final double first;
+    private final double second;
+
+    // Token bucket for the throttling, guarded by this
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    public StubBehaviour(String latency, double errorRate, double throttleRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("error_rate must be between 0 and 1: " + errorRate);
+        }
+        if (throttleRate < 0) {
+            throw new IllegalArgumentException("throttle_rate must not be negative: " + throttleRate);
+        }
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.tokens = throttleRate;
+
+        String[] parts = latency.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "0":
+                case "none":
+                    distribution = 0;
+                    first = 0;
+                    second = 0;
+                    break;
+                case "fixed":
+                    distribution = 1;
+                    first = Double.parseDouble(parts[1]);
+                    second = 0;
+                    break;
+                case "uniform":
+                    distribution = 2;
+                    first = Double.parseDouble(parts[1]);
+                    second = Double.parseDouble(parts[2]);
+                    break;
+                case "exponential":
+                    distribution = 3;
+                    first = Double.parseDouble(parts[1]);
+                    second = 0;
+                    break;
+                case "lognormal":
+                    distribution = 4;
+                    first = Math.log(Double.parseDouble(parts[1]));
+                    second = Double.parseDouble(parts[2]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown latency distribution: " + latency);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed latency distribution: " + latency, e);
+        }
+    }
+
+    public static StubBehaviour fromProperties(Properties properties, String endpoint) {
+        return new StubBehaviour(
+                property(properties, endpoint, "latency", "0"),
+                Double.parseDouble(property(properties, endpoint, "error_rate", "0")),
+                Double.parseDouble(property(properties, endpoint, "throttle_rate", "0")));
+    }
+
+    private static String property(Properties properties, String endpoint, String key, String defaultValue) {
+        return properties.getProperty(endpoint + "." + key, properties.getProperty(key, defaultValue));
+    }
+
+    /**
+     * Decides how the next request is answered. Throttling is checked first, like a gateway that rejects at the edge
+     * before doing any work.
+     */
+    public Outcome nextOutcome() {
+        if (throttleRate > 0 && !tryAcquire()) {
+            return Outcome.THROTTLED;
+        }
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            return Outcome.ERROR;
+        }
+        return Outcome.SUCCESS;
+    }
+
+    /**
+     * Draws the delay, in milliseconds, before the next answer is written.
+     */
+    public long nextLatencyMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double millis;
+        switch (distribution) {
+            case 1:
+                millis = first;
+                break;
+            case 2:
+                millis = first + random.nextDouble() * (second - first);
+                break;
+            case 3:
+                millis = -first * Math.log(1 - random.nextDouble());
+                break;
+            case 4:
+                millis = Math.exp(first + second * random.nextGaussian());
+                break;
+            default:
+                return 0;
+        }
+        return Math.max(0, Math.round(millis));
+    }
+
+    private synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(throttleRate, tokens + (now - refilledAt) * throttleRate / 1_000_000_000d);
+        refilledAt = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "latency=" + latency + ", error_rate=" + errorRate + ", throttle_rate=" + throttleRate;
+    }
+}
@@ -0,0 +1,335 @@
+package org.sunbird.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the gateways the forgot-password flow talks to, for benchmarks and soak tests on an isolated box:
+ * <ul>
+ * <li>Msg91 - GET {@code /api/sendhttp.php} and POST {@code /api/v2/sendsms}, point {@code sms_base_url} at
+ * {@link #getBaseUrl()}</li>
+ * <li>AWS SNS - the Query API {@code Publish} and {@code SetSMSAttributes} actions on {@code /sns/}, point
+ * {@code sms_sns_endpoint} at {@link #getSnsEndpoint()}</li>
+ * <li>Sunbird - POST {@code /user/v1/notification/email}, point the {@code sunbird_lms_base_url} environment
+ * variable at {@link #getLmsBaseUrl()}</li>
+ * </ul>
+ * Each endpoint has its own {@link StubBehaviour}. Answers are delayed on a scheduler rather than by sleeping in the
+ * request threads, so a handful of threads can hold thousands of slow requests in flight. GET {@code /stats} reports
+ * what each endpoint has answered so far.
+ */
+public class StubGateway implements AutoCloseable {
+
+    public static final String MSG91 = "msg91";
+    public static final String SNS = "sns";
+    public static final String NOTIFICATION = "notification";
+
+    private static final String SNS_NAMESPACE = "http://sns.amazonaws.com/doc/2010-03-31/";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+
+    /**
+     * Stub with no latency, errors or throttling on a free loopback port.
+     */
+    public StubGateway() throws IOException {
+        this(new Properties());
+    }
+
+    public StubGateway(Properties properties) throws IOException {
+        String host = properties.getProperty("host", "127.0.0.1");
+        int port = Integer.parseInt(properties.getProperty("port", "0"));
+        int threads = Integer.parseInt(properties.getProperty("threads", "8"));
+
+        // The JDK server writes headers and body separately, so with Nagle every answer would wait for a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(host, port), 1024);
+        executor = Executors.newFixedThreadPool(threads);
+        scheduler = Executors.newScheduledThreadPool(Math.max(1, threads / 2));
+        server.setExecutor(executor);
+
+        for (String name : new String[]{MSG91, SNS, NOTIFICATION}) {
+            endpoints.put(name, new Endpoint(StubBehaviour.fromProperties(properties, name)));
+        }
+
+        server.createContext("/api/sendhttp.php", new Handler(endpoints.get(MSG91)) {
+            @Override
+            Response answer(HttpExchange exchange, String body, StubBehaviour.Outcome outcome, String requestId) {
+                Map<String, String> parameters = parseForm(exchange.getRequestURI().getRawQuery());
+                if (!parameters.containsKey("authkey") || !parameters.containsKey("mobiles")
+                        || !parameters.containsKey("message")) {
+                    return new Response(400, "text/plain", "Missing parameters");
+                }
+                return msg91Answer(outcome, requestId);
+            }
+        });
+        server.createContext("/api/v2/sendsms", new Handler(endpoints.get(MSG91)) {
+            @Override
+            Response answer(HttpExchange exchange, String body, StubBehaviour.Outcome outcome, String requestId) {
+                if (!"POST".equals(exchange.getRequestMethod()) || !body.contains("\"sms\"")) {
+                    return new Response(400, "application/json", "{\"message\":\"Invalid request\",\"type\":\"error\"}");
+                }
+                return msg91Answer(outcome, "{\"message\":\"" + requestId + "\",\"type\":\"success\"}");
+            }
+        });
+        server.createContext("/sns/", new Handler(endpoints.get(SNS)) {
+            @Override
+            Response answer(HttpExchange exchange, String body, StubBehaviour.Outcome outcome, String requestId) {
+                String action = parseForm(body).get("Action");
+                if (outcome == StubBehaviour.Outcome.THROTTLED) {
+                    return snsError(400, "Sender", "Throttling", "Rate exceeded", requestId);
+                } else if (outcome == StubBehaviour.Outcome.ERROR) {
+                    return snsError(500, "Receiver", "InternalError", "Internal error", requestId);
+                } else if ("Publish".equals(action)) {
+                    return new Response(200, "text/xml", "<PublishResponse xmlns=\"" + SNS_NAMESPACE + "\">"
+                            + "<PublishResult><MessageId>" + requestId + "</MessageId></PublishResult>"
+                            + "<ResponseMetadata><RequestId>" + requestId + "</RequestId></ResponseMetadata>"
+                            + "</PublishResponse>");
+                } else if ("SetSMSAttributes".equals(action)) {
+                    return new Response(200, "text/xml", "<SetSMSAttributesResponse xmlns=\"" + SNS_NAMESPACE + "\">"
+                            + "<SetSMSAttributesResult/>"
+                            + "<ResponseMetadata><RequestId>" + requestId + "</RequestId></ResponseMetadata>"
+                            + "</SetSMSAttributesResponse>");
+                }
+                return snsError(400, "Sender", "InvalidAction", "Unsupported action: " + action, requestId);
+            }
+        });
+        server.createContext("/user/v1/notification/email", new Handler(endpoints.get(NOTIFICATION)) {
+            @Override
+            Response answer(HttpExchange exchange, String body, StubBehaviour.Outcome outcome, String requestId) {
+                if (outcome == StubBehaviour.Outcome.THROTTLED) {
+                    return sunbirdAnswer(429, "TOO_MANY_REQUESTS", "failed", requestId);
+                } else if (outcome == StubBehaviour.Outcome.ERROR) {
+                    return sunbirdAnswer(500, "SERVER_ERROR", "failed", requestId);
+                }
+                return sunbirdAnswer(200, "OK", "successful", requestId);
+            }
+        });
+        server.createContext("/stats", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                StringBuilder json = new StringBuilder("{");
+                for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+                    Endpoint endpoint = entry.getValue();
+                    if (json.length() > 1) {
+                        json.append(',');
+                    }
+                    json.append('"').append(entry.getKey()).append("\":{\"requests\":").append(endpoint.requests.get())
+                            .append(",\"errors\":").append(endpoint.errors.get())
+                            .append(",\"throttled\":").append(endpoint.throttled.get()).append('}');
+                }
+                write(exchange, new Response(200, "application/json", json.append('}').toString()));
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Base URL of the stub, ending with '/' as {@code sms_base_url} expects.
+     */
+    public String getBaseUrl() {
+        return getLmsBaseUrl() + "/";
+    }
+
+    /**
+     * Base URL of the stub without the trailing '/', as {@code sunbird_lms_base_url} expects since the notification
+     * path it is joined with starts with '/'.
+     */
+    public String getLmsBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public String getSnsEndpoint() {
+        return getBaseUrl() + "sns/";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs the stub until killed. Takes an optional properties file, system properties override its entries:
+     * {@code java -Dport=8089 -Dmsg91.latency=lognormal:120:0.6 -jar sms-gateway-stub.jar stub.properties}
+     */
+    public static void main(String[] args) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream defaults = StubGateway.class.getResourceAsStream("/stub-gateway.properties")) {
+            if (defaults != null) {
+                properties.load(defaults);
+            }
+        }
+        if (args.length > 0) {
+            try (InputStream in = new FileInputStream(args[0])) {
+                properties.load(in);
+            }
+        }
+        properties.putAll(System.getProperties());
+
+        final StubGateway gateway = new StubGateway(properties);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                gateway.close();
+            }
+        }));
+
+        System.out.println("Stub gateway listening on " + gateway.getBaseUrl());
+        System.out.println("  sms_base_url=" + gateway.getBaseUrl());
+        System.out.println("  sms_sns_endpoint=" + gateway.getSnsEndpoint());
+        System.out.println("  sunbird_lms_base_url=" + gateway.getLmsBaseUrl());
+        for (Map.Entry<String, Endpoint> entry : gateway.endpoints.entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue().behaviour);
+        }
+    }
+
+    private static Response msg91Answer(StubBehaviour.Outcome outcome, String body) {
+        if (outcome == StubBehaviour.Outcome.THROTTLED) {
+            return new Response(429, "application/json", "{\"message\":\"Too many requests\",\"type\":\"error\"}");
+        } else if (outcome == StubBehaviour.Outcome.ERROR) {
+            return new Response(500, "application/json", "{\"message\":\"Internal error\",\"type\":\"error\"}");
+        }
+        return new Response(200, body.startsWith("{") ? "application/json" : "text/plain", body);
+    }
+
+    private static Response snsError(int status, String type, String code, String message, String requestId) {
+        return new Response(status, "text/xml", "<ErrorResponse xmlns=\"" + SNS_NAMESPACE + "\">"
+                + "<Error><Type>" + type + "</Type><Code>" + code + "</Code><Message>" + message + "</Message></Error>"
+                + "<RequestId>" + requestId + "</RequestId></ErrorResponse>");
+    }
+
+    private static Response sunbirdAnswer(int status, String responseCode, String paramsStatus, String requestId) {
+        return new Response(status, "application/json", "{\"id\":\"api.notification.email\",\"ver\":\"v1\",\"ts\":\""
+                + System.currentTimeMillis() + "\",\"params\":{\"resmsgid\":\"" + requestId + "\",\"status\":\""
+                + paramsStatus + "\"},\"responseCode\":\"" + responseCode + "\",\"result\":{\"response\":\""
+                + (status == 200 ? "SUCCESS" : "FAILURE") + "\"}}");
+    }
+
+    private static Map<String, String> parseForm(String form) {
+        Map<String, String> parameters = new HashMap<>();
+        if (form == null || form.isEmpty()) {
+            return parameters;
+        }
+        try {
+            for (String pair : form.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // Treated as missing parameters
+        }
+        return parameters;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void write(HttpExchange exchange, Response response) {
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", response.contentType + "; charset=UTF-8");
+            exchange.sendResponseHeaders(response.status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            // The client went away while the answer was delayed
+            exchange.close();
+        }
+    }
+
+    private static class Endpoint {
+        final StubBehaviour behaviour;
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong throttled = new AtomicLong();
+
+        Endpoint(StubBehaviour behaviour) {
+            this.behaviour = behaviour;
+        }
+    }
+
+    private static class Response {
+        final int status;
+        final String contentType;
+        final String body;
+
+        Response(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    private abstract class Handler implements HttpHandler {
+
+        private final Endpoint endpoint;
+
+        Handler(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        abstract Response answer(HttpExchange exchange, String body, StubBehaviour.Outcome outcome, String requestId);
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            String body = read(exchange.getRequestBody());
+            StubBehaviour.Outcome outcome = endpoint.behaviour.nextOutcome();
+            endpoint.requests.incrementAndGet();
+            if (outcome == StubBehaviour.Outcome.ERROR) {
+                endpoint.errors.incrementAndGet();
+            } else if (outcome == StubBehaviour.Outcome.THROTTLED) {
+                endpoint.throttled.incrementAndGet();
+            }
+
+            final Response response = answer(exchange, body, outcome, UUID.randomUUID().toString());
+            // Throttling is answered straight away, like a gateway rejecting at the edge
+            long delay = outcome == StubBehaviour.Outcome.THROTTLED ? 0 : endpoint.behaviour.nextLatencyMillis();
+            if (delay == 0) {
+                write(exchange, response);
+                return;
+            }
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    write(exchange, response);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
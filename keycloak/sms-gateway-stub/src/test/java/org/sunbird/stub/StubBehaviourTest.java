@@ -0,0 +1,58 @@
+package org.sunbird.stub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+public class StubBehaviourTest {
+
+    @Test
+    public void testEndpointOverridesGlobalProperty() {
+        Properties properties = new Properties();
+        properties.setProperty("latency", "fixed:10");
+        properties.setProperty("sns.latency", "fixed:20");
+
+        assertEquals(10, StubBehaviour.fromProperties(properties, StubGateway.MSG91).nextLatencyMillis());
+        assertEquals(20, StubBehaviour.fromProperties(properties, StubGateway.SNS).nextLatencyMillis());
+    }
+
+    @Test
+    public void testLatencyDistributions() {
+        assertEquals(0, new StubBehaviour("0", 0, 0).nextLatencyMillis());
+        for (int i = 0; i < 1000; i++) {
+            long uniform = new StubBehaviour("uniform:40:120", 0, 0).nextLatencyMillis();
+            assertTrue(uniform >= 40 && uniform <= 120);
+            assertTrue(new StubBehaviour("exponential:50", 0, 0).nextLatencyMillis() >= 0);
+            assertTrue(new StubBehaviour("lognormal:150:0.5", 0, 0).nextLatencyMillis() >= 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedLatency() {
+        new StubBehaviour("uniform:40", 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownLatency() {
+        new StubBehaviour("pareto:1", 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testErrorRateAboveOne() {
+        new StubBehaviour("0", 1.5, 0);
+    }
+
+    @Test
+    public void testOutcomes() {
+        assertEquals(StubBehaviour.Outcome.SUCCESS, new StubBehaviour("0", 0, 0).nextOutcome());
+        assertEquals(StubBehaviour.Outcome.ERROR, new StubBehaviour("0", 1, 0).nextOutcome());
+
+        StubBehaviour throttled = new StubBehaviour("0", 1, 2);
+        assertEquals(StubBehaviour.Outcome.ERROR, throttled.nextOutcome());
+        assertEquals(StubBehaviour.Outcome.ERROR, throttled.nextOutcome());
+        assertEquals(StubBehaviour.Outcome.THROTTLED, throttled.nextOutcome());
+    }
+}
@@ -0,0 +1,146 @@
+package org.sunbird.stub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+public class StubGatewayTest {
+
+    private StubGateway gateway;
+
+    @After
+    public void tearDown() {
+        if (gateway != null) {
+            gateway.close();
+        }
+    }
+
+    @Test
+    public void testBaseUrls() throws IOException {
+        gateway = new StubGateway();
+        assertTrue(gateway.getBaseUrl().endsWith("/"));
+        assertFalse(gateway.getLmsBaseUrl().endsWith("/"));
+        assertEquals(gateway.getLmsBaseUrl() + "/", gateway.getBaseUrl());
+        assertEquals(gateway.getBaseUrl() + "sns/", gateway.getSnsEndpoint());
+    }
+
+    @Test
+    public void testNotificationUnderLmsBaseUrl() throws IOException {
+        gateway = new StubGateway();
+        // Joined the way the authenticator joins sunbird_lms_base_url and the notification path
+        Answer answer = request("POST", gateway.getLmsBaseUrl() + "/user/v1/notification/email", "{\"request\":{}}");
+        assertEquals(200, answer.status);
+        assertTrue(answer.body.contains("\"response\":\"SUCCESS\""));
+    }
+
+    @Test
+    public void testMsg91Get() throws IOException {
+        gateway = new StubGateway();
+        Answer answer = request("GET", gateway.getBaseUrl()
+                + "api/sendhttp.php?sender=SENDER&route=4&mobiles=919999999999&authkey=key&country=91&message=OTP+1234", null);
+        assertEquals(200, answer.status);
+        assertEquals(36, answer.body.length());
+
+        answer = request("GET", gateway.getBaseUrl() + "api/sendhttp.php?mobiles=919999999999", null);
+        assertEquals(400, answer.status);
+    }
+
+    @Test
+    public void testMsg91Post() throws IOException {
+        gateway = new StubGateway();
+        Answer answer = request("POST", gateway.getBaseUrl() + "api/v2/sendsms",
+                "{\"sender\":\"SENDER\",\"route\":\"4\",\"country\":\"91\",\"sms\":[{\"message\":\"OTP\",\"to\":[\"919999999999\"]}]}");
+        assertEquals(200, answer.status);
+        assertTrue(answer.body.endsWith("\"type\":\"success\"}"));
+
+        answer = request("POST", gateway.getBaseUrl() + "api/v2/sendsms", "{}");
+        assertEquals(400, answer.status);
+        assertTrue(answer.body.contains("\"type\":\"error\""));
+    }
+
+    @Test
+    public void testSnsActions() throws IOException {
+        gateway = new StubGateway();
+        Answer answer = request("POST", gateway.getSnsEndpoint(), "Action=Publish&PhoneNumber=%2B919999999999&Message=OTP");
+        assertEquals(200, answer.status);
+        assertTrue(answer.body.contains("<MessageId>"));
+
+        answer = request("POST", gateway.getSnsEndpoint(), "Action=SetSMSAttributes");
+        assertEquals(200, answer.status);
+
+        answer = request("POST", gateway.getSnsEndpoint(), "Action=CreateTopic");
+        assertEquals(400, answer.status);
+        assertTrue(answer.body.contains("<Code>InvalidAction</Code>"));
+    }
+
+    @Test
+    public void testErrorsAndThrottlingAreCounted() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("msg91.error_rate", "1");
+        properties.setProperty("notification.throttle_rate", "1");
+        gateway = new StubGateway(properties);
+
+        assertEquals(500, request("POST", gateway.getBaseUrl() + "api/v2/sendsms", "{\"sms\":[]}").status);
+        assertEquals(200, request("POST", gateway.getLmsBaseUrl() + "/user/v1/notification/email", "{}").status);
+        assertEquals(429, request("POST", gateway.getLmsBaseUrl() + "/user/v1/notification/email", "{}").status);
+
+        String stats = request("GET", gateway.getBaseUrl() + "stats", null).body;
+        assertTrue(stats, stats.contains("\"msg91\":{\"requests\":1,\"errors\":1,\"throttled\":0}"));
+        assertTrue(stats, stats.contains("\"notification\":{\"requests\":2,\"errors\":0,\"throttled\":1}"));
+        assertTrue(stats, stats.contains("\"sns\":{\"requests\":0,\"errors\":0,\"throttled\":0}"));
+    }
+
+    @Test
+    public void testLatencyDelaysAnswer() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("latency", "fixed:200");
+        gateway = new StubGateway(properties);
+
+        long start = System.nanoTime();
+        assertEquals(200, request("POST", gateway.getLmsBaseUrl() + "/user/v1/notification/email", "{}").status);
+        assertTrue((System.nanoTime() - start) / 1000000 >= 190);
+    }
+
+    private static Answer request(String method, String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+        in.close();
+        return new Answer(status, new String(content.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static final class Answer {
+        final int status;
+        final String body;
+
+        Answer(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.sunbird.benchmarks;
+
+import org.keycloak.authentication.AuthenticationFlowContext;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.UserProvider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal Keycloak model stand-ins built from dynamic proxies, answering every lookup with the same user. Enough
+ * to drive {@code SunbirdModelUtils} without a running Keycloak.
+ */
+public final class Stubs {
+
+    private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS = new HashMap<>();
+
+    static {
+        PRIMITIVE_DEFAULTS.put(boolean.class, false);
+        PRIMITIVE_DEFAULTS.put(byte.class, (byte) 0);
+        PRIMITIVE_DEFAULTS.put(short.class, (short) 0);
+        PRIMITIVE_DEFAULTS.put(char.class, (char) 0);
+        PRIMITIVE_DEFAULTS.put(int.class, 0);
+        PRIMITIVE_DEFAULTS.put(long.class, 0L);
+        PRIMITIVE_DEFAULTS.put(float.class, 0f);
+        PRIMITIVE_DEFAULTS.put(double.class, 0d);
+    }
+
+    private Stubs() {}
+
+    public static AuthenticationFlowContext authenticationFlowContext() {
+        final UserModel user = stub(UserModel.class, null);
+        final RealmModel realm = stub(RealmModel.class, null);
+        final UserProvider users = stub(UserProvider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("searchForUserByUserAttribute")) {
+                    return Collections.singletonList(user);
+                }
+                if (method.getName().startsWith("getUserBy")) {
+                    return user;
+                }
+                return defaultValue(method);
+            }
+        });
+        final KeycloakSession session = stub(KeycloakSession.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getName().equals("users") ? users : defaultValue(method);
+            }
+        });
+        return stub(AuthenticationFlowContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getSession")) {
+                    return session;
+                }
+                if (method.getName().equals("getRealm")) {
+                    return realm;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        if (handler == null) {
+            handler = new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return defaultValue(method);
+                }
+            };
+        }
+        return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private static Object defaultValue(Method method) {
+        return PRIMITIVE_DEFAULTS.get(method.getReturnType());
+    }
+}
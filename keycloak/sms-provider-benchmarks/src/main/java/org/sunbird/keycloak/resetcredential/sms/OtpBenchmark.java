@@ -0,0 +1,54 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import org.keycloak.models.AuthenticatorConfigModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OTP generation and SMS text rendering, done once per reset-credential request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OtpBenchmark {
+
+    @Param({"4", "6", "8"})
+    public long nrOfDigits;
+
+    private AuthenticatorConfigModel config;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT,
+                "%sms-code% is your OTP to reset the password for %phonenumber%, it is valid for 10 minutes.");
+        config = new AuthenticatorConfigModel();
+        config.setConfig(configuration);
+    }
+
+    @Benchmark
+    public String getSmsCode() {
+        return KeycloakSmsAuthenticatorUtil.getSmsCode(nrOfDigits);
+    }
+
+    @Benchmark
+    public String createMessage() {
+        return KeycloakSmsAuthenticatorUtil.createMessage("84736251", "919999999999", config);
+    }
+}
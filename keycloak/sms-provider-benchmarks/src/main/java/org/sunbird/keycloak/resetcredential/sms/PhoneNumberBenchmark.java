@@ -0,0 +1,51 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sunbird.utils.PhoneNumber;
+import org.sunbird.utils.PhoneNumberNormalizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Country code defaulting, normalization and validation of the number the OTP is sent to. The realm is null, so
+ * the default country code applies as for a realm without {@code sms-auth.default.country.code}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhoneNumberBenchmark {
+
+    @Param({"09999999999", "+919999999999", "9999999999", "(999)999-9999"})
+    public String mobileNumber;
+
+    /**
+     * Replaces setDefaultCountryCodeIfZero: the number the authenticator sends to.
+     */
+    @Benchmark
+    public String setDefaultCountryCode() {
+        PhoneNumber phoneNumber = KeycloakSmsAuthenticatorUtil.normalizePhoneNumber(mobileNumber, null);
+        return phoneNumber != null ? phoneNumber.getE164() : null;
+    }
+
+    @Benchmark
+    public PhoneNumber normalize() {
+        return PhoneNumberNormalizer.normalize(mobileNumber, KeycloakSmsAuthenticatorConstants.COUNTRY_CODE);
+    }
+
+    @Benchmark
+    public boolean validateTelephoneNumber() {
+        return KeycloakSmsAuthenticatorUtil.validateTelephoneNumber(mobileNumber, null);
+    }
+}
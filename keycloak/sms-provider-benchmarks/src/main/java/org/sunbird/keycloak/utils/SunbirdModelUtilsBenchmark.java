@@ -0,0 +1,46 @@
+package org.sunbird.keycloak.utils;
+
+import org.keycloak.authentication.AuthenticationFlowContext;
+import org.keycloak.models.UserModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sunbird.benchmarks.Stubs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classification of the login / reset identifier as phone number, email or user name. The user lookups are
+ * answered by in-memory stubs, so the score is dominated by the classification itself.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SunbirdModelUtilsBenchmark {
+
+    @Param({"9999999999", "user@example.com", "some.user"})
+    public String username;
+
+    private AuthenticationFlowContext context;
+
+    @Setup
+    public void setUp() {
+        context = Stubs.authenticationFlowContext();
+    }
+
+    @Benchmark
+    public UserModel getUserByNameEmailOrPhone() {
+        return SunbirdModelUtils.getUserByNameEmailOrPhone(context, username);
+    }
+}
@@ -0,0 +1,57 @@
+package org.sunbird.sms.msg91;
+
+import org.apache.http.client.methods.HttpPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sunbird.utils.JsonUtil;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the body of a single-recipient Msg91 POST: the object model serialized with Gson against the
+ * pre-encoded {@link Msg91PayloadEncoder}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Msg91PayloadBenchmark {
+
+    private static final String TEXT = "84736251 is your OTP to reset the password for 919999999999, it is valid for 10 minutes.";
+    private static final String MOBILE_NUMBER = "+919999999999";
+
+    private Msg91PayloadEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        encoder = new Msg91PayloadEncoder("http://api.msg91.com/api/v2/sendsms", "authkey", "SUNBRD", "4", "91");
+    }
+
+    @Benchmark
+    public byte[] gson() throws UnsupportedEncodingException {
+        List<String> mobileNumbers = new ArrayList<>();
+        mobileNumbers.add(MOBILE_NUMBER.substring(1));
+        List<Sms> smsList = new ArrayList<>();
+        smsList.add(new Sms(URLEncoder.encode(TEXT, "UTF-8"), mobileNumbers));
+        return JsonUtil.toJson(new ProviderDetails("SUNBRD", "4", "91", smsList)).getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public HttpPost encoder() {
+        return encoder.createRequest(TEXT, MOBILE_NUMBER);
+    }
+}
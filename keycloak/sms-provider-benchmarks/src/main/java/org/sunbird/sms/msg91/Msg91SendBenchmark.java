@@ -0,0 +1,68 @@
+package org.sunbird.sms.msg91;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.stub.StubGateway;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link Msg91SmsProvider#send(String, String)} against an in-process {@link StubGateway} with no latency.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class Msg91SendBenchmark {
+
+    @Param({"GET", "POST"})
+    public String method;
+
+    private StubGateway gateway;
+    private Msg91SmsProvider provider;
+
+    @Setup
+    public void setUp() throws IOException {
+        gateway = new StubGateway();
+
+        Map<String, String> configurations = new HashMap<>();
+        configurations.put(SmsConfigurationConstants.CONF_SMS_BASE_URL, gateway.getBaseUrl());
+        configurations.put(SmsConfigurationConstants.CONF_AUTH_KEY, "authkey");
+        configurations.put(SmsConfigurationConstants.CONF_SMS_SENDER, "SUNBRD");
+        configurations.put(SmsConfigurationConstants.CONF_SMS_ROUTE, "4");
+        configurations.put(SmsConfigurationConstants.CONF_SMS_COUNTRY, "91");
+        configurations.put(SmsConfigurationConstants.CONF_SMS_METHOD_TYPE, method);
+
+        provider = new Msg91SmsProvider();
+        provider.configure(configurations);
+    }
+
+    @TearDown
+    public void tearDown() {
+        provider.close();
+        gateway.close();
+    }
+
+    @Benchmark
+    public boolean send() {
+        return provider.send("+919999999999", "84736251 is your OTP to reset the password, it is valid for 10 minutes.");
+    }
+}
@@ -1,20 +1,35 @@
 package org.sunbird.aws.snsclient;
 
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
+import com.amazonaws.services.sns.AmazonSNSAsyncClient;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sns.model.SetSMSAttributesRequest;
+import com.amazonaws.services.sns.model.SetSMSAttributesResult;
+import org.jboss.logging.Logger;
 
 /**
  * Created by nickpack on 09/08/2017.
  */
 // TODO(shriharshs): Create an interface for the SMS client factories
 public class SnsClientFactory {
+    private static Logger logger = Logger.getLogger(SnsClientFactory.class);
+
     private static AmazonSNSClient snsClient = null;
+    private static String snsClientKey = null;
 
-    public static AmazonSNSClient getSnsClient(String clientToken, String clientSecret) {
-        if (null == snsClient) {
+    /**
+     * Returns the shared client, replacing it once it is asked for with other credentials so that rotated
+     * credentials take effect.
+     */
+    public static synchronized AmazonSNSClient getSnsClient(String clientToken, String clientSecret) {
+        String key = clientToken + "\n" + clientSecret;
+        if (null == snsClient || !key.equals(snsClientKey)) {
+            if (null != snsClient) {
+                snsClient.shutdown();
+            }
             BasicAWSCredentials CREDENTIALS = new BasicAWSCredentials(clientToken, clientSecret);
             snsClient = new AmazonSNSClient(CREDENTIALS).withRegion(Region.getRegion(Regions.AP_SOUTHEAST_1));
 
@@ -22,7 +37,37 @@ public class SnsClientFactory {
                     .addAttributesEntry("DefaultSMSType", "Transactional");
 
             snsClient.setSMSAttributes(setRequest);
+            snsClientKey = key;
         }
         return snsClient;
     }
+
+    /**
+     * Creates a new client, owned and shut down by the caller. The default SMS type is set in the background, so
+     * creating the client makes no call to SNS and a failure to set it only leaves the account default in place.
+     *
+     * @param endpoint overrides the regional SNS endpoint, e.g. to publish to a stub gateway in load tests
+     */
+    public static AmazonSNSAsyncClient createSnsAsyncClient(String clientToken, String clientSecret, String endpoint) {
+        BasicAWSCredentials CREDENTIALS = new BasicAWSCredentials(clientToken, clientSecret);
+        AmazonSNSAsyncClient snsAsyncClient = new AmazonSNSAsyncClient(CREDENTIALS).withRegion(Region.getRegion(Regions.AP_SOUTHEAST_1));
+        if (null != endpoint && !endpoint.isEmpty()) {
+            snsAsyncClient.setEndpoint(endpoint);
+        }
+
+        SetSMSAttributesRequest setRequest = new SetSMSAttributesRequest()
+                .addAttributesEntry("DefaultSMSType", "Transactional");
+
+        snsAsyncClient.setSMSAttributesAsync(setRequest, new AsyncHandler<SetSMSAttributesRequest, SetSMSAttributesResult>() {
+            @Override
+            public void onError(Exception e) {
+                logger.error("SnsClientFactory - failed to set the default SMS type: " + e.getMessage());
+            }
+
+            @Override
+            public void onSuccess(SetSMSAttributesRequest request, SetSMSAttributesResult result) {
+            }
+        });
+        return snsAsyncClient;
+    }
 }
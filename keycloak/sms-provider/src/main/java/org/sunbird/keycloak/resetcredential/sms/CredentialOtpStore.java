@@ -0,0 +1,97 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import org.keycloak.cluster.ClusterProvider;
+import org.keycloak.cluster.ExecutionResult;
+import org.keycloak.credential.CredentialModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserCredentialModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.utils.KeycloakModelUtils;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Keeps OTPs as user credentials in the database, for deployments without the clustered {@code otp} cache. The
+ * code, its expiry and the attempts are packed into the value of one credential, so an OTP is one write and one
+ * read.
+ */
+public class CredentialOtpStore implements OtpStore {
+
+    private static final String ATTEMPT_TASK_PREFIX = "sms-auth.code.attempt::";
+    private static final int ATTEMPT_TASK_TIMEOUT = 30; // s
+
+    private final KeycloakSession session;
+
+    public CredentialOtpStore(KeycloakSession session) {
+        this.session = session;
+    }
+
+    // When the code is validated on another node (in a clustered environment) the other nodes have access to it's values too.
+    @Override
+    public void put(RealmModel realm, UserModel user, StoredOtp otp) {
+        UserCredentialModel credentials = new UserCredentialModel();
+        credentials.setType(KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
+        credentials.setValue(otp.encode());
+        session.userCredentialManager().updateCredential(realm, user, credentials);
+    }
+
+    @Override
+    public StoredOtp get(RealmModel realm, UserModel user) {
+        List<CredentialModel> codeCreds = session.userCredentialManager().getStoredCredentialsByType(realm, user,
+                KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
+        if (codeCreds == null || codeCreds.isEmpty()) {
+            return null;
+        }
+        return StoredOtp.decode(codeCreds.get(0).getValue());
+    }
+
+    /**
+     * The credential manager has no compare and swap, so the attempt is counted under a cluster wide lock and
+     * committed in its own transaction before the lock is released. The lock is tried once, a request that finds
+     * another attempt of the user being counted fails instead of waiting for it.
+     */
+    @Override
+    public StoredOtp addAttempt(RealmModel realm, UserModel user) {
+        final String realmId = realm.getId();
+        final String userId = user.getId();
+        Callable<StoredOtp> count = new Callable<StoredOtp>() {
+            @Override
+            public StoredOtp call() {
+                final StoredOtp[] counted = new StoredOtp[1];
+                KeycloakModelUtils.runJobInTransaction(session.getKeycloakSessionFactory(), new KeycloakSessionTask() {
+                    @Override
+                    public void run(KeycloakSession jobSession) {
+                        RealmModel jobRealm = jobSession.realms().getRealm(realmId);
+                        UserModel jobUser = jobRealm != null ? jobSession.users().getUserById(userId, jobRealm) : null;
+                        if (jobUser == null) {
+                            return;
+                        }
+                        CredentialOtpStore store = new CredentialOtpStore(jobSession);
+                        StoredOtp otp = store.get(jobRealm, jobUser);
+                        if (otp != null) {
+                            counted[0] = otp.withAttempt();
+                            store.put(jobRealm, jobUser, counted[0]);
+                        }
+                    }
+                });
+                return counted[0];
+            }
+        };
+
+        ExecutionResult<StoredOtp> result = session.getProvider(ClusterProvider.class).executeIfNotExecuted(
+                ATTEMPT_TASK_PREFIX + realmId + "/" + userId, ATTEMPT_TASK_TIMEOUT, count);
+        if (!result.isExecuted()) {
+            throw new OtpStoreException("Another attempt of user " + userId + " is being counted");
+        }
+        return result.getResult();
+    }
+
+    @Override
+    public void remove(RealmModel realm, UserModel user) {
+        session.userCredentialManager().disableCredentialType(realm, user,
+                KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
+    }
+}
@@ -0,0 +1,91 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * Derives OTPs from HMAC-SHA256(realm key, user id, authentication session id, time step), truncated to the
+ * configured number of digits as in RFC 4226. A code is checked by recomputing it for the current and the previous
+ * steps of the window, so nothing has to be stored when it is issued.
+ */
+public class HmacOtpGenerator {
+
+    public static final String ALGORITHM = "HmacSHA256";
+
+    // 63 bits of the HMAC are used, enough for 18 digits
+    public static final int MAX_DIGITS = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private HmacOtpGenerator() {
+    }
+
+    public static long getStep(long timeMillis, long stepMillis) {
+        return timeMillis / stepMillis;
+    }
+
+    public static String generate(SecretKey key, String userId, String sessionId, long step, int digits) {
+        if (digits < 1 || digits > MAX_DIGITS) {
+            throw new IllegalArgumentException("Number of digits must be between 1 and " + MAX_DIGITS);
+        }
+        byte[] hmac = hmac(key, userId, sessionId, step);
+        int offset = hmac[hmac.length - 1] & 0x0f;
+        long truncated = 0;
+        for (int i = 0; i < 8; i++) {
+            truncated = (truncated << 8) | (hmac[offset + i] & 0xff);
+        }
+        truncated &= Long.MAX_VALUE;
+
+        String code = Long.toString(truncated % POWERS_OF_TEN[digits]);
+        StringBuilder padded = new StringBuilder(digits);
+        for (int i = code.length(); i < digits; i++) {
+            padded.append('0');
+        }
+        return padded.append(code).toString();
+    }
+
+    /**
+     * Whether the code was generated for the step or one of the {@code window} steps before it.
+     */
+    public static boolean verify(SecretKey key, String userId, String sessionId, String code, long step, int window,
+                                 int digits) {
+        if (code == null || code.length() != digits) {
+            return false;
+        }
+        byte[] entered = code.getBytes(StandardCharsets.US_ASCII);
+        boolean valid = false;
+        for (long candidate = step; candidate >= step - window; candidate--) {
+            // Constant time, and no early exit which would tell how old the code is
+            valid |= MessageDigest.isEqual(entered,
+                    generate(key, userId, sessionId, candidate, digits).getBytes(StandardCharsets.US_ASCII));
+        }
+        return valid;
+    }
+
+    private static byte[] hmac(SecretKey key, String userId, String sessionId, long step) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(userId.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(sessionId.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                mac.update((byte) (step >>> shift));
+            }
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot compute " + ALGORITHM, e);
+        }
+    }
+}
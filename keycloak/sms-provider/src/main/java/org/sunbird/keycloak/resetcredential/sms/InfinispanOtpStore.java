@@ -0,0 +1,68 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps OTPs in the clustered {@code otp} cache of the {@code keycloak} cache container, so that issuing one does
+ * not touch the database or the user cache, any node can validate it and Infinispan drops it once it expired.
+ */
+public class InfinispanOtpStore implements OtpStore {
+
+    public static final String CACHE_NAME = "otp";
+
+    private final Cache<String, String> cache;
+
+    public InfinispanOtpStore(Cache<String, String> cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void put(RealmModel realm, UserModel user, StoredOtp otp) {
+        long lifespan = otp.getExpiresAt() - System.currentTimeMillis();
+        if (lifespan <= 0) {
+            remove(realm, user);
+            return;
+        }
+        // The replaced OTP is not needed, which saves fetching it from its owner
+        cache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
+                .put(getKey(realm, user), otp.encode(), lifespan, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public StoredOtp get(RealmModel realm, UserModel user) {
+        StoredOtp otp = StoredOtp.decode(cache.get(getKey(realm, user)));
+        return otp != null && !otp.isExpired(System.currentTimeMillis()) ? otp : null;
+    }
+
+    @Override
+    public StoredOtp addAttempt(RealmModel realm, UserModel user) {
+        String key = getKey(realm, user);
+        // Compare and swap, retried until no other attempt or new OTP was written in between
+        while (true) {
+            String value = cache.get(key);
+            StoredOtp otp = StoredOtp.decode(value);
+            long lifespan = otp != null ? otp.getExpiresAt() - System.currentTimeMillis() : 0;
+            if (lifespan <= 0) {
+                return null;
+            }
+            StoredOtp counted = otp.withAttempt();
+            if (cache.replace(key, value, counted.encode(), lifespan, TimeUnit.MILLISECONDS)) {
+                return counted;
+            }
+        }
+    }
+
+    @Override
+    public void remove(RealmModel realm, UserModel user) {
+        cache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(getKey(realm, user));
+    }
+
+    private static String getKey(RealmModel realm, UserModel user) {
+        return realm.getId() + "/" + user.getId();
+    }
+}
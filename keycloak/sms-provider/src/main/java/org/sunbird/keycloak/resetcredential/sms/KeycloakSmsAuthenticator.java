@@ -6,22 +6,26 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.crypto.SecretKey;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.jboss.logging.Logger;
 import org.keycloak.authentication.AuthenticationFlowContext;
 import org.keycloak.authentication.AuthenticationFlowError;
 import org.keycloak.authentication.Authenticator;
-import org.keycloak.credential.CredentialModel;
 import org.keycloak.models.AuthenticationExecutionModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
-import org.keycloak.models.UserCredentialModel;
 import org.keycloak.models.UserModel;
+import org.keycloak.sessions.AuthenticationSessionModel;
 import org.sunbird.keycloak.utils.Constants;
-import org.sunbird.keycloak.utils.HttpClient;
+import org.sunbird.keycloak.utils.EmailNotificationDispatcher;
+import org.sunbird.sms.metrics.SmsMetrics;
 
 /**
  * Created by joris on 11/11/2016.
@@ -32,10 +36,15 @@ public class KeycloakSmsAuthenticator implements Authenticator {
 
     public static final String CREDENTIAL_TYPE = "sms_validation";
 
+    private static final OtpIssueCoalescer otpIssues = new OtpIssueCoalescer();
+    private static final OtpDispatcher otpDispatcher = new OtpDispatcher(16, 256);
+
     private enum CODE_STATUS {
         VALID,
         INVALID,
-        EXPIRED
+        EXPIRED,
+        // The code could not be checked, e.g. the OTP store was busy
+        UNAVAILABLE
     }
 
 
@@ -56,14 +65,38 @@ public class KeycloakSmsAuthenticator implements Authenticator {
         }
 
         if (StringUtils.isNotBlank(mobileNumber) || StringUtils.isNotBlank(userEmail)) {
-          Map<String, Object> otpResponse = generateOTP(context);
-
-          if (StringUtils.isNotBlank(mobileNumber)) {
-            sendSMS(otpResponse, context, mobileNumber);
+          // Double submits and reloads reuse the OTP just sent instead of sending another one
+          long resendWindow = KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
+              KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_RESEND_WINDOW, 30L); // s
+          long dispatchTimeout = KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
+              KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_DISPATCH_TIMEOUT, 15L); // s
+          OtpIssueCoalescer.Issue issue = resendWindow > 0
+              ? otpIssues.begin(getOtpIssueKey(context), resendWindow * 1000) : null;
+          if (issue != null && !issue.isLeader()) {
+            logger.debug("KeycloakSmsAuthenticator@authenticate - reusing OTP sent within the resend window");
+            navigateToEnterOTPPage(context, issue.awaitDispatch(dispatchTimeout * 1000));
+            return;
           }
-          if (StringUtils.isNotBlank(userEmail)) {
-            sendEmailViaSunbird(otpResponse, context, userEmail);
+
+          boolean sent = false;
+          try {
+            Map<String, Object> otpResponse = generateOTP(context, issue);
+
+            // Both channels go out at once and the page renders as soon as either of them delivered
+            List<Callable<Boolean>> channels = new ArrayList<>(2);
+            if (StringUtils.isNotBlank(mobileNumber)) {
+              addChannel(channels, createSmsSend(otpResponse, context, mobileNumber));
+            }
+            if (StringUtils.isNotBlank(userEmail)) {
+              addChannel(channels, createEmailSend(otpResponse, context, userEmail, dispatchTimeout * 1000));
+            }
+            sent = otpDispatcher.dispatch(channels, dispatchTimeout * 1000);
+          } finally {
+            if (issue != null) {
+              issue.dispatched(sent);
+            }
           }
+          navigateToEnterOTPPage(context, sent);
         } else {
           // The mobile number is NOT configured --> complain
           Response challenge = context.form().setError("Missing mobile number and email!")
@@ -73,7 +106,13 @@ public class KeycloakSmsAuthenticator implements Authenticator {
         }
     }
 
-    private Map<String, Object> generateOTP(AuthenticationFlowContext context) {
+    // HMAC codes differ per authentication session, so only requests of the same session can share one
+    private static String getOtpIssueKey(AuthenticationFlowContext context) {
+      String key = context.getRealm().getId() + "/" + context.getUser().getId();
+      return isHmacMode(context) ? key + "/" + context.getAuthenticationSession().getId() : key;
+    }
+
+    private Map<String, Object> generateOTP(AuthenticationFlowContext context, OtpIssueCoalescer.Issue issue) {
       // The mobile number is configured --> send an SMS
       long nrOfDigits = KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
           KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_LENGTH, 8L);
@@ -85,51 +124,107 @@ public class KeycloakSmsAuthenticator implements Authenticator {
           KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_TTL, 10 * 60L); // 10 minutes in s
 
       logger.debug("Using ttl " + ttl + " (s)");
-      String code = KeycloakSmsAuthenticatorUtil.getSmsCode(nrOfDigits);
-      storeSMSCode(context, code, new Date().getTime() + (ttl * 1000)); // s --> ms
+      String code;
+      long expiresAt;
+      if (isHmacMode(context)) {
+        // Derived from the realm key and the authentication session, nothing is stored
+        long stepMillis = getHmacStep(context) * 1000; // s --> ms
+        long step = HmacOtpGenerator.getStep(new Date().getTime(), stepMillis);
+        code = HmacOtpGenerator.generate(getHmacKey(context), context.getUser().getId(),
+            context.getAuthenticationSession().getId(), step, (int) nrOfDigits);
+        expiresAt = (step + getHmacWindow(context, ttl) + 1) * stepMillis;
+        // The counter only restarts with codes nobody guessed at yet, from then on older steps are not accepted
+        AuthenticationSessionModel authSession = context.getAuthenticationSession();
+        String attemptStep = authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CODE_ATTEMPT_STEP);
+        if (attemptStep == null || step > NumberUtils.toLong(attemptStep)) {
+          authSession.setAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CODE_STEP, Long.toString(step));
+          authSession.removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CODE_ATTEMPTS);
+          authSession.removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CODE_ATTEMPT_STEP);
+        }
+      } else {
+        code = KeycloakSmsAuthenticatorUtil.getSmsCode(nrOfDigits);
+        expiresAt = new Date().getTime() + (ttl * 1000); // s --> ms
+        getOtpStore(context).put(context.getRealm(), context.getUser(), new StoredOtp(code, expiresAt));
+      }
+      if (issue != null) {
+        issue.issued(expiresAt);
+      }
       Map<String, Object> response = new HashMap<>();
       response.put(Constants.OTP, code);
       response.put(Constants.TTL, (ttl / 60));
       return response;
     }
     
-    private void sendSMS(Map<String, Object> otpResponse, AuthenticationFlowContext context,
-        String mobileNumber) {
-      logger.debug("KeycloakSmsAuthenticator@sendSMS - Sending SMS");
-
-        if (KeycloakSmsAuthenticatorUtil.sendSmsCode(mobileNumber,
-          (String) otpResponse.get(Constants.OTP), context.getAuthenticatorConfig())) {
-        navigateToEnterOTPPage(context, true);
-      } else {
-        navigateToEnterOTPPage(context, false);
+    private static void addChannel(List<Callable<Boolean>> channels, Callable<Boolean> channel) {
+      if (channel != null) {
+        channels.add(channel);
       }
     }
 
-    private void sendEmailViaSunbird(Map<String, Object> otpResponse,
-        AuthenticationFlowContext context, String userEmail) {
-      logger.debug("KeycloakSmsAuthenticator@sendEmailViaSunbird - Sending Email via Sunbird API");
+    // Everything that needs the session is resolved here on the request thread, the returned send only does I/O
+    private Callable<Boolean> createSmsSend(Map<String, Object> otpResponse, AuthenticationFlowContext context,
+        String mobileNumber) {
+      logger.debug("KeycloakSmsAuthenticator@createSmsSend - Sending SMS");
 
-      List<String> emails = new ArrayList<>(Arrays.asList(userEmail));
+      if (!KeycloakSmsAuthenticatorUtil.validateTelephoneNumber(mobileNumber, context.getRealm())) {
+        logger.error("KeycloakSmsAuthenticator@createSmsSend - " + mobileNumber
+            + " is not a valid phone number, not sending the SMS");
+        return null;
+      }
+      // Send to the canonical number, so that SNS gets E.164 and rate limits apply however the number was stored
+      mobileNumber = KeycloakSmsAuthenticatorUtil.normalizePhoneNumber(mobileNumber, context.getRealm()).getE164();
+
+      final Callable<Boolean> send = KeycloakSmsAuthenticatorUtil.createSmsCodeSend(context.getSession(),
+          context.getRealm(), mobileNumber, (String) otpResponse.get(Constants.OTP),
+          context.getAuthenticatorConfig(), context.getSession().getContext().resolveLocale(context.getUser()));
+      if (send == null) {
+        return null;
+      }
+      final String realmName = context.getRealm().getName();
+      return new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          String previousRealm = SmsMetrics.setRealm(realmName);
+          try {
+            return send.call();
+          } finally {
+            SmsMetrics.setRealm(previousRealm);
+          }
+        }
+      };
+    }
 
-      otpResponse.put(Constants.RECIPIENT_EMAILS, emails);
-      otpResponse.put(Constants.SUBJECT, Constants.MAIL_SUBJECT);
-      otpResponse.put(Constants.REALM_NAME, context.getRealm().getDisplayName());
-      otpResponse.put(Constants.EMAIL_TEMPLATE_TYPE, Constants.FORGOT_PASSWORD_EMAIL_TEMPLATE);
-      otpResponse.put(Constants.BODY, Constants.BODY);
+    // The send gives up after timeoutMillis, so a batch that never flushes cannot hold a dispatch thread forever
+    private Callable<Boolean> createEmailSend(Map<String, Object> otpResponse,
+        AuthenticationFlowContext context, String userEmail, final long timeoutMillis) {
+      logger.debug("KeycloakSmsAuthenticator@createEmailSend - Sending Email via Sunbird API");
 
-      Map<String, Object> request = new HashMap<>();
-      request.put(Constants.REQUEST, otpResponse);
+      final EmailNotificationDispatcher emailNotifications = EmailNotificationDispatcher.getInstance();
+      if (emailNotifications == null) {
+        logger.error("KeycloakSmsAuthenticator@createEmailSend - " + Constants.SUNBIRD_LMS_BASE_URL + " is not set");
+        return null;
+      }
 
-      HttpResponse response = HttpClient.post(request,
-          (System.getenv(Constants.SUNBIRD_LMS_BASE_URL) + Constants.SEND_NOTIFICATION_URI),
-          System.getenv(Constants.SUNBIRD_LMS_AUTHORIZATION));
+      List<String> emails = new ArrayList<>(Arrays.asList(userEmail));
 
-      int statusCode = response.getStatusLine().getStatusCode();
-      if (statusCode == 200) {
-        navigateToEnterOTPPage(context, true);
-      } else {
-        navigateToEnterOTPPage(context, false);
-      }
+      final Map<String, Object> emailResponse = new HashMap<>(otpResponse);
+      emailResponse.put(Constants.RECIPIENT_EMAILS, emails);
+      emailResponse.put(Constants.SUBJECT, Constants.MAIL_SUBJECT);
+      emailResponse.put(Constants.REALM_NAME, context.getRealm().getDisplayName());
+      emailResponse.put(Constants.EMAIL_TEMPLATE_TYPE, Constants.FORGOT_PASSWORD_EMAIL_TEMPLATE);
+      emailResponse.put(Constants.BODY, Constants.BODY);
+
+      return new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          try {
+            return emailNotifications.send(emailResponse).get(timeoutMillis, TimeUnit.MILLISECONDS);
+          } catch (TimeoutException e) {
+            logger.error("KeycloakSmsAuthenticator@createEmailSend - Email not sent within " + timeoutMillis + " ms");
+            return false;
+          }
+        }
+      };
     }
 
     private void navigateToEnterOTPPage(AuthenticationFlowContext context, Boolean flag) {
@@ -152,12 +247,22 @@ public class KeycloakSmsAuthenticator implements Authenticator {
         switch (status) {
             case EXPIRED:
                 logger.debug("KeycloakSmsAuthenticator@action - EXPIRED");
+                // Expired or out of attempts, a resend within the window must issue a new code
+                otpIssues.invalidate(getOtpIssueKey(context));
                 challenge = context.form()
                         .setError("code is expired")
                         .createForm("sms-validation.ftl");
                 context.failureChallenge(AuthenticationFlowError.EXPIRED_CODE, challenge);
                 break;
 
+            case UNAVAILABLE:
+                logger.debug("KeycloakSmsAuthenticator@action - UNAVAILABLE");
+                challenge = context.form()
+                        .setError("The code could not be checked, please enter it again")
+                        .createForm("sms-validation.ftl");
+                context.failureChallenge(AuthenticationFlowError.INTERNAL_ERROR, challenge);
+                break;
+
             case INVALID:
                 logger.debug("KeycloakSmsAuthenticator@action - INVALID");
 
@@ -189,47 +294,48 @@ public class KeycloakSmsAuthenticator implements Authenticator {
                 break;
 
             case VALID:
+                // A code can only be used once
+                if (isHmacMode(context)) {
+                    context.getAuthenticationSession().removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CODE_ATTEMPTS);
+                } else {
+                    getOtpStore(context).remove(context.getRealm(), context.getUser());
+                }
+                otpIssues.invalidate(getOtpIssueKey(context));
                 context.success();
                 break;
 
         }
     }
 
-    // Store the code + expiration time in a UserCredential. Keycloak will persist these in the DB.
-    // When the code is validated on another node (in a clustered environment) the other nodes have access to it's values too.
-    private void storeSMSCode(AuthenticationFlowContext context, String code, Long expiringAt) {
-        logger.debug("KeycloakSmsAuthenticator@storeSMSCode called");
-
-        UserCredentialModel credentials = new UserCredentialModel();
-        credentials.setType(KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
-        credentials.setValue(code);
-
-        context.getSession().userCredentialManager().updateCredential(context.getRealm(), context.getUser(), credentials);
-
-        credentials.setType(KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_EXP_TIME);
-        credentials.setValue((expiringAt).toString());
-        context.getSession().userCredentialManager().updateCredential(context.getRealm(), context.getUser(), credentials);
-    }
-
     protected CODE_STATUS validateCode(AuthenticationFlowContext context) {
         logger.debug("KeycloakSmsAuthenticator@validateCode called");
         CODE_STATUS result = CODE_STATUS.INVALID;
 
         MultivaluedMap<String, String> formData = context.getHttpRequest().getDecodedFormParameters();
         String enteredCode = formData.getFirst(KeycloakSmsAuthenticatorConstants.ANSW_SMS_CODE);
-        KeycloakSession session = context.getSession();
 
-        List codeCreds = session.userCredentialManager().getStoredCredentialsByType(context.getRealm(), context.getUser(), KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
-        /*List timeCreds = session.userCredentialManager().getStoredCredentialsByType(context.getRealm(), context.getUser(), KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_EXP_TIME);*/
+        if (isHmacMode(context)) {
+            return validateHmacCode(context, enteredCode);
+        }
 
-        CredentialModel expectedCode = (CredentialModel) codeCreds.get(0);
-        /*CredentialModel expTimeString = (CredentialModel) timeCreds.get(0);*/
+        // Counted before comparing and limited on the value written, so concurrent guesses cannot all pass
+        StoredOtp expectedCode;
+        try {
+            expectedCode = getOtpStore(context).addAttempt(context.getRealm(), context.getUser());
+        } catch (OtpStoreException e) {
+            logger.warn("KeycloakSmsAuthenticator@validateCode - cannot check the code: " + e.getMessage());
+            return CODE_STATUS.UNAVAILABLE;
+        }
 
         logger.debug("KeycloakSmsAuthenticator@validateCode " + "User name = " + context.getUser().getUsername());
-        logger.debug("KeycloakSmsAuthenticator@validateCode " + "Expected code = " + expectedCode.getValue() + " entered code = " + enteredCode);
 
-        if (expectedCode != null) {
-            result = enteredCode.equals(expectedCode.getValue()) ? CODE_STATUS.VALID : CODE_STATUS.INVALID;
+        if (expectedCode == null) {
+            logger.debug("KeycloakSmsAuthenticator@validateCode - no code issued");
+        } else if (expectedCode.isExpired(new Date().getTime())
+                || expectedCode.getAttempts() > getMaxAttempts(context)) {
+            result = CODE_STATUS.EXPIRED;
+        } else if (expectedCode.getCode().equals(enteredCode)) {
+            result = CODE_STATUS.VALID;
         }
         logger.debug("result : " + result);
 
@@ -237,6 +343,62 @@ public class KeycloakSmsAuthenticator implements Authenticator {
         return result;
     }
 
+    // Recomputes the code instead of reading it, the attempts are counted in the authentication session
+    private CODE_STATUS validateHmacCode(AuthenticationFlowContext context, String enteredCode) {
+      AuthenticationSessionModel authSession = context.getAuthenticationSession();
+      int attempts = NumberUtils.toInt(authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CODE_ATTEMPTS)) + 1;
+      authSession.setAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CODE_ATTEMPTS, Integer.toString(attempts));
+      if (attempts > getMaxAttempts(context)) {
+        logger.debug("KeycloakSmsAuthenticator@validateHmacCode - " + attempts + " attempts, a new code is required");
+        return CODE_STATUS.EXPIRED;
+      }
+
+      long nrOfDigits = KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
+          KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_LENGTH, 8L);
+      long ttl = KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
+          KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_TTL, 10 * 60L); // 10 minutes in s
+      long step = HmacOtpGenerator.getStep(new Date().getTime(), getHmacStep(context) * 1000);
+      int window = getHmacWindow(context, ttl);
+      String issuedStep = authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CODE_STEP);
+      if (issuedStep != null) {
+        window = (int) Math.max(0, Math.min(window, step - NumberUtils.toLong(issuedStep)));
+      }
+      authSession.setAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CODE_ATTEMPT_STEP, Long.toString(step));
+      boolean valid = HmacOtpGenerator.verify(getHmacKey(context), context.getUser().getId(), authSession.getId(),
+          enteredCode, step, window, (int) nrOfDigits);
+      logger.debug("KeycloakSmsAuthenticator@validateHmacCode - Result -" + valid);
+      return valid ? CODE_STATUS.VALID : CODE_STATUS.INVALID;
+    }
+
+    private static long getMaxAttempts(AuthenticationFlowContext context) {
+      return KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
+          KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_MAX_ATTEMPTS, 5L);
+    }
+
+    private static boolean isHmacMode(AuthenticationFlowContext context) {
+      return KeycloakSmsAuthenticatorConstants.OTP_MODE_HMAC.equals(KeycloakSmsAuthenticatorUtil.getConfigString(
+          context.getAuthenticatorConfig(), KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_MODE));
+    }
+
+    private static long getHmacStep(AuthenticationFlowContext context) {
+      return Math.max(1, KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
+          KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_HMAC_STEP, 60L)); // s
+    }
+
+    // Previous steps whose codes are still accepted, by default as many as fit in the time to live
+    private static int getHmacWindow(AuthenticationFlowContext context, long ttl) {
+      return (int) Math.max(0, KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
+          KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_HMAC_WINDOW, ttl / getHmacStep(context)));
+    }
+
+    private static SecretKey getHmacKey(AuthenticationFlowContext context) {
+      return context.getSession().keys().getActiveHmacKey(context.getRealm()).getSecretKey();
+    }
+
+    private static OtpStore getOtpStore(AuthenticationFlowContext context) {
+      return KeycloakSmsAuthenticatorUtil.getOtpStore(context.getSession(), context.getAuthenticatorConfig());
+    }
+
     @Override
     public boolean requiresUser() {
         logger.debug("requiresUser called ... returning true");
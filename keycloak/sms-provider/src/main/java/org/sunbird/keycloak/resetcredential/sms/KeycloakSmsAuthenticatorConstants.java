@@ -9,14 +9,35 @@ public class KeycloakSmsAuthenticatorConstants {
     public static final String ANSW_SMS_CODE = "smsCode";
     public static final String COUNTRY_CODE = "+91";
     public static final String DEFAULT_COUNTRY_CODE = "0";
+    public static final String REALM_ATTR_DEFAULT_COUNTRY_CODE = "sms-auth.default.country.code";
 
     public static final String CONF_PRP_SMS_CODE_TTL = "sms-auth.code.ttl";
     public static final String CONF_PRP_SMS_CODE_LENGTH = "sms-auth.code.length";
+    public static final String CONF_PRP_SMS_CODE_RESEND_WINDOW = "sms-auth.code.resend.window";
+    public static final String CONF_PRP_SMS_CODE_DISPATCH_TIMEOUT = "sms-auth.code.dispatch.timeout";
     public static final String CONF_PRP_SMS_TEXT = "sms-auth.msg.text";
+    public static final String CONF_PRP_SMS_CODE_STORE = "sms-auth.code.store";
+    public static final String CONF_PRP_SMS_CODE_MODE = "sms-auth.code.mode";
+    public static final String CONF_PRP_SMS_CODE_HMAC_STEP = "sms-auth.code.hmac.step";
+    public static final String CONF_PRP_SMS_CODE_HMAC_WINDOW = "sms-auth.code.hmac.window";
+    public static final String CONF_PRP_SMS_CODE_MAX_ATTEMPTS = "sms-auth.code.max.attempts";
 
-    // User credentials (used to persist the sent sms code + expiration time cluster wide)
+    // Values of sms-auth.code.store
+    public static final String OTP_STORE_INFINISPAN = "infinispan";
+    public static final String OTP_STORE_CREDENTIAL = "credential";
+
+    // Values of sms-auth.code.mode
+    public static final String OTP_MODE_RANDOM = "random";
+    public static final String OTP_MODE_HMAC = "hmac";
+
+    // Authentication session notes of hmac mode: the codes entered, the first step whose codes are accepted and
+    // the step of the last code entered
+    public static final String AUTH_NOTE_CODE_ATTEMPTS = "sms-auth.code.attempts";
+    public static final String AUTH_NOTE_CODE_STEP = "sms-auth.code.step";
+    public static final String AUTH_NOTE_CODE_ATTEMPT_STEP = "sms-auth.code.attempt-step";
+
+    // User credential (used to persist the sent sms code, expiration time and attempts cluster wide, see StoredOtp)
     public static final String USR_CRED_MDL_SMS_CODE = "sms-auth.code";
-    public static final String USR_CRED_MDL_SMS_EXP_TIME = "sms-auth.exp-time";
 
     public static final String MSG91_SMS_PROVIDER_CONFIGURATIONS_PATH = "sms-provider/Msg91Creds.json";
 }
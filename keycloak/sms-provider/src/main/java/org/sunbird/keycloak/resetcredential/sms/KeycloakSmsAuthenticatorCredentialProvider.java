@@ -7,8 +7,6 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserCredentialModel;
 import org.keycloak.models.UserModel;
-import org.keycloak.models.cache.CachedUserModel;
-import org.keycloak.models.cache.OnUserCache;
 
 import java.util.Collections;
 import java.util.HashSet;
@@ -18,28 +16,20 @@ import java.util.Set;
 /**
  * Created by nickpack on 09/08/2017.
  */
-public class KeycloakSmsAuthenticatorCredentialProvider implements CredentialProvider, CredentialInputValidator, CredentialInputUpdater, OnUserCache {
+public class KeycloakSmsAuthenticatorCredentialProvider implements CredentialProvider, CredentialInputValidator, CredentialInputUpdater {
     private static Logger logger = Logger.getLogger(KeycloakSmsAuthenticatorCredentialProvider.class);
 
-    private static final String CACHE_KEY = KeycloakSmsAuthenticatorCredentialProvider.class.getName() + "." + KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE;
-
     private final KeycloakSession session;
 
     public KeycloakSmsAuthenticatorCredentialProvider(KeycloakSession session) {
         this.session = session;
     }
 
+    // Read from the credential store, the code is not kept with the cached user: it changes with every OTP and
+    // caching it meant evicting the user on every node each time one was issued
     private CredentialModel getSecret(RealmModel realm, UserModel user) {
-        CredentialModel secret = null;
-        if (user instanceof CachedUserModel) {
-            CachedUserModel cached = (CachedUserModel) user;
-            secret = (CredentialModel) cached.getCachedWith().get(CACHE_KEY);
-
-        } else {
-            List<CredentialModel> creds = session.userCredentialManager().getStoredCredentialsByType(realm, user, KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
-            if (!creds.isEmpty()) secret = creds.get(0);
-        }
-        return secret;
+        List<CredentialModel> creds = session.userCredentialManager().getStoredCredentialsByType(realm, user, KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
+        return creds.isEmpty() ? null : creds.get(0);
     }
 
 
@@ -64,15 +54,16 @@ public class KeycloakSmsAuthenticatorCredentialProvider implements CredentialPro
             session.userCredentialManager().updateCredential(realm, user, creds.get(0));
             logger.debug("KeycloakSmsAuthenticatorCredentialProvider@action Credentials updated for User = " + user.getUsername());
         }
-        session.userCache().evict(realm, user);
         return true;
     }
 
     @Override
     public void disableCredentialType(RealmModel realm, UserModel user, String credentialType) {
         if (!KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE.equals(credentialType)) return;
-        session.userCredentialManager().disableCredentialType(realm, user, credentialType);
-        session.userCache().evict(realm, user);
+        // Straight to the store, disabling through the credential manager would call this provider again
+        for (CredentialModel cred : session.userCredentialManager().getStoredCredentialsByType(realm, user, credentialType)) {
+            session.userCredentialManager().removeStoredCredential(realm, user, cred.getId());
+        }
 
     }
 
@@ -103,16 +94,10 @@ public class KeycloakSmsAuthenticatorCredentialProvider implements CredentialPro
         if (!KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE.equals(input.getType())) return false;
         if (!(input instanceof UserCredentialModel)) return false;
 
-        String secret = getSecret(realm, user).getValue();
+        CredentialModel secret = getSecret(realm, user);
+        StoredOtp otp = secret != null ? StoredOtp.decode(secret.getValue()) : null;
 
-        return secret != null && ((UserCredentialModel) input).getValue().equals(secret);
-    }
-
-    @Override
-    public void onCache(RealmModel realm, CachedUserModel user, UserModel delegate) {
-        List<CredentialModel> creds = session.userCredentialManager().getStoredCredentialsByType(realm, user, KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
-        if (!creds.isEmpty()) {
-            user.getCachedWith().put(CACHE_KEY, creds.get(0));
-        }
+        return otp != null && !otp.isExpired(Time.currentTimeMillis())
+                && otp.getCode().equals(((UserCredentialModel) input).getValue());
     }
 }
@@ -9,6 +9,8 @@ import org.keycloak.models.AuthenticationExecutionModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.provider.ProviderConfigProperty;
+import org.sunbird.keycloak.utils.EmailNotificationDispatcher;
+import org.sunbird.keycloak.utils.HttpClient;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -50,6 +52,55 @@ public class KeycloakSmsAuthenticatorFactory implements AuthenticatorFactory, Co
         property.setHelpText("Length of the SMS code.");
         configProperties.add(property);
 
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_RESEND_WINDOW);
+        property.setLabel("SMS code resend window");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setHelpText("Seconds during which repeated requests reuse the code already sent instead of sending a new one, 0 to always send a new code. Defaults to 30.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_DISPATCH_TIMEOUT);
+        property.setLabel("SMS code dispatch timeout");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setHelpText("Seconds to wait for the SMS or the email with the code to be sent before showing an error. Defaults to 15.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_STORE);
+        property.setLabel("SMS code store");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setHelpText("Where issued codes are kept: 'infinispan' for the clustered otp cache, 'credential' for the database. Defaults to infinispan, falling back to the database if the cache is not defined.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_MODE);
+        property.setLabel("SMS code mode");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setHelpText("'random' to store a random code, 'hmac' to derive it from the realm key, the user and the authentication session so that nothing is stored. Defaults to random.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_HMAC_STEP);
+        property.setLabel("SMS code time step");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setHelpText("In hmac mode, the seconds after which a new code is derived. Defaults to 60.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_HMAC_WINDOW);
+        property.setLabel("SMS code step window");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setHelpText("In hmac mode, how many previous time steps are still accepted. Defaults to the time to live divided by the time step.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_MAX_ATTEMPTS);
+        property.setLabel("SMS code attempts");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setHelpText("How many times a wrong code can be entered before a new one is required. Defaults to 5.");
+        configProperties.add(property);
+
         // SMS Text
         property = new ProviderConfigProperty();
         property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT);
@@ -116,5 +167,7 @@ public class KeycloakSmsAuthenticatorFactory implements AuthenticatorFactory, Co
 
     public void close() {
         logger.debug("close called ...");
+        EmailNotificationDispatcher.closeInstance();
+        HttpClient.close();
     }
 }
@@ -1,17 +1,23 @@
 package org.sunbird.keycloak.resetcredential.sms;
 
-import com.amazonaws.util.StringUtils;
+import org.infinispan.Cache;
 import org.jboss.logging.Logger;
+import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
 import org.keycloak.models.AuthenticatorConfigModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
-import org.sunbird.sms.msg91.Msg91SmsProviderFactory;
+import org.sunbird.keycloak.sms.SmsSenderProvider;
+import org.sunbird.keycloak.sms.SmsSenderSpi;
 import org.sunbird.sms.provider.ISmsProvider;
-import org.sunbird.utils.JsonUtil;
+import org.sunbird.utils.BoundedCache;
+import org.sunbird.utils.PhoneNumber;
+import org.sunbird.utils.PhoneNumberNormalizer;
 
-import java.io.File;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.Callable;
 
 /**
  * Created by joris on 18/11/2016.
@@ -20,6 +26,9 @@ public class KeycloakSmsAuthenticatorUtil {
 
     private static Logger logger = Logger.getLogger(KeycloakSmsAuthenticatorUtil.class);
 
+    private static final BoundedCache<String, SmsTemplate> smsTemplates = new BoundedCache<>(1024);
+    private static volatile boolean otpCacheMissingLogged;
+
     public static String getAttributeValue(UserModel user, String attributeName) {
         String result = null;
         List<String> values = user.getAttribute(attributeName);
@@ -38,7 +47,7 @@ public class KeycloakSmsAuthenticatorUtil {
 
         String value = defaultValue;
 
-        if (config.getConfig() != null) {
+        if (config.getConfig() != null && config.getConfig().get(configName) != null) {
             // Get value
             value = config.getConfig().get(configName);
         }
@@ -57,6 +66,9 @@ public class KeycloakSmsAuthenticatorUtil {
         if (config.getConfig() != null) {
             // Get value
             Object obj = config.getConfig().get(configName);
+            if (obj == null) {
+                return value;
+            }
             try {
                 value = Long.valueOf((String) obj); // s --> ms
             } catch (NumberFormatException nfe) {
@@ -68,53 +80,123 @@ public class KeycloakSmsAuthenticatorUtil {
     }
 
     public static String createMessage(String code, String mobileNumber, AuthenticatorConfigModel config) {
-        String text = KeycloakSmsAuthenticatorUtil.getConfigString(config, KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT);
-        logger.debug("KeycloakSmsAuthenticatorUtil@createMessage : templateText - " + text);
-        text = text.replaceAll("%sms-code%", code);
-        text = text.replaceAll("%phonenumber%", mobileNumber);
-
-        return text;
+        return createMessage(code, mobileNumber, config, null);
     }
 
-    public static String setDefaultCountryCodeIfZero(String mobileNumber) {
-        if (mobileNumber.startsWith(KeycloakSmsAuthenticatorConstants.DEFAULT_COUNTRY_CODE)) {
-            mobileNumber = KeycloakSmsAuthenticatorConstants.COUNTRY_CODE + mobileNumber.substring(1);
-        } else if (mobileNumber.startsWith(KeycloakSmsAuthenticatorConstants.COUNTRY_CODE)) {
-            mobileNumber = mobileNumber;
-        } else {
-            mobileNumber = KeycloakSmsAuthenticatorConstants.COUNTRY_CODE + mobileNumber;
-        }
+    /**
+     * Renders the SMS text for the given locale, from {@code sms-auth.msg.text.<language tag>} or
+     * {@code sms-auth.msg.text.<language>} when configured and from {@code sms-auth.msg.text} otherwise.
+     */
+    public static String createMessage(String code, String mobileNumber, AuthenticatorConfigModel config, Locale locale) {
+        SmsTemplate template = getSmsTemplate(config, locale);
+        logger.debug("KeycloakSmsAuthenticatorUtil@createMessage : templateText - " + template.getSource());
 
-        return mobileNumber;
+        return template.render(code, mobileNumber);
     }
 
-    static boolean sendSmsCode(String mobileNumber, String code, AuthenticatorConfigModel config) {
-        String smsText = createMessage(code, mobileNumber, config);
-        logger.debug("KeycloakSmsAuthenticatorUtil@sendSmsCode : smsText - " + smsText);
-
-        Boolean msg91SmsProviderStatus = send(mobileNumber, smsText);
-        if (msg91SmsProviderStatus != null) return msg91SmsProviderStatus;
+    // Compiled templates are cached per authenticator config and template key, and compiled again once the
+    // configured text no longer matches
+    static SmsTemplate getSmsTemplate(AuthenticatorConfigModel config, Locale locale) {
+        String key = null;
+        String text = null;
+        if (locale != null) {
+            key = KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT + "." + locale.toLanguageTag();
+            text = getConfigString(config, key);
+            if (text == null && !locale.getCountry().isEmpty()) {
+                key = KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT + "." + locale.getLanguage();
+                text = getConfigString(config, key);
+            }
+        }
+        if (text == null) {
+            key = KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT;
+            text = getConfigString(config, key);
+        }
+        if (text == null) {
+            throw new IllegalStateException("SMS text " + KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT + " is not configured");
+        }
 
-        return false;
+        String cacheKey = config.getId() + "/" + key;
+        SmsTemplate template = smsTemplates.get(cacheKey);
+        if (template == null || !template.getSource().equals(text)) {
+            template = SmsTemplate.compile(text);
+            smsTemplates.put(cacheKey, template);
+        }
+        return template;
     }
 
-    private static Boolean send(String mobileNumber, String code) {
-        String filePath = new File(KeycloakSmsAuthenticatorConstants.MSG91_SMS_PROVIDER_CONFIGURATIONS_PATH).getAbsolutePath();
-        logger.debug("KeycloakSmsAuthenticatorUtil@sendSmsCode : filePath - " + filePath);
+    /**
+     * The country code of numbers stored or entered without one, from the realm attribute
+     * {@code sms-auth.default.country.code} and {@code +91} if that is not set.
+     */
+    public static String getDefaultCountryCode(RealmModel realm) {
+        String countryCode = realm != null ? realm.getAttribute(KeycloakSmsAuthenticatorConstants.REALM_ATTR_DEFAULT_COUNTRY_CODE) : null;
+        if (countryCode == null || countryCode.trim().isEmpty()) {
+            return KeycloakSmsAuthenticatorConstants.COUNTRY_CODE;
+        }
+        return countryCode.trim();
+    }
 
-        if (!StringUtils.isNullOrEmpty(filePath)) {
-            Map<String, String> configurations = JsonUtil.readFromJson(filePath);
-            logger.debug("KeycloakSmsAuthenticatorUtil@sendSmsCode : configurations - " + configurations);
+    public static PhoneNumber normalizePhoneNumber(String mobileNumber, RealmModel realm) {
+        return PhoneNumberNormalizer.normalize(mobileNumber, getDefaultCountryCode(realm));
+    }
 
-            Msg91SmsProviderFactory msg91SmsProviderFactory = new Msg91SmsProviderFactory();
+    public static boolean validateTelephoneNumber(String mobileNumber, RealmModel realm) {
+        return PhoneNumberNormalizer.isValid(mobileNumber, getDefaultCountryCode(realm));
+    }
 
-            ISmsProvider msg91SmsProvider = msg91SmsProviderFactory.create(configurations);
+    /**
+     * Resolves the SMS provider of the realm and the message on the calling thread, which owns the session, and
+     * returns the send itself, which only talks to the gateway and can run on any thread. Returns null when no
+     * provider is available.
+     */
+    static Callable<Boolean> createSmsCodeSend(KeycloakSession session, RealmModel realm, final String mobileNumber,
+                                               String code, AuthenticatorConfigModel config, Locale locale) {
+        final String smsText = createMessage(code, mobileNumber, config, locale);
+        logger.debug("KeycloakSmsAuthenticatorUtil@createSmsCodeSend : smsText - " + smsText);
+
+        SmsSenderProvider smsSender = session.getProvider(SmsSenderProvider.class);
+        if (smsSender == null) {
+            logger.error("KeycloakSmsAuthenticatorUtil@createSmsCodeSend : no " + SmsSenderSpi.SPI_NAME + " provider deployed");
+            return null;
+        }
+        final ISmsProvider smsProvider = smsSender.getSmsProvider(realm);
+        if (smsProvider == null) {
+            logger.error("KeycloakSmsAuthenticatorUtil@createSmsCodeSend : no SMS provider configured for realm " + realm.getName());
+            return null;
+        }
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return smsProvider.send(mobileNumber, smsText);
+            }
+        };
+    }
 
-            if (msg91SmsProvider != null) {
-                return msg91SmsProvider.send(mobileNumber, code);
+    /**
+     * The store configured with {@code sms-auth.code.store}: the clustered {@code otp} cache by default, or the
+     * user credentials if so configured or if the cache is not defined.
+     */
+    public static OtpStore getOtpStore(KeycloakSession session, AuthenticatorConfigModel config) {
+        String store = getConfigString(config, KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_STORE,
+                KeycloakSmsAuthenticatorConstants.OTP_STORE_INFINISPAN);
+        if (KeycloakSmsAuthenticatorConstants.OTP_STORE_INFINISPAN.equals(store)) {
+            Cache<String, String> cache = null;
+            try {
+                InfinispanConnectionProvider infinispan = session.getProvider(InfinispanConnectionProvider.class);
+                cache = infinispan != null ? infinispan.<String, String>getCache(InfinispanOtpStore.CACHE_NAME) : null;
+            } catch (RuntimeException e) {
+                logger.debug("KeycloakSmsAuthenticatorUtil@getOtpStore : cannot get the OTP cache", e);
+            }
+            if (cache != null) {
+                return new InfinispanOtpStore(cache);
+            }
+            if (!otpCacheMissingLogged) {
+                otpCacheMissingLogged = true;
+                logger.warn("KeycloakSmsAuthenticatorUtil@getOtpStore : no " + InfinispanOtpStore.CACHE_NAME
+                        + " cache in the keycloak cache container, storing OTPs as user credentials");
             }
         }
-        return null;
+        return new CredentialOtpStore(session);
     }
 
     static String getSmsCode(long nrOfDigits) {
@@ -127,9 +209,4 @@ public class KeycloakSmsAuthenticatorUtil {
         long code = (long) (r.nextFloat() * maxValue);
         return Long.toString(code);
     }
-
-    public static boolean validateTelephoneNumber(String telephoneNumber) {
-        String pattern = "\\d{10}|(?:\\d{3}-){2}\\d{4}|\\(\\d{3}\\)\\d{3}-?\\d{4}";
-        return telephoneNumber.matches(pattern);
-    }
 }
@@ -0,0 +1,73 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import org.jboss.logging.Logger;
+import org.sunbird.utils.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends an OTP over all channels of the user, e.g. SMS and email, at the same time on a bounded pool. The request
+ * waits for the first channel that delivers, so its latency is that of the fastest gateway instead of the sum of all
+ * of them; the other channels complete in the background. Every channel runs on the pool, so the request never
+ * waits longer than the timeout, and a channel that does not fit into the saturated pool counts as failed instead of
+ * queueing without bound.
+ */
+public class OtpDispatcher {
+
+    private static Logger logger = Logger.getLogger(OtpDispatcher.class);
+
+    private final ThreadPoolExecutor executor;
+
+    public OtpDispatcher(int threads, int queueCapacity) {
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new NamedThreadFactory("otp-dispatch"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Dispatches the channels and returns true as soon as one of them reports success, or false once all of them
+     * failed or the timeout elapsed. A channel that throws counts as failed.
+     */
+    public boolean dispatch(List<Callable<Boolean>> channels, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Boolean>> futures = new ArrayList<>(channels.size());
+        for (Callable<Boolean> channel : channels) {
+            try {
+                futures.add(completionService.submit(channel));
+            } catch (RejectedExecutionException e) {
+                logger.warn("OtpDispatcher - too many OTPs in flight, dropping a channel");
+            }
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                Future<Boolean> done = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    logger.warn("OtpDispatcher - no channel delivered the OTP within " + timeoutMillis + " ms");
+                    return false;
+                }
+                if (Boolean.TRUE.equals(done.get())) {
+                    return true;
+                }
+            } catch (ExecutionException e) {
+                logger.error("OtpDispatcher - sending the OTP failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+}
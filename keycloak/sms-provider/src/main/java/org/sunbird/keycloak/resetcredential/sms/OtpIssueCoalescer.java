@@ -0,0 +1,130 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Coalesces OTP requests of the same user: a request within the resend window of a still valid OTP reuses it
+ * instead of generating, storing and sending a new one, and concurrent requests share the dispatch of the first.
+ * Requests are coalesced per node only, which covers double submits and reloads with sticky sessions.
+ */
+public class OtpIssueCoalescer {
+
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Returns the issue to reuse for the key, or a new one for which {@link Issue#isLeader()} is true. The leader
+     * must record when the OTP expires with {@link Issue#issued(long)} and then report {@link Issue#dispatched(boolean)}.
+     */
+    public Issue begin(String key, final long windowMillis) {
+        final long now = System.currentTimeMillis();
+        if (requests.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            sweep(now, windowMillis);
+        }
+
+        final Entry[] created = new Entry[1];
+        Entry entry = entries.compute(key, new BiFunction<String, Entry, Entry>() {
+            @Override
+            public Entry apply(String k, Entry existing) {
+                if (existing != null && existing.isReusable(now, windowMillis)) {
+                    return existing;
+                }
+                created[0] = new Entry(now);
+                return created[0];
+            }
+        });
+        return new Issue(entry, entry == created[0]);
+    }
+
+    /**
+     * Forgets the issued OTP, e.g. once it has been used, so the next request issues a new one.
+     */
+    public void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void sweep(long now, long windowMillis) {
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            if (!iterator.next().isReusable(now, windowMillis)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public static class Issue {
+
+        private final Entry entry;
+        private final boolean leader;
+
+        private Issue(Entry entry, boolean leader) {
+            this.entry = entry;
+            this.leader = leader;
+        }
+
+        /**
+         * Whether this request has to issue and dispatch the OTP, otherwise it waits for {@link #awaitDispatch(long)}.
+         */
+        public boolean isLeader() {
+            return leader;
+        }
+
+        public void issued(long expiresAt) {
+            entry.expiresAt = expiresAt;
+        }
+
+        public void dispatched(boolean sent) {
+            entry.dispatch.complete(sent);
+        }
+
+        /**
+         * Whether the OTP was sent, waiting at most the given time for the dispatch of the leader if it is still in
+         * flight. A dispatch that does not finish in time, or fails, counts as not sent.
+         */
+        public boolean awaitDispatch(long timeoutMillis) {
+            try {
+                return entry.dispatch.get(Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException | TimeoutException e) {
+                return false;
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final long issuedAt;
+        private final CompletableFuture<Boolean> dispatch = new CompletableFuture<>();
+        private volatile long expiresAt;
+
+        private Entry(long issuedAt) {
+            this.issuedAt = issuedAt;
+        }
+
+        // Reused within the window while in flight, or once delivered as long as the OTP is still valid
+        boolean isReusable(long now, long windowMillis) {
+            if (now - issuedAt >= windowMillis) {
+                return false;
+            }
+            if (!dispatch.isDone()) {
+                return true;
+            }
+            return now < expiresAt && !dispatch.isCompletedExceptionally() && dispatch.join();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+
+/**
+ * Where the OTP issued to a user is kept until it is entered, possibly on another node of the cluster.
+ */
+public interface OtpStore {
+
+    void put(RealmModel realm, UserModel user, StoredOtp otp);
+
+    /**
+     * Returns the OTP issued to the user, or null if there is none.
+     */
+    StoredOtp get(RealmModel realm, UserModel user);
+
+    /**
+     * Counts one entered code against the OTP of the user and returns the OTP as written, or null if there is none.
+     * Concurrent attempts, also on other nodes, are all counted.
+     *
+     * @throws OtpStoreException if the attempt could not be counted
+     */
+    StoredOtp addAttempt(RealmModel realm, UserModel user);
+
+    /**
+     * Forgets the OTP of the user, e.g. once it has been used.
+     */
+    void remove(RealmModel realm, UserModel user);
+}
@@ -0,0 +1,12 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+/**
+ * An {@link OtpStore} could not complete an operation, e.g. because another request of the same user holds the OTP.
+ * Says nothing about the code the user entered, which should be entered again.
+ */
+public class OtpStoreException extends RuntimeException {
+
+    public OtpStoreException(String message) {
+        super(message);
+    }
+}
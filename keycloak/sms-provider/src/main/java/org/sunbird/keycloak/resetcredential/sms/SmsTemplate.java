@@ -0,0 +1,95 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An SMS text template parsed once into literal and placeholder segments, so that rendering is a single pass
+ * over the segments without any regular expression. Values are inserted verbatim, characters like '$' or '\' in
+ * them have no special meaning. Percent signs that do not start a known placeholder are kept as they are.
+ */
+public class SmsTemplate {
+
+    public static final String SMS_CODE = "%sms-code%";
+    public static final String PHONE_NUMBER = "%phonenumber%";
+
+    private static final int LITERAL = 0;
+    private static final int CODE = 1;
+    private static final int PHONE = 2;
+
+    private final String source;
+    private final int[] kinds;
+    private final String[] literals;
+    private final int literalLength;
+
+    private SmsTemplate(String source, int[] kinds, String[] literals, int literalLength) {
+        this.source = source;
+        this.kinds = kinds;
+        this.literals = literals;
+        this.literalLength = literalLength;
+    }
+
+    public static SmsTemplate compile(String source) {
+        List<Integer> kinds = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        int literalLength = 0;
+        int literalStart = 0;
+        int i = source.indexOf('%');
+        while (i >= 0) {
+            int kind = source.startsWith(SMS_CODE, i) ? CODE : source.startsWith(PHONE_NUMBER, i) ? PHONE : LITERAL;
+            if (kind == LITERAL) {
+                i = source.indexOf('%', i + 1);
+                continue;
+            }
+            if (i > literalStart) {
+                kinds.add(LITERAL);
+                literals.add(source.substring(literalStart, i));
+                literalLength += i - literalStart;
+            }
+            kinds.add(kind);
+            literals.add(null);
+            literalStart = i + (kind == CODE ? SMS_CODE.length() : PHONE_NUMBER.length());
+            i = source.indexOf('%', literalStart);
+        }
+        if (literalStart < source.length()) {
+            kinds.add(LITERAL);
+            literals.add(source.substring(literalStart));
+            literalLength += source.length() - literalStart;
+        }
+
+        int[] kindArray = new int[kinds.size()];
+        for (int k = 0; k < kindArray.length; k++) {
+            kindArray[k] = kinds.get(k);
+        }
+        return new SmsTemplate(source, kindArray, literals.toArray(new String[0]), literalLength);
+    }
+
+    public String render(String code, String phoneNumber) {
+        int capacity = literalLength;
+        for (int kind : kinds) {
+            capacity += kind == CODE ? code.length() : kind == PHONE ? phoneNumber.length() : 0;
+        }
+
+        StringBuilder text = new StringBuilder(capacity);
+        for (int k = 0; k < kinds.length; k++) {
+            switch (kinds[k]) {
+                case CODE:
+                    text.append(code);
+                    break;
+                case PHONE:
+                    text.append(phoneNumber);
+                    break;
+                default:
+                    text.append(literals[k]);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * The template text this was compiled from.
+     */
+    public String getSource() {
+        return source;
+    }
+}
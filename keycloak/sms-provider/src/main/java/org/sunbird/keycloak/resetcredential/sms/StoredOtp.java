@@ -0,0 +1,77 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+/**
+ * An issued OTP, when it expires and how many times a code was entered for it. Stores keep it as one compact
+ * {@code code:expiresAt:attempts} string, which is a single credential row and replicates without any class of this
+ * provider having to be visible to the cache container.
+ */
+public class StoredOtp {
+
+    private static final char SEPARATOR = ':';
+
+    private final String code;
+    private final long expiresAt;
+    private final int attempts;
+
+    public StoredOtp(String code, long expiresAt) {
+        this(code, expiresAt, 0);
+    }
+
+    public StoredOtp(String code, long expiresAt, int attempts) {
+        this.code = code;
+        this.expiresAt = expiresAt;
+        this.attempts = attempts;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    /**
+     * The same OTP with one more attempt.
+     */
+    public StoredOtp withAttempt() {
+        return new StoredOtp(code, expiresAt, attempts + 1);
+    }
+
+    public String encode() {
+        return code + SEPARATOR + expiresAt + SEPARATOR + attempts;
+    }
+
+    /**
+     * Parses a value written by {@link #encode()}, also without the attempts. Returns null if it is malformed, e.g.
+     * a bare code stored by an earlier version.
+     */
+    public static StoredOtp decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        int separator = value.indexOf(SEPARATOR);
+        if (separator <= 0) {
+            return null;
+        }
+        int attemptsSeparator = value.indexOf(SEPARATOR, separator + 1);
+        try {
+            if (attemptsSeparator < 0) {
+                return new StoredOtp(value.substring(0, separator), Long.parseLong(value.substring(separator + 1)));
+            }
+            return new StoredOtp(value.substring(0, separator),
+                    Long.parseLong(value.substring(separator + 1, attemptsSeparator)),
+                    Integer.parseInt(value.substring(attemptsSeparator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
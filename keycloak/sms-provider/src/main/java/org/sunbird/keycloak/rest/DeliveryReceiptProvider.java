@@ -0,0 +1,98 @@
+package org.sunbird.keycloak.rest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import org.jboss.logging.Logger;
+import org.keycloak.services.resource.RealmResourceProvider;
+import org.sunbird.sms.dlr.DeliveryReceipt;
+import org.sunbird.sms.dlr.DeliveryReceiptParser;
+import org.sunbird.sms.dlr.DeliveryReceiptProcessor;
+
+public class DeliveryReceiptProvider implements RealmResourceProvider {
+
+  private static Logger logger = Logger.getLogger(DeliveryReceiptProvider.class);
+  public static final String TOKEN_HEADER = "X-Callback-Token";
+
+  private final DeliveryReceiptProcessor processor;
+  private final String token;
+
+  public DeliveryReceiptProvider(DeliveryReceiptProcessor processor, String token) {
+    this.processor = processor;
+    this.token = token;
+  }
+
+  /**
+   * Delivery report callback of Msg91. The receipts are queued for processing and acknowledged right away.
+   *
+   * @param callbackToken Shared secret sent in the {@value #TOKEN_HEADER} header
+   * @param body Msg91 delivery report, as JSON or as the form field data
+   * @return Response 200 once queued, 400 if the report cannot be parsed or 403 for a wrong token
+   */
+  @POST
+  @Path("msg91")
+  public Response msg91(@HeaderParam(TOKEN_HEADER) String callbackToken, String body) {
+    if (!isAuthorized(callbackToken)) {
+      return Response.status(Status.FORBIDDEN).build();
+    }
+    try {
+      return enqueue(DeliveryReceiptParser.parseMsg91(body));
+    } catch (IOException | RuntimeException e) {
+      logger.debug("DeliveryReceiptProvider:msg91: unreadable delivery report " + e.getMessage());
+      return Response.status(Status.BAD_REQUEST).build();
+    }
+  }
+
+  /**
+   * Amazon SNS SMS delivery status log entries, forwarded e.g. by a CloudWatch Logs subscription.
+   *
+   * @param callbackToken Shared secret sent in the {@value #TOKEN_HEADER} header
+   * @param body One delivery status log entry or a JSON array of them
+   * @return Response 200 once queued, 400 if the entries cannot be parsed or 403 for a wrong token
+   */
+  @POST
+  @Path("sns")
+  public Response sns(@HeaderParam(TOKEN_HEADER) String callbackToken, String body) {
+    if (!isAuthorized(callbackToken)) {
+      return Response.status(Status.FORBIDDEN).build();
+    }
+    try {
+      return enqueue(DeliveryReceiptParser.parseSns(body));
+    } catch (IOException | RuntimeException e) {
+      logger.debug("DeliveryReceiptProvider:sns: unreadable delivery status " + e.getMessage());
+      return Response.status(Status.BAD_REQUEST).build();
+    }
+  }
+
+  // Receipts only feed statistics, one dropped because the queue is full is not worth a gateway retry
+  private Response enqueue(List<DeliveryReceipt> receipts) {
+    for (DeliveryReceipt receipt : receipts) {
+      processor.offer(receipt);
+    }
+    return Response.ok().build();
+  }
+
+  private boolean isAuthorized(String callbackToken) {
+    if (token == null || token.isEmpty() || callbackToken == null) {
+      return false;
+    }
+    return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+        callbackToken.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public Object getResource() {
+    return this;
+  }
+
+  @Override
+  public void close() {
+
+  }
+}
@@ -0,0 +1,60 @@
+package org.sunbird.keycloak.rest;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config.Scope;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.services.resource.RealmResourceProvider;
+import org.keycloak.services.resource.RealmResourceProviderFactory;
+import org.sunbird.keycloak.utils.Constants;
+import org.sunbird.sms.dlr.DeliveryReceiptProcessor;
+
+/**
+ * Delivery receipt callbacks under {@code /realms/<realm>/sms-dlr}. The callback token is the {@code token}
+ * property of this provider, or the {@code sunbird_sms_dlr_token} environment variable; without one every
+ * callback is rejected. Callers send it in the {@code X-Callback-Token} header, so it stays out of access logs.
+ */
+public class DeliveryReceiptProviderFactory implements RealmResourceProviderFactory {
+
+  private static Logger logger =
+      Logger.getLogger(DeliveryReceiptProviderFactory.class);
+  public static final String PROVIDER_ID = "sms-dlr";
+
+  private static final int DEFAULT_QUEUE_CAPACITY = 65536;
+  private static final int DEFAULT_BATCH_SIZE = 512;
+
+  private String token;
+  private DeliveryReceiptProcessor processor;
+
+  @Override
+  public String getId() {
+    logger.debug("DeliveryReceiptProviderFactory: getId called ");
+    return PROVIDER_ID;
+  }
+
+  @Override
+  public RealmResourceProvider create(KeycloakSession session) {
+    return new DeliveryReceiptProvider(processor, token);
+  }
+
+  @Override
+  public void init(Scope config) {
+    token = config.get("token", System.getenv(Constants.SUNBIRD_SMS_DLR_TOKEN));
+    processor = new DeliveryReceiptProcessor(config.getInt("queueCapacity", DEFAULT_QUEUE_CAPACITY),
+        config.getInt("batchSize", DEFAULT_BATCH_SIZE));
+    if (token == null || token.isEmpty()) {
+      logger.warn("DeliveryReceiptProviderFactory: no callback token configured, delivery receipts are rejected");
+    }
+  }
+
+  @Override
+  public void postInit(KeycloakSessionFactory factory) {
+    processor.start();
+  }
+
+  @Override
+  public void close() {
+    processor.close();
+  }
+
+}
@@ -0,0 +1,81 @@
+package org.sunbird.keycloak.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.GET;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.services.ErrorResponse;
+import org.keycloak.services.managers.AppAuthManager;
+import org.keycloak.services.managers.AuthenticationManager.AuthResult;
+import org.keycloak.services.resource.RealmResourceProvider;
+import org.sunbird.keycloak.utils.Constants;
+import org.sunbird.sms.metrics.PrometheusFormatter;
+import org.sunbird.sms.metrics.SmsMetrics;
+
+public class SmsMetricsProvider implements RealmResourceProvider {
+
+  private static Logger logger = Logger.getLogger(SmsMetricsProvider.class);
+  private KeycloakSession session;
+
+  public SmsMetricsProvider(KeycloakSession session) {
+    this.session = session;
+  }
+
+  /**
+   * SMS delivery metrics in Prometheus text format. A realm only sees its own metrics, the admin realm sees the
+   * metrics of all realms including sends that could not be attributed to one. Requires a bearer token of a realm
+   * admin, e.g. of the scraping service account.
+   *
+   * @return Response containing the metrics
+   */
+  @GET
+  @Produces(PrometheusFormatter.CONTENT_TYPE)
+  public Response getMetrics() {
+    logger.debug("SmsMetricsProvider:getMetrics: called ");
+
+    checkRealmAdminAccess();
+
+    String realm = session.getContext().getRealm().getName();
+    List<SmsMetrics.ProviderMetrics> metrics = SmsMetrics.getInstance().getAll();
+    if (!Config.getAdminRealm().equals(realm)) {
+      List<SmsMetrics.ProviderMetrics> realmMetrics = new ArrayList<>();
+      for (SmsMetrics.ProviderMetrics providerMetrics : metrics) {
+        if (realm.equals(providerMetrics.getRealm())) {
+          realmMetrics.add(providerMetrics);
+        }
+      }
+      metrics = realmMetrics;
+    }
+    return Response.ok(PrometheusFormatter.format(metrics), PrometheusFormatter.CONTENT_TYPE).build();
+  }
+
+  private void checkRealmAdminAccess() {
+    AuthResult authResult =
+        new AppAuthManager().authenticateBearerToken(session, session.getContext().getRealm());
+
+    if (authResult == null) {
+      throw new WebApplicationException(
+          ErrorResponse.error(Constants.ERROR_NOT_AUTHORIZED, Status.UNAUTHORIZED));
+    } else if (authResult.getToken().getRealmAccess() == null
+        || !authResult.getToken().getRealmAccess().isUserInRole(Constants.ADMIN)) {
+      throw new WebApplicationException(
+          ErrorResponse.error(Constants.ERROR_REALM_ADMIN_ROLE_ACCESS, Status.FORBIDDEN));
+    }
+  }
+
+  @Override
+  public Object getResource() {
+    return this;
+  }
+
+  @Override
+  public void close() {
+
+  }
+}
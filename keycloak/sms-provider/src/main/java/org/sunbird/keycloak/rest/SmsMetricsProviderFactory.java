@@ -0,0 +1,42 @@
+package org.sunbird.keycloak.rest;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config.Scope;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.services.resource.RealmResourceProvider;
+import org.keycloak.services.resource.RealmResourceProviderFactory;
+
+public class SmsMetricsProviderFactory implements RealmResourceProviderFactory {
+
+  private static Logger logger =
+      Logger.getLogger(SmsMetricsProviderFactory.class);
+  public static final String PROVIDER_ID = "sms-metrics";
+
+  @Override
+  public String getId() {
+    logger.debug("SmsMetricsProviderFactory: getId called ");
+    return PROVIDER_ID;
+  }
+
+  @Override
+  public RealmResourceProvider create(KeycloakSession session) {
+    return new SmsMetricsProvider(session);
+  }
+
+  @Override
+  public void init(Scope config) {
+
+  }
+
+  @Override
+  public void postInit(KeycloakSessionFactory factory) {
+
+  }
+
+  @Override
+  public void close() {
+
+  }
+
+}
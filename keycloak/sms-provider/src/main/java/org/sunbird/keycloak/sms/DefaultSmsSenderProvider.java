@@ -0,0 +1,98 @@
+package org.sunbird.keycloak.sms;
+
+import org.jboss.logging.Logger;
+import org.keycloak.models.RealmModel;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.SmsConfigurationWatcher;
+import org.sunbird.sms.SmsProviderRegistry;
+import org.sunbird.sms.provider.ISmsProvider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Looks up the provider chain of a realm in the registry shared by all sessions. A realm uses the configuration
+ * file, with a realm attribute named {@code sms-provider.<key>} overriding {@code <key>}, e.g.
+ * {@code sms-provider.sms_providers} to send through another gateway. Only the keys in
+ * {@link #REALM_OVERRIDABLE_KEYS} can be overridden; credentials, gateway URLs and the queue directory are left to
+ * whoever manages the configuration file, not to realm admins.
+ */
+public class DefaultSmsSenderProvider implements SmsSenderProvider {
+
+    private static Logger logger = Logger.getLogger(DefaultSmsSenderProvider.class);
+
+    public static final String REALM_ATTRIBUTE_PREFIX = "sms-provider.";
+
+    public static final Set<String> REALM_OVERRIDABLE_KEYS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            SmsConfigurationConstants.CONF_SMS_SENDER,
+            SmsConfigurationConstants.CONF_SMS_ROUTE,
+            SmsConfigurationConstants.CONF_SMS_COUNTRY,
+            SmsConfigurationConstants.CONF_SMS_PROVIDERS,
+            SmsConfigurationConstants.CONF_SMS_PROVIDER_RATE_LIMIT,
+            SmsConfigurationConstants.CONF_SMS_DESTINATION_RATE_LIMIT,
+            SmsConfigurationConstants.CONF_SMS_DESTINATION_RATE_LIMIT_WINDOW,
+            SmsConfigurationConstants.CONF_SMS_HEDGE_ENABLED,
+            SmsConfigurationConstants.CONF_SMS_HEDGE_DELAY,
+            SmsConfigurationConstants.CONF_SMS_HEDGE_PERCENTILE,
+            SmsConfigurationConstants.CONF_SMS_HEDGE_INITIAL_DELAY,
+            SmsConfigurationConstants.CONF_SMS_HEDGE_MIN_DELAY,
+            SmsConfigurationConstants.CONF_SMS_HEDGE_MIN_SAMPLES,
+            SmsConfigurationConstants.CONF_SMS_HEDGE_BUDGET)));
+
+    private final SmsProviderRegistry registry;
+    private final SmsConfigurationWatcher configurationWatcher;
+
+    public DefaultSmsSenderProvider(SmsProviderRegistry registry, SmsConfigurationWatcher configurationWatcher) {
+        this.registry = registry;
+        this.configurationWatcher = configurationWatcher;
+    }
+
+    @Override
+    public ISmsProvider getSmsProvider(RealmModel realm) {
+        Map<String, String> configurations = configurationWatcher.getConfigurations();
+        if (configurations == null) {
+            return null;
+        }
+        return registry.get(realm.getId(), getRealmConfigurations(realm, configurations));
+    }
+
+    @Override
+    public boolean send(RealmModel realm, String phoneNumber, String smsText) {
+        ISmsProvider smsProvider = getSmsProvider(realm);
+        if (smsProvider == null) {
+            logger.error("DefaultSmsSenderProvider - no SMS provider configured for realm " + realm.getName());
+            return false;
+        }
+        return smsProvider.send(phoneNumber, smsText);
+    }
+
+    @Override
+    public void close() {
+        // The providers outlive the session, they are closed by the factory
+    }
+
+    // Returns the shared snapshot itself when the realm overrides nothing, which keeps the registry lookup cheap
+    public static Map<String, String> getRealmConfigurations(RealmModel realm, Map<String, String> configurations) {
+        Map<String, String> realmConfigurations = null;
+        for (Map.Entry<String, String> attribute : realm.getAttributes().entrySet()) {
+            if (!attribute.getKey().startsWith(REALM_ATTRIBUTE_PREFIX)) {
+                continue;
+            }
+            String key = attribute.getKey().substring(REALM_ATTRIBUTE_PREFIX.length());
+            if (!REALM_OVERRIDABLE_KEYS.contains(key)) {
+                logger.warn("DefaultSmsSenderProvider - realm " + realm.getName() + " cannot override " + key
+                        + ", ignoring " + attribute.getKey());
+                continue;
+            }
+            if (realmConfigurations == null) {
+                realmConfigurations = new HashMap<>(configurations);
+            }
+            realmConfigurations.put(key, attribute.getValue());
+        }
+        return realmConfigurations != null ? realmConfigurations : configurations;
+    }
+}
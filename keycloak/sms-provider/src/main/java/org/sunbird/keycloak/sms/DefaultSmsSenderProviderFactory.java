@@ -0,0 +1,92 @@
+package org.sunbird.keycloak.sms;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config.Scope;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.RealmModel;
+import org.keycloak.provider.ProviderEvent;
+import org.keycloak.provider.ProviderEventListener;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorConstants;
+import org.sunbird.sms.SmsConfigurationWatcher;
+import org.sunbird.sms.SmsProviderRegistry;
+import org.sunbird.sms.provider.ISmsProviderFactory;
+import org.sunbird.sms.queue.QueuedSmsProviderFactory;
+import org.sunbird.sms.ratelimit.RateLimitedSmsProviderFactory;
+import org.sunbird.sms.routing.RoutingSmsProviderFactory;
+
+import java.io.File;
+import java.util.function.Supplier;
+
+/**
+ * Creates the configuration watcher and the per-realm provider registry once in {@link #postInit}. The
+ * configuration file can be set with the {@code configFile} property of the {@code sms-sender} SPI. The provider
+ * of a removed realm is closed along with its queue.
+ */
+public class DefaultSmsSenderProviderFactory implements SmsSenderProviderFactory {
+
+    private static Logger logger = Logger.getLogger(DefaultSmsSenderProviderFactory.class);
+    public static final String PROVIDER_ID = "default";
+
+    private String configFile;
+    private volatile SmsConfigurationWatcher configurationWatcher;
+    private volatile SmsProviderRegistry registry;
+    private KeycloakSessionFactory sessionFactory;
+    private ProviderEventListener realmRemovedListener;
+
+    @Override
+    public String getId() {
+        return PROVIDER_ID;
+    }
+
+    @Override
+    public SmsSenderProvider create(KeycloakSession session) {
+        return new DefaultSmsSenderProvider(registry, configurationWatcher);
+    }
+
+    @Override
+    public void init(Scope config) {
+        configFile = config.get("configFile", KeycloakSmsAuthenticatorConstants.MSG91_SMS_PROVIDER_CONFIGURATIONS_PATH);
+    }
+
+    @Override
+    public void postInit(KeycloakSessionFactory factory) {
+        File file = new File(configFile);
+        logger.debug("DefaultSmsSenderProviderFactory: reading SMS provider configuration from "
+                + file.getAbsolutePath());
+        registry = new SmsProviderRegistry(new Supplier<ISmsProviderFactory>() {
+            @Override
+            public ISmsProviderFactory get() {
+                return new RateLimitedSmsProviderFactory(new QueuedSmsProviderFactory(new RoutingSmsProviderFactory()));
+            }
+        });
+        // Realms compare their configuration on every lookup and pick up a change on their next send
+        configurationWatcher = new SmsConfigurationWatcher(file);
+        configurationWatcher.start();
+
+        final SmsProviderRegistry realmRegistry = registry;
+        realmRemovedListener = new ProviderEventListener() {
+            @Override
+            public void onEvent(ProviderEvent event) {
+                if (event instanceof RealmModel.RealmRemovedEvent) {
+                    realmRegistry.remove(((RealmModel.RealmRemovedEvent) event).getRealm().getId());
+                }
+            }
+        };
+        sessionFactory = factory;
+        sessionFactory.register(realmRemovedListener);
+    }
+
+    @Override
+    public void close() {
+        if (sessionFactory != null) {
+            sessionFactory.unregister(realmRemovedListener);
+        }
+        if (configurationWatcher != null) {
+            configurationWatcher.close();
+        }
+        if (registry != null) {
+            registry.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.sunbird.keycloak.sms;
+
+import org.keycloak.models.RealmModel;
+import org.keycloak.provider.Provider;
+import org.sunbird.sms.provider.ISmsProvider;
+
+public interface SmsSenderProvider extends Provider {
+
+  /**
+   * Returns the SMS provider configured for the realm, or null if there is none.
+   */
+  ISmsProvider getSmsProvider(RealmModel realm);
+
+  /**
+   * Sends through the SMS provider of the realm, returns false if it has none or the send failed.
+   */
+  boolean send(RealmModel realm, String phoneNumber, String smsText);
+}
@@ -0,0 +1,34 @@
+package org.sunbird.keycloak.sms;
+
+import org.keycloak.provider.Provider;
+import org.keycloak.provider.ProviderFactory;
+import org.keycloak.provider.Spi;
+
+/**
+ * Registers the SMS gateways as a Keycloak SPI, so that they are created and closed with the server and can be
+ * replaced by deploying another {@link SmsSenderProviderFactory}.
+ */
+public class SmsSenderSpi implements Spi {
+
+  public static final String SPI_NAME = "sms-sender";
+
+  @Override
+  public boolean isInternal() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return SPI_NAME;
+  }
+
+  @Override
+  public Class<? extends Provider> getProviderClass() {
+    return SmsSenderProvider.class;
+  }
+
+  @Override
+  public Class<? extends ProviderFactory> getProviderFactoryClass() {
+    return SmsSenderProviderFactory.class;
+  }
+}
@@ -32,6 +32,11 @@ public class Constants {
   public static final String EMAIL = "email";
   public static final String TTL = "ttl";
   public static final String SUNBIRD_LMS_AUTHORIZATION = "sunbird_authorization";
+  public static final String SUNBIRD_SMS_DLR_TOKEN = "sunbird_sms_dlr_token";
+  public static final String SUNBIRD_HTTP_CONNECT_TIMEOUT = "sunbird_http_connect_timeout";
+  public static final String SUNBIRD_HTTP_SOCKET_TIMEOUT = "sunbird_http_socket_timeout";
+  public static final String SUNBIRD_HTTP_POOL_TIMEOUT = "sunbird_http_pool_timeout";
+  public static final String SUNBIRD_HTTP_MAX_CONNECTIONS = "sunbird_http_max_connections";
   
   public static final String MAIL_SUBJECT = "Reset password";
   public static final String SUBJECT = "subject";
@@ -39,6 +44,9 @@ public class Constants {
   public static final String REALM_NAME = "realmName";
   public static final String SEND_NOTIFICATION_URI = "/user/v1/notification/email";
   public static final String SUNBIRD_LMS_BASE_URL = "sunbird_lms_base_url";
+  public static final String SUNBIRD_LMS_BULK_NOTIFICATION_URI = "sunbird_lms_bulk_notification_uri";
+  public static final String SUNBIRD_EMAIL_BATCH_SIZE = "sunbird_email_batch_size";
+  public static final String SUNBIRD_EMAIL_BATCH_LINGER = "sunbird_email_batch_linger";
   public static final String BODY = "body";
   public static final String RECIPIENT_EMAILS = "recipientEmails";
   public static final String FORGOT_PASSWORD_EMAIL_TEMPLATE = "forgotPasswordWithOTP";
@@ -0,0 +1,262 @@
+package org.sunbird.keycloak.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.jboss.logging.Logger;
+import org.sunbird.utils.NamedThreadFactory;
+
+/**
+ * Sends email notifications to the Sunbird LMS API. Each notification carries its own OTP, so notifications cannot
+ * share one email request; when a bulk notification URI is configured they are instead collected for a few
+ * milliseconds, or until the batch is full, and posted gzip compressed as one bulk request of the form
+ * {@code {"request": {"notifications": [...]}}}. A batch of one goes to the single notification URI as before.
+ *
+ * <p>If the bulk response carries a {@code result.response} array with one entry per notification, each waiting
+ * flow gets its own outcome ({@code SUCCESS} or not), otherwise all of them get the status of the bulk request.
+ * Without a bulk URI, or when the queue is full, notifications are posted directly on the calling thread.
+ */
+public class EmailNotificationDispatcher implements Closeable {
+
+  private static Logger logger = Logger.getLogger(EmailNotificationDispatcher.class);
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  public static final String NOTIFICATIONS = "notifications";
+  public static final String SUCCESS = "SUCCESS";
+
+  private static final int DEFAULT_BATCH_SIZE = 50;
+  private static final long DEFAULT_LINGER = 10;
+  private static final int QUEUE_CAPACITY = 4096;
+
+  private static volatile EmailNotificationDispatcher instance;
+
+  private final String uri;
+  private final String bulkUri;
+  private final String authorizationKey;
+  private final int batchSize;
+  private final long lingerNanos;
+  private final BlockingQueue<Pending> queue;
+  // Guards offering to the queue against close, so nothing is queued after close has drained it
+  private final Object queueLock = new Object();
+
+  private volatile Thread flushingThread;
+
+  /**
+   * @param uri the URI of a single notification
+   * @param bulkUri the URI of a bulk notification, null to post every notification on its own
+   * @param lingerMillis how long to wait for more notifications after the first one of a batch
+   */
+  public EmailNotificationDispatcher(String uri, String bulkUri, String authorizationKey, int batchSize,
+      long lingerMillis, int queueCapacity) {
+    this.uri = uri;
+    this.bulkUri = StringUtils.isBlank(bulkUri) ? null : bulkUri;
+    this.authorizationKey = authorizationKey;
+    this.batchSize = Math.max(1, batchSize);
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+  }
+
+  /**
+   * Returns the dispatcher configured from the environment, i.e. {@code sunbird_lms_base_url},
+   * {@code sunbird_lms_bulk_notification_uri}, {@code sunbird_email_batch_size} and
+   * {@code sunbird_email_batch_linger}, or null if the base URL is not set.
+   */
+  public static EmailNotificationDispatcher getInstance() {
+    EmailNotificationDispatcher current = instance;
+    if (current == null) {
+      synchronized (EmailNotificationDispatcher.class) {
+        current = instance;
+        if (current == null) {
+          String baseUrl = System.getenv(Constants.SUNBIRD_LMS_BASE_URL);
+          if (StringUtils.isBlank(baseUrl)) {
+            return null;
+          }
+          String bulkUri = System.getenv(Constants.SUNBIRD_LMS_BULK_NOTIFICATION_URI);
+          current = new EmailNotificationDispatcher(baseUrl + Constants.SEND_NOTIFICATION_URI,
+              StringUtils.isBlank(bulkUri) ? null : baseUrl + bulkUri,
+              System.getenv(Constants.SUNBIRD_LMS_AUTHORIZATION),
+              NumberUtils.toInt(System.getenv(Constants.SUNBIRD_EMAIL_BATCH_SIZE), DEFAULT_BATCH_SIZE),
+              NumberUtils.toLong(System.getenv(Constants.SUNBIRD_EMAIL_BATCH_LINGER), DEFAULT_LINGER),
+              QUEUE_CAPACITY);
+          current.start();
+          instance = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Stops the dispatcher returned by {@link #getInstance()}, the next call creates a new one.
+   */
+  public static synchronized void closeInstance() {
+    if (instance != null) {
+      instance.close();
+      instance = null;
+    }
+  }
+
+  public synchronized void start() {
+    if (bulkUri == null || flushingThread != null) {
+      return;
+    }
+    Thread thread = new NamedThreadFactory("email-notification-batcher").newThread(new Runnable() {
+      @Override
+      public void run() {
+        flushBatches();
+      }
+    });
+    thread.start();
+    synchronized (queueLock) {
+      flushingThread = thread;
+    }
+  }
+
+  /**
+   * Sends the notification, i.e. the content of the {@code request} of a single notification, and returns
+   * whether the LMS accepted it once its batch was flushed.
+   */
+  public CompletableFuture<Boolean> send(Map<String, Object> notification) {
+    Pending pending = new Pending(notification);
+    boolean queued;
+    synchronized (queueLock) {
+      queued = flushingThread != null && queue.offer(pending);
+    }
+    if (!queued) {
+      pending.result.complete(postSingle(notification));
+    }
+    return pending.result;
+  }
+
+  /**
+   * Stops the batching thread, notifications still queued are posted on the calling thread. Notifications sent
+   * from then on are posted directly by their sender.
+   */
+  @Override
+  public synchronized void close() {
+    Thread thread;
+    synchronized (queueLock) {
+      thread = flushingThread;
+      flushingThread = null;
+    }
+    if (thread != null) {
+      thread.interrupt();
+      try {
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    Pending pending;
+    while ((pending = queue.poll()) != null) {
+      pending.result.complete(postSingle(pending.notification));
+    }
+  }
+
+  private void flushBatches() {
+    List<Pending> batch = new ArrayList<>(batchSize);
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        Pending first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+          long remaining = deadline - System.nanoTime();
+          Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+      } catch (InterruptedException e) {
+        // Notifications already taken off the queue are still flushed
+        Thread.currentThread().interrupt();
+      }
+      if (!batch.isEmpty()) {
+        flush(batch);
+      }
+    }
+  }
+
+  private void flush(List<Pending> batch) {
+    try {
+      if (batch.size() == 1) {
+        batch.get(0).result.complete(postSingle(batch.get(0).notification));
+        return;
+      }
+
+      List<Map<String, Object>> notifications = new ArrayList<>(batch.size());
+      for (Pending pending : batch) {
+        notifications.add(pending.notification);
+      }
+      Map<String, Object> request = new HashMap<>();
+      request.put(Constants.REQUEST, Collections.singletonMap(NOTIFICATIONS, notifications));
+      HttpResult result = HttpClient.post(request, bulkUri, authorizationKey, true);
+      logger.debug("EmailNotificationDispatcher - posted " + batch.size() + " notifications: " + result);
+      if (!result.isSuccess()) {
+        logger.error("EmailNotificationDispatcher - bulk notification of " + batch.size() + " emails failed: " + result);
+      }
+
+      JsonNode responses = getResponses(result, batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        boolean sent = responses != null
+            ? SUCCESS.equalsIgnoreCase(responses.get(i).asText()) : result.isSuccess();
+        batch.get(i).result.complete(sent);
+      }
+    } catch (RuntimeException e) {
+      logger.error("EmailNotificationDispatcher - failed to flush " + batch.size() + " notifications", e);
+      for (Pending pending : batch) {
+        pending.result.complete(false);
+      }
+    } finally {
+      batch.clear();
+    }
+  }
+
+  private boolean postSingle(Map<String, Object> notification) {
+    Map<String, Object> request = new HashMap<>();
+    request.put(Constants.REQUEST, notification);
+    HttpResult result = HttpClient.post(request, uri, authorizationKey);
+    if (result.getStatusCode() != 200) {
+      logger.error("EmailNotificationDispatcher - Email could not be sent: " + result);
+    }
+    return result.getStatusCode() == 200;
+  }
+
+  // The per notification outcome, if the response has exactly one entry per notification
+  private static JsonNode getResponses(HttpResult result, int size) {
+    if (!result.isSuccess() || StringUtils.isBlank(result.getBody())) {
+      return null;
+    }
+    try {
+      JsonNode responses = mapper.readTree(result.getBody()).path("result").path("response");
+      return responses.isArray() && responses.size() == size ? responses : null;
+    } catch (Exception e) {
+      logger.debug("EmailNotificationDispatcher - bulk response is not JSON, using its status for all emails");
+      return null;
+    }
+  }
+
+  private static final class Pending {
+    private final Map<String, Object> notification;
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    private Pending(Map<String, Object> notification) {
+      this.notification = notification;
+    }
+  }
+}
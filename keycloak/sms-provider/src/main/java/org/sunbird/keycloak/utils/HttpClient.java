@@ -1,47 +1,155 @@
 package org.sunbird.keycloak.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
 import org.jboss.logging.Logger;
+import org.sunbird.utils.ReusableByteArrayOutputStream;
 
+/**
+ * Posts JSON to the Sunbird APIs through a single pooled client. Every call is bounded by the connect, read and
+ * pool acquire timeouts, which can be overridden with the {@code sunbird_http_*} environment variables.
+ */
 public class HttpClient {
 
   private static Logger logger = Logger.getLogger(HttpClient.class);
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static final Header ACCEPT_HEADER =
+      new BasicHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+  private static final Header CONTENT_TYPE_HEADER =
+      new BasicHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
+  private static final Header CONTENT_ENCODING_GZIP_HEADER =
+      new BasicHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+  private static final int DEFAULT_CONNECT_TIMEOUT = 2000;
+  private static final int DEFAULT_SOCKET_TIMEOUT = 5000;
+  private static final int DEFAULT_POOL_TIMEOUT = 1000;
+  private static final int DEFAULT_MAX_CONNECTIONS = 50;
+  private static final int IDLE_CONNECTION_TIMEOUT = 30;
+
+  private static volatile CloseableHttpClient client;
 
   private HttpClient() {}
 
-  public static HttpResponse post(Map<String, Object> requestBody, String uri,
+  /**
+   * Posts the request body as JSON and reads the response completely. Never returns null and never throws, a
+   * call that got no response is reported with {@link HttpResult#NO_RESPONSE}.
+   */
+  public static HttpResult post(Map<String, Object> requestBody, String uri,
       String authorizationKey) {
+    return post(requestBody, uri, authorizationKey, false);
+  }
+
+  /**
+   * Same as {@link #post(Map, String, String)}, with the request body gzip compressed if {@code gzip} is set.
+   */
+  public static HttpResult post(Map<String, Object> requestBody, String uri,
+      String authorizationKey, boolean gzip) {
     logger.debug("HttpClient: post called");
-    try (CloseableHttpClient client = HttpClients.createDefault()) {
-      ObjectMapper mapper = new ObjectMapper();
+    long startTime = System.nanoTime();
+    try {
       HttpPost httpPost = new HttpPost(uri);
       logger.debug("HttpClient:post: uri = " + uri);
-      String authKey = Constants.BEARER + " " + authorizationKey;
-      StringEntity entity = new StringEntity(mapper.writeValueAsString(requestBody));
+      // Serialize straight into the thread's reusable buffer, the request is executed on this thread
+      ReusableByteArrayOutputStream body = ReusableByteArrayOutputStream.acquire();
+      // Jackson closes the target, which finishes the gzip stream
+      mapper.writeValue(gzip ? new GZIPOutputStream(body) : body, requestBody);
+      HttpEntity entity = body.toEntity(null);
       logger.debug("HttpClient:post: request entity = " + entity);
       httpPost.setEntity(entity);
-      httpPost.setHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
-      httpPost.setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
-      if (StringUtils.isNotBlank(authKey)) {
-        httpPost.setHeader(HttpHeaders.AUTHORIZATION, authKey);
+      httpPost.setHeader(ACCEPT_HEADER);
+      httpPost.setHeader(CONTENT_TYPE_HEADER);
+      if (gzip) {
+        httpPost.setHeader(CONTENT_ENCODING_GZIP_HEADER);
+      }
+      if (StringUtils.isNotBlank(authorizationKey)) {
+        httpPost.setHeader(HttpHeaders.AUTHORIZATION, Constants.BEARER + " " + authorizationKey);
       }
-      CloseableHttpResponse response = client.execute(httpPost);
-      logger.debug("HttpClient:post: statusCode = " + response.getStatusLine().getStatusCode());
-      return response;
-    } catch (Exception e) {
+
+      // Consuming the entity before the response is closed returns the connection to the pool
+      try (CloseableHttpResponse response = getClient().execute(httpPost)) {
+        int statusCode = response.getStatusLine().getStatusCode();
+        String responseBody = response.getEntity() != null
+            ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : null;
+        logger.debug("HttpClient:post: statusCode = " + statusCode);
+        return HttpResult.response(statusCode, responseBody, elapsedMillis(startTime));
+      }
+    } catch (IOException | RuntimeException e) {
       logger.error("HttpClient:post: Exception occurred = " + e);
+      return HttpResult.failure(String.valueOf(e), elapsedMillis(startTime));
+    }
+  }
+
+  /**
+   * Closes the pooled connections, the next call creates a new client.
+   */
+  public static synchronized void close() {
+    if (client != null) {
+      try {
+        client.close();
+      } catch (IOException ignore) {
+        // Ignore ...
+      }
+      client = null;
     }
-    return null;
   }
 
+  private static CloseableHttpClient getClient() {
+    CloseableHttpClient current = client;
+    if (current == null) {
+      synchronized (HttpClient.class) {
+        current = client;
+        if (current == null) {
+          current = createClient();
+          client = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  private static CloseableHttpClient createClient() {
+    int maxConnections = getEnvInt(Constants.SUNBIRD_HTTP_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+    RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectTimeout(getEnvInt(Constants.SUNBIRD_HTTP_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT))
+        .setSocketTimeout(getEnvInt(Constants.SUNBIRD_HTTP_SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT))
+        .setConnectionRequestTimeout(getEnvInt(Constants.SUNBIRD_HTTP_POOL_TIMEOUT, DEFAULT_POOL_TIMEOUT))
+        .build();
+
+    return HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .evictExpiredConnections()
+        .evictIdleConnections((long) IDLE_CONNECTION_TIMEOUT, TimeUnit.SECONDS)
+        .build();
+  }
+
+  private static int getEnvInt(String name, int defaultValue) {
+    return NumberUtils.toInt(System.getenv(name), defaultValue);
+  }
+
+  private static long elapsedMillis(long startTime) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+  }
 }
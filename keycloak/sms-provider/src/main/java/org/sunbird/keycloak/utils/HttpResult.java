@@ -0,0 +1,58 @@
+package org.sunbird.keycloak.utils;
+
+/**
+ * Outcome of an HTTP call made through {@link HttpClient}. The response body has been read completely and the
+ * connection released, a call that got no response carries status {@link #NO_RESPONSE} and the error instead.
+ */
+public class HttpResult {
+
+  public static final int NO_RESPONSE = -1;
+
+  private final int statusCode;
+  private final String body;
+  private final String error;
+  private final long latencyMillis;
+
+  private HttpResult(int statusCode, String body, String error, long latencyMillis) {
+    this.statusCode = statusCode;
+    this.body = body;
+    this.error = error;
+    this.latencyMillis = latencyMillis;
+  }
+
+  public static HttpResult response(int statusCode, String body, long latencyMillis) {
+    return new HttpResult(statusCode, body, null, latencyMillis);
+  }
+
+  public static HttpResult failure(String error, long latencyMillis) {
+    return new HttpResult(NO_RESPONSE, null, error, latencyMillis);
+  }
+
+  /**
+   * Whether a response with a 2xx status was received.
+   */
+  public boolean isSuccess() {
+    return statusCode >= 200 && statusCode < 300;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public String getBody() {
+    return body;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public long getLatencyMillis() {
+    return latencyMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "HttpResult{statusCode=" + statusCode + ", error=" + error + ", latencyMillis=" + latencyMillis + "}";
+  }
+}
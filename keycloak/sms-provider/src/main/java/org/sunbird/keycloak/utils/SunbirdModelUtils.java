@@ -8,6 +8,9 @@ import org.keycloak.models.ModelDuplicateException;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorConstants;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorUtil;
+import org.sunbird.utils.PhoneNumber;
+import org.sunbird.utils.PhoneNumberNormalizer;
 
 /**
  * 
@@ -23,29 +26,53 @@ public class SunbirdModelUtils {
 
   private SunbirdModelUtils() {}
 
+  /**
+   * Looks the user up by phone number when the identifier is one, otherwise by user name or email. A number of the
+   * realm's default country is searched as its national number first, e.g. {@code 09999999999},
+   * {@code 919999999999} and {@code +919999999999} all match {@code 9999999999}. Attributes stored in another
+   * form are still found by searching the input as entered when that finds nobody.
+   */
   public static UserModel getUserByNameEmailOrPhone(AuthenticationFlowContext context,
       String username) {
-    String numberRegex = "\\d+";
     KeycloakSession session = context.getSession();
     logger.debug("SunbirdModelUtils@getUser " + username);
-    if (username.matches(numberRegex)) {
-      List<UserModel> userModels = session.users().searchForUserByUserAttribute(
-          KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, username, context.getRealm());
-      if (userModels != null && !userModels.isEmpty()) {
+    String phone = getPhoneAttributeValue(context, username);
+    if (phone != null) {
+      List<UserModel> userModels = searchByPhone(context, phone);
+      if (isEmpty(userModels) && !phone.equals(username)) {
+        userModels = searchByPhone(context, username);
+      }
+      if (!isEmpty(userModels)) {
         // multiple user found for same attribute
         if (userModels.size() > 1) {
           throw new ModelDuplicateException(Constants.MULTIPLE_USER_ASSOCIATED_WITH_PHONE,
               KeycloakSmsAuthenticatorConstants.ATTR_MOBILE);
         }
         return userModels.get(0);
-      } else {
-        return KeycloakModelUtils.findUserByNameOrEmail(context.getSession(), context.getRealm(),
-            username);
       }
-    } else {
-      return KeycloakModelUtils.findUserByNameOrEmail(context.getSession(), context.getRealm(),
-          username);
     }
+    return KeycloakModelUtils.findUserByNameOrEmail(session, context.getRealm(), username);
+  }
+
+  // The value to search the phone attribute for, null when the identifier is no phone number
+  private static String getPhoneAttributeValue(AuthenticationFlowContext context, String username) {
+    PhoneNumber phoneNumber =
+        KeycloakSmsAuthenticatorUtil.normalizePhoneNumber(username, context.getRealm());
+    if (phoneNumber == null) {
+      return PhoneNumberNormalizer.isDigits(username) ? username : null;
+    }
+    String nationalNumber = phoneNumber.getNationalNumber(
+        KeycloakSmsAuthenticatorUtil.getDefaultCountryCode(context.getRealm()));
+    return nationalNumber != null ? nationalNumber : username;
+  }
+
+  private static List<UserModel> searchByPhone(AuthenticationFlowContext context, String phone) {
+    return context.getSession().users().searchForUserByUserAttribute(
+        KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, phone, context.getRealm());
+  }
+
+  private static boolean isEmpty(List<UserModel> userModels) {
+    return userModels == null || userModels.isEmpty();
   }
 
 }
@@ -20,4 +20,42 @@ public class SMSConfigurationUtil {
         return value;
     }
 
+    public static int getConfigInt(Map<String, String> config, String configName, int defaultValue) {
+        String value = getConfigString(config, configName);
+
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static long getConfigLong(Map<String, String> config, String configName, long defaultValue) {
+        String value = getConfigString(config, configName);
+
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static boolean getConfigBoolean(Map<String, String> config, String configName, boolean defaultValue) {
+        String value = getConfigString(config, configName);
+
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+
+        return Boolean.parseBoolean(value.trim());
+    }
+
 }
@@ -6,6 +6,7 @@ public final class SmsConfigurationConstants {
     public static final String CONF_SMS_BASE_URL = "sms_base_url";
     public static final String CONF_SMS_GET_URL = "sms_get_url";
     public static final String CONF_SMS_POST_URL = "sms_post_url";
+    public static final String CONF_SMS_SNS_ENDPOINT = "sms_sns_endpoint";
     public static final String CONF_SMS_METHOD_TYPE = "sms_method_type";
     public static final String CONF_SMS_USERNAME = "sms_username";
     public static final String CONF_SMS_PASSWORD = "sms_password";
@@ -20,4 +21,43 @@ public final class SmsConfigurationConstants {
     public static final String CONF_SMS_SENDER = "sender";
     public static final String CONF_SMS_COUNTRY = "country";
     public static final String CONF_SMS_ROUTE = "route";
+    public static final String CONF_SMS_MAX_CONNECTIONS = "sms_max_connections";
+    public static final String CONF_SMS_MAX_CONNECTIONS_PER_ROUTE = "sms_max_connections_per_route";
+    public static final String CONF_SMS_KEEP_ALIVE_TIMEOUT = "sms_keep_alive_timeout";
+    public static final String CONF_SMS_IDLE_CONNECTION_TIMEOUT = "sms_idle_connection_timeout";
+    public static final String CONF_SMS_CONNECT_TIMEOUT = "sms_connect_timeout";
+    public static final String CONF_SMS_SOCKET_TIMEOUT = "sms_socket_timeout";
+    public static final String CONF_SMS_ASYNC_QUEUE_CAPACITY = "sms_async_queue_capacity";
+    public static final String CONF_SMS_BATCH_MAX_RECIPIENTS = "sms_batch_max_recipients";
+    public static final String CONF_SMS_PROVIDERS = "sms_providers";
+    public static final String CONF_SMS_ROUTING_DECAY = "sms_routing_decay";
+    public static final String CONF_SMS_ROUTING_INITIAL_LATENCY = "sms_routing_initial_latency";
+    public static final String CONF_SMS_DLR_ENABLED = "sms_dlr_enabled";
+    public static final String CONF_SMS_HEDGE_ENABLED = "sms_hedge_enabled";
+    public static final String CONF_SMS_HEDGE_DELAY = "sms_hedge_delay";
+    public static final String CONF_SMS_HEDGE_PERCENTILE = "sms_hedge_percentile";
+    public static final String CONF_SMS_HEDGE_INITIAL_DELAY = "sms_hedge_initial_delay";
+    public static final String CONF_SMS_HEDGE_MIN_DELAY = "sms_hedge_min_delay";
+    public static final String CONF_SMS_HEDGE_MIN_SAMPLES = "sms_hedge_min_samples";
+    public static final String CONF_SMS_HEDGE_BUDGET = "sms_hedge_budget";
+    public static final String CONF_SMS_CIRCUIT_BREAKER_ENABLED = "sms_circuit_breaker_enabled";
+    public static final String CONF_SMS_CIRCUIT_BREAKER_FAILURE_RATE = "sms_circuit_breaker_failure_rate";
+    public static final String CONF_SMS_CIRCUIT_BREAKER_MINIMUM_CALLS = "sms_circuit_breaker_minimum_calls";
+    public static final String CONF_SMS_CIRCUIT_BREAKER_WINDOW = "sms_circuit_breaker_window";
+    public static final String CONF_SMS_CIRCUIT_BREAKER_OPEN_DURATION = "sms_circuit_breaker_open_duration";
+    public static final String CONF_SMS_CIRCUIT_BREAKER_HALF_OPEN_PROBES = "sms_circuit_breaker_half_open_probes";
+    public static final String CONF_SMS_PROVIDER_RATE_LIMIT = "sms_provider_rate_limit";
+    public static final String CONF_SMS_DESTINATION_RATE_LIMIT = "sms_destination_rate_limit";
+    public static final String CONF_SMS_DESTINATION_RATE_LIMIT_WINDOW = "sms_destination_rate_limit_window";
+    public static final String CONF_SMS_DESTINATION_RATE_LIMIT_MAX_NUMBERS = "sms_destination_rate_limit_max_numbers";
+    public static final String CONF_SMS_QUEUE_ENABLED = "sms_queue_enabled";
+    public static final String CONF_SMS_QUEUE_DIRECTORY = "sms_queue_directory";
+    public static final String CONF_SMS_QUEUE_LEGACY_DIRECTORY = "sms_queue_legacy_directory";
+    public static final String CONF_SMS_QUEUE_DISPATCHER_THREADS = "sms_queue_dispatcher_threads";
+    public static final String CONF_SMS_QUEUE_MAX_ATTEMPTS = "sms_queue_max_attempts";
+    public static final String CONF_SMS_QUEUE_INITIAL_BACKOFF = "sms_queue_initial_backoff";
+    public static final String CONF_SMS_QUEUE_MAX_BACKOFF = "sms_queue_max_backoff";
+    public static final String CONF_SMS_QUEUE_MAX_JOURNAL_SIZE = "sms_queue_max_journal_size";
+    public static final String CONF_SMS_QUEUE_MESSAGE_TTL = "sms_queue_message_ttl";
+    public static final String CONF_SMS_QUEUE_MAX_DEAD_LETTER_SIZE = "sms_queue_max_dead_letter_size";
 }
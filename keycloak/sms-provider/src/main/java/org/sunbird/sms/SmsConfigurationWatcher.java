@@ -0,0 +1,121 @@
+package org.sunbird.sms;
+
+import org.jboss.logging.Logger;
+import org.sunbird.utils.JsonUtil;
+import org.sunbird.utils.NamedThreadFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the SMS provider configuration file as an immutable snapshot and reloads it when the file changes on
+ * disk. Readers get the current snapshot without touching the file; a file that cannot be parsed leaves the
+ * previous snapshot in place.
+ */
+public class SmsConfigurationWatcher implements Closeable {
+
+    private static Logger logger = Logger.getLogger(SmsConfigurationWatcher.class);
+
+    private final Path file;
+    private final AtomicReference<Map<String, String>> configurations = new AtomicReference<>();
+    private WatchService watchService;
+    private Thread watchThread;
+
+    public SmsConfigurationWatcher(File file) {
+        this.file = file.getAbsoluteFile().toPath();
+        reload();
+    }
+
+    /**
+     * Returns the current configuration, or null when the file has never been readable.
+     */
+    public Map<String, String> getConfigurations() {
+        return configurations.get();
+    }
+
+    public synchronized void start() {
+        if (watchThread != null) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.error("SmsConfigurationWatcher - unable to watch " + file + ", changes require a restart", e);
+            return;
+        }
+
+        watchThread = new NamedThreadFactory("sms-config-watcher").newThread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        });
+        watchThread.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignore) {
+                // Ignore ...
+            }
+            watchService = null;
+        }
+        watchThread = null;
+    }
+
+    /**
+     * Re-reads the file and returns whether the configuration changed.
+     */
+    public boolean reload() {
+        Map<String, String> loaded = JsonUtil.readFromJson(file.toString());
+        if (loaded == null) {
+            logger.error("SmsConfigurationWatcher - unable to read " + file + ", keeping the current configuration");
+            return false;
+        }
+
+        Map<String, String> snapshot = Collections.unmodifiableMap(new HashMap<>(loaded));
+        Map<String, String> previous = configurations.getAndSet(snapshot);
+        return previous != null && !previous.equals(snapshot);
+    }
+
+    private void watch() {
+        WatchService service = watchService;
+        while (service != null) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            boolean touched = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Object context = event.context();
+                if (context instanceof Path && file.getFileName().equals(context)) {
+                    touched = true;
+                }
+            }
+            key.reset();
+
+            if (touched && reload()) {
+                logger.info("SmsConfigurationWatcher - " + file + " changed, applying the new configuration");
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.sunbird.sms;
+
+import org.jboss.logging.Logger;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.ISmsProviderFactory;
+import org.sunbird.sms.queue.QueuedSmsProvider;
+import org.sunbird.utils.NamedThreadFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Holds one provider chain per tenant, e.g. per realm, each built by its own factory chain from that tenant's
+ * configuration. Lookups of an unchanged configuration are a map read; a changed configuration atomically swaps in
+ * a new chain, and concurrent first lookups of a tenant wait for a single chain to be built instead of racing. A
+ * chain that fails to build is logged and the lookup returns null, so one tenant's bad configuration only disables
+ * that tenant's SMS.
+ *
+ * <p>A replaced chain is closed after a grace period, so sends that picked it up just before the swap complete. A
+ * chain with an outbound queue is closed before its replacement is built instead, as both would open the tenant's
+ * queue journal; enqueueing is quick, so there are no long sends to wait for.
+ */
+public class SmsProviderRegistry implements Closeable {
+
+    private static Logger logger = Logger.getLogger(SmsProviderRegistry.class);
+
+    private static final long DEFAULT_RETIRE_DELAY = 30000;
+
+    private final Supplier<ISmsProviderFactory> factorySupplier;
+    private final long retireDelayMillis;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Entry, Boolean> retiring = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retirer =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("sms-provider-retirer"));
+
+    /**
+     * @param factorySupplier creates the factory chain of a tenant, called once per tenant and configuration
+     */
+    public SmsProviderRegistry(Supplier<ISmsProviderFactory> factorySupplier) {
+        this(factorySupplier, DEFAULT_RETIRE_DELAY);
+    }
+
+    public SmsProviderRegistry(Supplier<ISmsProviderFactory> factorySupplier, long retireDelayMillis) {
+        this.factorySupplier = factorySupplier;
+        this.retireDelayMillis = retireDelayMillis;
+    }
+
+    /**
+     * Returns the provider of the tenant for the given configuration, building it or replacing the tenant's
+     * provider if its configuration changed. Returns null when the configuration names no usable provider.
+     */
+    public ISmsProvider get(String tenant, Map<String, String> configurations) {
+        Entry entry = entries.get(tenant);
+        if (entry != null && entry.configurations.equals(configurations)) {
+            return entry.await();
+        }
+        return reconfigure(tenant, configurations);
+    }
+
+    // Only the entry is swapped in within compute, the chain is built after the swap by the thread that created it,
+    // so building one tenant's chain, which may call out to a gateway, never blocks lookups of other tenants
+    private ISmsProvider reconfigure(final String tenant, final Map<String, String> configurations) {
+        final Entry[] replaced = new Entry[1];
+        final Entry[] created = new Entry[1];
+        Entry entry = entries.compute(tenant, new BiFunction<String, Entry, Entry>() {
+            @Override
+            public Entry apply(String key, Entry existing) {
+                if (existing != null && existing.configurations.equals(configurations)) {
+                    return existing;
+                }
+                replaced[0] = existing;
+                created[0] = new Entry(configurations);
+                return created[0];
+            }
+        });
+
+        if (replaced[0] != null) {
+            logger.info("SmsProviderRegistry - configuration of " + tenant + " changed, replacing its SMS provider");
+            release(replaced[0]);
+        }
+        if (entry == created[0]) {
+            build(tenant, entry);
+        }
+        return entry.await();
+    }
+
+    // A chain that fails to build is dropped, so the next lookup of the tenant tries again
+    private void build(String tenant, Entry entry) {
+        ISmsProviderFactory factory = factorySupplier.get();
+        entry.factory = factory;
+        boolean built = false;
+        try {
+            entry.provider.complete(factory.create(tenantConfigurations(tenant, entry.configurations)));
+            built = true;
+        } catch (RuntimeException e) {
+            logger.error("SmsProviderRegistry - failed to build the SMS provider of " + tenant, e);
+        } finally {
+            if (!built) {
+                entries.remove(tenant, entry);
+                entry.provider.complete(null);
+                entry.close();
+            }
+        }
+    }
+
+    /**
+     * Drops the provider of a tenant that no longer exists, e.g. a removed realm, and closes it like a replaced one,
+     * which stops its queue dispatcher and releases its queue journal. Messages still queued stay in the journal.
+     */
+    public void remove(String tenant) {
+        Entry entry = entries.remove(tenant);
+        if (entry != null) {
+            logger.info("SmsProviderRegistry - " + tenant + " removed, closing its SMS provider");
+            release(entry);
+        }
+    }
+
+    /**
+     * Closes the providers of all tenants, including replaced ones still within their grace period.
+     */
+    @Override
+    public void close() {
+        retirer.shutdownNow();
+        for (String tenant : entries.keySet()) {
+            Entry entry = entries.remove(tenant);
+            if (entry != null) {
+                entry.close();
+            }
+        }
+        for (Entry entry : retiring.keySet()) {
+            if (retiring.remove(entry) != null) {
+                entry.close();
+            }
+        }
+    }
+
+    /**
+     * Number of tenants with a provider.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void release(Entry entry) {
+        if (QueuedSmsProvider.isEnabled(entry.configurations)) {
+            // Let go of the queue journal first, possibly after waiting for the chain to be built
+            entry.await();
+            entry.close();
+        } else {
+            retire(entry);
+        }
+    }
+
+    private void retire(final Entry entry) {
+        retiring.put(entry, Boolean.TRUE);
+        try {
+            retirer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (retiring.remove(entry) != null) {
+                        entry.close();
+                    }
+                }
+            }, retireDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (retiring.remove(entry) != null) {
+                entry.close();
+            }
+        }
+    }
+
+    // Tenants must not share the journal of the outbound queue, each one gets its own directory. The journal written
+    // to the shared directory before is drained by the first tenant that opens its queue
+    private static Map<String, String> tenantConfigurations(String tenant, Map<String, String> configurations) {
+        if (!QueuedSmsProvider.isEnabled(configurations)) {
+            return configurations;
+        }
+        String directory = SMSConfigurationUtil.getConfigString(configurations,
+                SmsConfigurationConstants.CONF_SMS_QUEUE_DIRECTORY, QueuedSmsProvider.DEFAULT_QUEUE_DIRECTORY);
+        Map<String, String> tenantConfigurations = new HashMap<>(configurations);
+        tenantConfigurations.put(SmsConfigurationConstants.CONF_SMS_QUEUE_DIRECTORY, new File(directory, tenant).getPath());
+        tenantConfigurations.put(SmsConfigurationConstants.CONF_SMS_QUEUE_LEGACY_DIRECTORY, directory);
+        return tenantConfigurations;
+    }
+
+    private static final class Entry {
+        private final Map<String, String> configurations;
+        private final CompletableFuture<ISmsProvider> provider = new CompletableFuture<>();
+        private volatile ISmsProviderFactory factory;
+
+        private Entry(Map<String, String> configurations) {
+            this.configurations = configurations;
+        }
+
+        // Waits for the thread that swapped the entry in to build the chain
+        ISmsProvider await() {
+            return provider.join();
+        }
+
+        void close() {
+            ISmsProviderFactory current = factory;
+            if (current == null) {
+                return;
+            }
+            try {
+                current.close();
+            } catch (RuntimeException e) {
+                logger.error("SmsProviderRegistry - failed to close SMS provider", e);
+            }
+        }
+    }
+}
@@ -6,16 +6,34 @@ import org.sunbird.sms.provider.ISmsProviderFactory;
 
 import java.util.Map;
 
+/**
+ * Holds one {@link AmazonSnsProvider}, and with it one SNS client, per factory instance.
+ */
 public class AmazonSnsFactory implements ISmsProviderFactory {
-    private static AmazonSnsProvider amazonSnsProvider = null;
+    private AmazonSnsProvider amazonSnsProvider = null;
+    private Map<String, String> amazonSnsProviderConfigurations = null;
 
     @Override
-    public ISmsProvider create(Map<String, String> configurations) {
+    public synchronized ISmsProvider create(Map<String, String> configurations) {
         if (amazonSnsProvider == null) {
             amazonSnsProvider = new AmazonSnsProvider();
             amazonSnsProvider.configure(configurations);
+            amazonSnsProviderConfigurations = configurations;
+        } else if (!configurations.equals(amazonSnsProviderConfigurations)) {
+            // Apply changed credentials or settings to the live provider instead of ignoring them
+            amazonSnsProvider.configure(configurations);
+            amazonSnsProviderConfigurations = configurations;
         }
 
         return amazonSnsProvider;
     }
+
+    @Override
+    public synchronized void close() {
+        if (amazonSnsProvider != null) {
+            amazonSnsProvider.close();
+            amazonSnsProvider = null;
+            amazonSnsProviderConfigurations = null;
+        }
+    }
 }
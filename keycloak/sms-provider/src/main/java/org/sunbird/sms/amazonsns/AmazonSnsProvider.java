@@ -1,52 +1,193 @@
 package org.sunbird.sms.amazonsns;
 
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sns.AmazonSNSAsyncClient;
 import com.amazonaws.services.sns.model.MessageAttributeValue;
 import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
 import org.jboss.logging.Logger;
 import org.sunbird.aws.snsclient.SnsClientFactory;
 import org.sunbird.sms.SMSConfigurationUtil;
 import org.sunbird.sms.SmsConfigurationConstants;
 import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AmazonSnsProvider implements ISmsProvider {
 
     private static Logger logger = Logger.getLogger(AmazonSnsProvider.class);
 
-    private Map<String, String> configurations;
+    private volatile CountedClient snsClient;
+    private String snsClientKey;
 
     @Override
     public boolean send(String phoneNumber, String smsText) {
+        return sendAsync(phoneNumber, smsText).join().isSuccess();
+    }
+
+    @Override
+    public CompletableFuture<SmsDeliveryResult> sendAsync(final String phoneNumber, String smsText) {
         logger.debug("AmazonSnsProvider@send : phoneNumber - " + phoneNumber + " & Sms text - " + smsText);
 
+        final long startTime = System.nanoTime();
+        final CompletableFuture<SmsDeliveryResult> result = new CompletableFuture<>();
+
         Map<String, MessageAttributeValue> smsAttributes = new HashMap<String, MessageAttributeValue>();
         smsAttributes.put("AWS.SNS.SMS.SenderID", new MessageAttributeValue()
                 .withStringValue("HomeOffice")
                 .withDataType("String"));
 
-        String clientToken = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_TOKEN);
-        String clientSecret = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_SECRET);
-
-        logger.debug("AmazonSnsProvider@send : clientToken - " + clientToken + " & clientSecret - " + clientSecret);
-
+        final CountedClient client = acquireClient();
+        if (client == null) {
+            result.complete(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.REJECTED,
+                    "AmazonSnsProvider is not configured or already closed", 0));
+            return result;
+        }
 
         try {
-            SnsClientFactory.getSnsClient(clientToken, clientSecret).publish(new PublishRequest()
+            client.client.publishAsync(new PublishRequest()
                     .withMessage(smsText)
                     .withPhoneNumber(phoneNumber)
-                    .withMessageAttributes(smsAttributes));
+                    .withMessageAttributes(smsAttributes), new AsyncHandler<PublishRequest, PublishResult>() {
+                @Override
+                public void onError(Exception e) {
+                    logger.error("AmazonSnsProvider@Send : SMS to " + phoneNumber + " could not be sent - " + e.getMessage());
+                    result.complete(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION,
+                            e.getMessage(), System.nanoTime() - startTime));
+                    client.release();
+                }
 
-            return true;
+                @Override
+                public void onSuccess(PublishRequest request, PublishResult publishResult) {
+                    result.complete(SmsDeliveryResult.success(publishResult.getMessageId(), System.nanoTime() - startTime));
+                    client.release();
+                }
+            });
         } catch (Exception e) {
-            logger.debug("AmazonSnsProvider@Send : Exception Caught -" + e.getMessage());
-            return false;
+            logger.error("AmazonSnsProvider@Send : Exception Caught -" + e.getMessage());
+            result.complete(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION,
+                    e.getMessage(), System.nanoTime() - startTime));
+            client.release();
+        }
+        return result;
+    }
+
+    // The current client with a publish counted on it, or null when not configured or closed. Must be released
+    private CountedClient acquireClient() {
+        while (true) {
+            CountedClient client = snsClient;
+            if (client == null || client.acquire()) {
+                return client;
+            }
+        }
+    }
+
+    // SNS has no multi-recipient publish for phone numbers, so the messages are published concurrently instead
+    @Override
+    public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+        List<CompletableFuture<SmsDeliveryResult>> futures = new ArrayList<>(messages.size());
+        for (SmsMessage message : messages) {
+            futures.add(sendAsync(message.getPhoneNumber(), message.getText()));
+        }
+
+        List<SmsDeliveryResult> results = new ArrayList<>(messages.size());
+        for (CompletableFuture<SmsDeliveryResult> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * Creates the SNS client, replacing the current one only when the credentials or the endpoint changed. A
+     * configuration the client cannot be created from is logged and leaves the current client, if any, in place, so
+     * it disables SNS only and not the chain around it. A replaced client is shut down once the publishes started on
+     * it have completed, without holding up the caller.
+     */
+    @Override
+    public synchronized void configure(Map<String, String> configurations) {
+        String clientToken = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_TOKEN);
+        String clientSecret = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_SECRET);
+        String endpoint = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_SNS_ENDPOINT);
+
+        String key = clientToken + "\n" + clientSecret + "\n" + endpoint;
+        if (snsClient != null && key.equals(snsClientKey)) {
+            return;
+        }
+        AmazonSNSAsyncClient client;
+        try {
+            client = SnsClientFactory.createSnsAsyncClient(clientToken, clientSecret, endpoint);
+        } catch (RuntimeException e) {
+            logger.error("AmazonSnsProvider@configure : SNS client could not be created - " + e.getMessage(), e);
+            return;
+        }
+        CountedClient previousClient = snsClient;
+        snsClient = new CountedClient(client);
+        snsClientKey = key;
+        if (previousClient != null) {
+            previousClient.retire();
         }
     }
 
     @Override
-    public void configure(Map<String, String> configurations) {
-        this.configurations = configurations;
+    public synchronized void close() {
+        CountedClient client = snsClient;
+        snsClient = null;
+        snsClientKey = null;
+        if (client != null) {
+            client.retire();
+        }
+    }
+
+    /**
+     * An SNS client with a count of the publishes started on it, so that a replaced client is only shut down once
+     * the last of them has completed.
+     */
+    private static final class CountedClient {
+
+        private final AmazonSNSAsyncClient client;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean retired;
+
+        CountedClient(AmazonSNSAsyncClient client) {
+            this.client = client;
+        }
+
+        // False once the client is retired, the caller then takes the current client instead
+        boolean acquire() {
+            inFlight.incrementAndGet();
+            if (retired) {
+                release();
+                return false;
+            }
+            return true;
+        }
+
+        void release() {
+            if (inFlight.decrementAndGet() == 0 && retired) {
+                shutdown();
+            }
+        }
+
+        void retire() {
+            retired = true;
+            if (inFlight.get() == 0) {
+                shutdown();
+            }
+        }
+
+        private void shutdown() {
+            if (closed.compareAndSet(false, true)) {
+                client.shutdown();
+            }
+        }
     }
 }
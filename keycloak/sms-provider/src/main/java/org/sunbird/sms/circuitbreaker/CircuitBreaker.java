@@ -0,0 +1,183 @@
+package org.sunbird.sms.circuitbreaker;
+
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Closed / open / half-open circuit breaker over a time-bucketed sliding window of call outcomes.
+ *
+ * <p>The window is a ring of buckets, each tagged with the epoch (time / bucket width) it counts for. A bucket is
+ * recycled by whichever thread first records into it in a new epoch. All state is held in atomics, so recording
+ * an outcome never blocks; a reset racing with a concurrent increment can lose that one sample, which is
+ * acceptable for a failure rate estimate.
+ */
+public class CircuitBreaker {
+
+    private static Logger logger = Logger.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final int BUCKETS = 10;
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long bucketMillis;
+    private final long openMillis;
+    private final int halfOpenProbes;
+
+    private final AtomicLongArray epochs = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray successes = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray failures = new AtomicLongArray(BUCKETS);
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAt;
+    private final AtomicInteger probesStarted = new AtomicInteger();
+    private final AtomicInteger probesSucceeded = new AtomicInteger();
+
+    /**
+     * @param failureRateThreshold fraction of failed calls in the window that opens the circuit
+     * @param minimumCalls         calls needed in the window before the failure rate is trusted
+     * @param windowMillis         length of the sliding window
+     * @param openMillis           how long the circuit stays open before letting probes through
+     * @param halfOpenProbes       successful probes needed to close the circuit again
+     */
+    public CircuitBreaker(String name, double failureRateThreshold, int minimumCalls, long windowMillis,
+                          long openMillis, int halfOpenProbes) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.max(1, minimumCalls);
+        this.bucketMillis = Math.max(1, windowMillis / BUCKETS);
+        this.openMillis = openMillis;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        for (int i = 0; i < BUCKETS; i++) {
+            epochs.set(i, -1);
+        }
+    }
+
+    /**
+     * Returns whether a call may go through. A permitted call must be followed by {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #onIgnored()}.
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                probesStarted.set(0);
+                probesSucceeded.set(0);
+                logger.info("CircuitBreaker - " + name + " OPEN -> HALF_OPEN, letting " + halfOpenProbes + " probes through");
+            }
+            current = state.get();
+        }
+        if (current == State.HALF_OPEN) {
+            return probesStarted.incrementAndGet() <= halfOpenProbes;
+        }
+        return current == State.CLOSED;
+    }
+
+    public void onSuccess() {
+        if (state.get() == State.HALF_OPEN) {
+            if (probesSucceeded.incrementAndGet() >= halfOpenProbes && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                resetWindow();
+                logger.info("CircuitBreaker - " + name + " HALF_OPEN -> CLOSED");
+            }
+            return;
+        }
+        record(successes);
+    }
+
+    /**
+     * Releases the permit of a call whose outcome says nothing about the gateway, e.g. one rejected before it was
+     * sent. Counts neither way, and while half-open lets another probe through in its place.
+     */
+    public void onIgnored() {
+        if (state.get() != State.HALF_OPEN) {
+            return;
+        }
+        int started;
+        do {
+            started = probesStarted.get();
+        } while (started > 0 && !probesStarted.compareAndSet(started, started - 1));
+    }
+
+    public void onFailure() {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            trip(State.HALF_OPEN, "probe failed");
+            return;
+        }
+        record(failures);
+        if (current == State.CLOSED) {
+            long failed = sum(failures);
+            long total = failed + sum(successes);
+            if (total >= minimumCalls && failed >= failureRateThreshold * total) {
+                trip(State.CLOSED, failed + " of " + total + " calls failed");
+            }
+        }
+    }
+
+    public State getState() {
+        State current = state.get();
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return current;
+    }
+
+    public double getFailureRate() {
+        long failed = sum(failures);
+        long total = failed + sum(successes);
+        return total == 0 ? 0 : (double) failed / total;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void trip(State from, String reason) {
+        if (state.compareAndSet(from, State.OPEN)) {
+            openedAt = System.currentTimeMillis();
+            logger.warn("CircuitBreaker - " + name + " " + from + " -> OPEN (" + reason + "), failing fast for " + openMillis + " ms");
+        }
+    }
+
+    private void record(AtomicLongArray counts) {
+        long epoch = System.currentTimeMillis() / bucketMillis;
+        int index = (int) (epoch % BUCKETS);
+        long bucketEpoch = epochs.get(index);
+        if (bucketEpoch != epoch && epochs.compareAndSet(index, bucketEpoch, epoch)) {
+            successes.set(index, 0);
+            failures.set(index, 0);
+        }
+        counts.incrementAndGet(index);
+    }
+
+    private long sum(AtomicLongArray counts) {
+        long oldest = System.currentTimeMillis() / bucketMillis - BUCKETS + 1;
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (epochs.get(i) >= oldest) {
+                sum += counts.get(i);
+            }
+        }
+        return sum;
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < BUCKETS; i++) {
+            epochs.set(i, -1);
+            successes.set(i, 0);
+            failures.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.sunbird.sms.circuitbreaker;
+
+import org.sunbird.sms.SMSConfigurationUtil;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Guards a provider with a {@link CircuitBreaker}: while the gateway keeps failing, sends fail fast with
+ * {@link SmsDeliveryResult.ErrorClass#CIRCUIT_OPEN} instead of waiting out connection timeouts.
+ */
+public class CircuitBreakerSmsProvider implements ISmsProvider {
+
+    private static final int DEFAULT_FAILURE_RATE = 50;
+    private static final int DEFAULT_MINIMUM_CALLS = 10;
+    private static final long DEFAULT_WINDOW = 10000;
+    private static final long DEFAULT_OPEN_DURATION = 30000;
+    private static final int DEFAULT_HALF_OPEN_PROBES = 3;
+
+    private final String name;
+    private final ISmsProvider delegate;
+    private volatile CircuitBreaker circuitBreaker;
+
+    public CircuitBreakerSmsProvider(String name, ISmsProvider delegate) {
+        this.name = name;
+        this.delegate = delegate;
+    }
+
+    public static boolean isEnabled(Map<String, String> configurations) {
+        return SMSConfigurationUtil.getConfigBoolean(configurations, SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_ENABLED, true);
+    }
+
+    /**
+     * Creates the circuit breaker. The wrapped provider is configured by its own factory.
+     */
+    @Override
+    public void configure(Map<String, String> configurations) {
+        circuitBreaker = new CircuitBreaker(name,
+                SMSConfigurationUtil.getConfigInt(configurations, SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_FAILURE_RATE, DEFAULT_FAILURE_RATE) / 100.0,
+                SMSConfigurationUtil.getConfigInt(configurations, SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_MINIMUM_CALLS, DEFAULT_MINIMUM_CALLS),
+                SMSConfigurationUtil.getConfigLong(configurations, SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_WINDOW, DEFAULT_WINDOW),
+                SMSConfigurationUtil.getConfigLong(configurations, SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_OPEN_DURATION, DEFAULT_OPEN_DURATION),
+                SMSConfigurationUtil.getConfigInt(configurations, SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_HALF_OPEN_PROBES, DEFAULT_HALF_OPEN_PROBES));
+    }
+
+    @Override
+    public boolean send(String phoneNumber, String smsText) {
+        return sendAsync(phoneNumber, smsText).join().isSuccess();
+    }
+
+    /**
+     * The outcome is recorded on the wrapped provider's future and the caller gets a future of its own, so a caller
+     * that cancels its future, e.g. the hedge once the duplicate won, does not keep a probe from being recorded.
+     */
+    @Override
+    public CompletableFuture<SmsDeliveryResult> sendAsync(String phoneNumber, String smsText) {
+        final CircuitBreaker breaker = circuitBreaker;
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.completedFuture(circuitOpen());
+        }
+
+        CompletableFuture<SmsDeliveryResult> sent;
+        try {
+            sent = delegate.sendAsync(phoneNumber, smsText);
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+        final CompletableFuture<SmsDeliveryResult> result = new CompletableFuture<>();
+        sent.whenComplete(new BiConsumer<SmsDeliveryResult, Throwable>() {
+            @Override
+            public void accept(SmsDeliveryResult deliveryResult, Throwable throwable) {
+                if (throwable != null) {
+                    breaker.onFailure();
+                    result.completeExceptionally(throwable);
+                } else {
+                    record(breaker, deliveryResult);
+                    result.complete(deliveryResult);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * A batch counts as a single call, it either goes through as a whole or fails fast as a whole.
+     */
+    @Override
+    public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+        CircuitBreaker breaker = circuitBreaker;
+        if (!breaker.tryAcquire()) {
+            List<SmsDeliveryResult> results = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                results.add(circuitOpen());
+            }
+            return results;
+        }
+
+        List<SmsDeliveryResult> results = delegate.sendBatch(messages);
+        boolean anySuccess = false;
+        SmsDeliveryResult failure = null;
+        for (SmsDeliveryResult result : results) {
+            if (result.isSuccess()) {
+                anySuccess = true;
+            } else if (failure == null && !isNeutral(result)) {
+                failure = result;
+            }
+        }
+        if (anySuccess) {
+            breaker.onSuccess();
+        } else if (failure != null) {
+            breaker.onFailure();
+        } else {
+            breaker.onIgnored();
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    public CircuitBreaker.State getState() {
+        return circuitBreaker.getState();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private static void record(CircuitBreaker breaker, SmsDeliveryResult result) {
+        if (result.isSuccess()) {
+            breaker.onSuccess();
+        } else if (isNeutral(result)) {
+            breaker.onIgnored();
+        } else {
+            breaker.onFailure();
+        }
+    }
+
+    // Invalid requests and local rejections, e.g. a full send queue or a rate limit, say nothing about the gateway
+    private static boolean isNeutral(SmsDeliveryResult result) {
+        switch (result.getErrorClass()) {
+            case INVALID_REQUEST:
+            case REJECTED:
+            case RATE_LIMITED:
+            case CIRCUIT_OPEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private SmsDeliveryResult circuitOpen() {
+        return SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.CIRCUIT_OPEN, "Circuit breaker for " + name + " is open", 0);
+    }
+}
@@ -0,0 +1,57 @@
+package org.sunbird.sms.dlr;
+
+/**
+ * A delivery report of one message as pushed by a gateway, identified by the message id the gateway returned when
+ * the message was sent and the number it was sent to.
+ */
+public class DeliveryReceipt {
+
+    public enum Status {
+        DELIVERED,
+        FAILED,
+        /**
+         * An intermediate report, e.g. handed to the carrier, a final one is still to come.
+         */
+        PENDING
+    }
+
+    private final String provider;
+    private final String messageId;
+    private final String phoneNumber;
+    private final Status status;
+    private final String description;
+
+    public DeliveryReceipt(String provider, String messageId, String phoneNumber, Status status, String description) {
+        this.provider = provider;
+        this.messageId = messageId;
+        this.phoneNumber = phoneNumber;
+        this.status = status;
+        this.description = description;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryReceipt{provider=" + provider + ", messageId=" + messageId + ", phoneNumber=" + phoneNumber + ", status=" + status
+                + ", description=" + description + "}";
+    }
+}
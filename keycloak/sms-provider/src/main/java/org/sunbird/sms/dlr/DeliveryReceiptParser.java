@@ -0,0 +1,98 @@
+package org.sunbird.sms.dlr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.sunbird.sms.routing.RoutingSmsProviderFactory;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the delivery callbacks of the supported gateways into {@link DeliveryReceipt}s.
+ */
+public class DeliveryReceiptParser {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private DeliveryReceiptParser() {
+    }
+
+    /**
+     * Parses a Msg91 delivery report: a JSON array of requests, each with the {@code requestId} returned by the send
+     * and a {@code report} per {@code number}, posted either as the body or as the form field {@code data}. Status 1 is
+     * delivered, 2 and the 9 to 26 rejection codes are failures, everything else is intermediate.
+     */
+    public static List<DeliveryReceipt> parseMsg91(String body) throws IOException {
+        String json = body.trim();
+        if (json.startsWith("data=")) {
+            json = decode(json.substring("data=".length()));
+        }
+
+        List<DeliveryReceipt> receipts = new ArrayList<>();
+        for (JsonNode request : asArray(mapper.readTree(json))) {
+            String requestId = request.path("requestId").asText(null);
+            if (requestId == null) {
+                continue;
+            }
+            for (JsonNode report : asArray(request.path("report"))) {
+                receipts.add(new DeliveryReceipt(RoutingSmsProviderFactory.MSG91, requestId,
+                        report.path("number").asText(null), msg91Status(report.path("status").asInt(-1)), report.path("desc").asText(null)));
+            }
+        }
+        return receipts;
+    }
+
+    /**
+     * Parses Amazon SNS SMS delivery status log entries, as forwarded from CloudWatch Logs: a single entry or an
+     * array of them, each with {@code notification.messageId}, {@code delivery.destination} and a {@code status} of
+     * SUCCESS or FAILURE.
+     */
+    public static List<DeliveryReceipt> parseSns(String body) throws IOException {
+        List<DeliveryReceipt> receipts = new ArrayList<>();
+        for (JsonNode entry : asArray(mapper.readTree(body))) {
+            String messageId = entry.path("notification").path("messageId").asText(null);
+            if (messageId == null) {
+                continue;
+            }
+            String status = entry.path("status").asText("");
+            receipts.add(new DeliveryReceipt(RoutingSmsProviderFactory.AMAZON_SNS, messageId,
+                    entry.path("delivery").path("destination").asText(null),
+                    "SUCCESS".equals(status) ? DeliveryReceipt.Status.DELIVERED
+                            : "FAILURE".equals(status) ? DeliveryReceipt.Status.FAILED : DeliveryReceipt.Status.PENDING,
+                    entry.path("delivery").path("providerResponse").asText(null)));
+        }
+        return receipts;
+    }
+
+    private static DeliveryReceipt.Status msg91Status(int status) {
+        if (status == 1) {
+            return DeliveryReceipt.Status.DELIVERED;
+        }
+        if (status == 2 || (status >= 9 && status <= 26)) {
+            return DeliveryReceipt.Status.FAILED;
+        }
+        return DeliveryReceipt.Status.PENDING;
+    }
+
+    private static Iterable<JsonNode> asArray(JsonNode node) {
+        List<JsonNode> nodes = new ArrayList<>();
+        if (node == null || node.isMissingNode() || node.isNull()) {
+            return nodes;
+        }
+        if (node.isArray()) {
+            for (JsonNode element : node) {
+                nodes.add(element);
+            }
+        } else {
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private static String decode(String value) throws UnsupportedEncodingException {
+        return URLDecoder.decode(value, "UTF-8");
+    }
+}
@@ -0,0 +1,155 @@
+package org.sunbird.sms.dlr;
+
+import org.jboss.logging.Logger;
+import org.sunbird.utils.NamedThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes delivery receipts off the webhook threads: {@link #offer} only enqueues, a single background thread drains
+ * the queue in batches, correlates the receipts with the {@link DeliveryTracker} and records the outcome in the
+ * {@link DeliveryStats}. When the queue is full receipts are dropped rather than slowing down the callbacks; they
+ * only feed statistics.
+ */
+public class DeliveryReceiptProcessor implements Closeable {
+
+    private static Logger logger = Logger.getLogger(DeliveryReceiptProcessor.class);
+
+    private final BlockingQueue<DeliveryReceipt> queue;
+    private final int batchSize;
+    private final DeliveryTracker tracker;
+    private final DeliveryStats stats;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+
+    private volatile Thread processingThread;
+
+    public DeliveryReceiptProcessor(int capacity, int batchSize) {
+        this(capacity, batchSize, DeliveryTracker.getInstance(), DeliveryStats.getInstance());
+    }
+
+    public DeliveryReceiptProcessor(int capacity, int batchSize, DeliveryTracker tracker, DeliveryStats stats) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.tracker = tracker;
+        this.stats = stats;
+    }
+
+    public synchronized void start() {
+        if (processingThread != null) {
+            return;
+        }
+        processingThread = new NamedThreadFactory("sms-dlr-processor").newThread(new Runnable() {
+            @Override
+            public void run() {
+                processReceipts();
+            }
+        });
+        processingThread.start();
+    }
+
+    /**
+     * Enqueues the receipt without blocking, returns false if it was dropped because the queue is full.
+     */
+    public boolean offer(DeliveryReceipt receipt) {
+        received.incrementAndGet();
+        if (queue.offer(receipt)) {
+            return true;
+        }
+        if (dropped.incrementAndGet() % 1000 == 1) {
+            logger.warn("DeliveryReceiptProcessor - queue full, " + dropped.get() + " receipts dropped so far");
+        }
+        return false;
+    }
+
+    /**
+     * Stops the processing thread, receipts still queued are discarded.
+     */
+    @Override
+    public synchronized void close() {
+        Thread thread = processingThread;
+        processingThread = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Final receipts for messages not sent by this node, or sent too long ago to still be tracked.
+     */
+    public long getUnmatched() {
+        return unmatched.get();
+    }
+
+    private void processReceipts() {
+        List<DeliveryReceipt> batch = new ArrayList<>(batchSize);
+        while (processingThread == Thread.currentThread()) {
+            try {
+                DeliveryReceipt first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.error("DeliveryReceiptProcessor - failed to process delivery receipts", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void process(List<DeliveryReceipt> batch) {
+        long now = System.nanoTime();
+        for (DeliveryReceipt receipt : batch) {
+            if (receipt.getStatus() == DeliveryReceipt.Status.PENDING) {
+                continue;
+            }
+            // Only receipts for messages this node sent count, forged or replayed callbacks cannot move the routing
+            DeliveryTracker.SentMessage sent = tracker.delivered(receipt.getProvider(), receipt.getMessageId(),
+                    receipt.getPhoneNumber());
+            if (sent == null) {
+                unmatched.incrementAndGet();
+                continue;
+            }
+
+            boolean success = receipt.getStatus() == DeliveryReceipt.Status.DELIVERED;
+            // Counted after the stats are recorded, so whoever reads a count also sees the receipt in the stats
+            stats.record(sent.getProvider(), sent.getRealm(), success, now - sent.getSentAt());
+            (success ? delivered : failed).incrementAndGet();
+            if (!success) {
+                logger.debug("DeliveryReceiptProcessor - message " + receipt.getMessageId() + " of realm " + sent.getRealm()
+                        + " was not delivered by " + sent.getProvider() + ": " + receipt.getDescription());
+            }
+        }
+    }
+}
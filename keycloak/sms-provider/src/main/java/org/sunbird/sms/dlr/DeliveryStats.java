@@ -0,0 +1,76 @@
+package org.sunbird.sms.dlr;
+
+import org.sunbird.sms.metrics.SmsMetrics;
+import org.sunbird.sms.routing.ProviderStats;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Rolling delivery rate and time to delivery of each provider and realm, from the receipts correlated with messages
+ * sent by this node. Gateways that accept messages they then fail to deliver are ranked down by the router of that
+ * realm only, since realms may reach the same provider with their own accounts and sender ids.
+ */
+public class DeliveryStats {
+
+    private static final long DECAY = 60000;
+    private static final DeliveryStats INSTANCE = new DeliveryStats();
+
+    private final ConcurrentMap<Key, ProviderStats> stats = new ConcurrentHashMap<>();
+
+    public static DeliveryStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param realm the realm the message was sent for, null if unknown
+     */
+    public void record(String provider, String realm, boolean delivered, long deliveryNanos) {
+        Key key = new Key(provider, realm);
+        ProviderStats providerStats = stats.get(key);
+        if (providerStats == null) {
+            stats.putIfAbsent(key, new ProviderStats(DECAY, 0));
+            providerStats = stats.get(key);
+        }
+        providerStats.record(delivered, deliveryNanos);
+    }
+
+    /**
+     * The share of recent messages of the provider in the realm that were not delivered, 0 if no receipts were seen.
+     */
+    public double getFailureRate(String provider, String realm) {
+        ProviderStats providerStats = stats.get(new Key(provider, realm));
+        return providerStats != null ? providerStats.getErrorRate() : 0;
+    }
+
+    /**
+     * The delivery statistics of the provider in the realm, or null if no receipts were seen.
+     */
+    public ProviderStats get(String provider, String realm) {
+        return stats.get(new Key(provider, realm));
+    }
+
+    private static final class Key {
+        final String provider;
+        final String realm;
+
+        Key(String provider, String realm) {
+            this.provider = provider;
+            this.realm = realm == null ? SmsMetrics.UNKNOWN_REALM : realm;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return provider.equals(other.provider) && realm.equals(other.realm);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * provider.hashCode() + realm.hashCode();
+        }
+    }
+}
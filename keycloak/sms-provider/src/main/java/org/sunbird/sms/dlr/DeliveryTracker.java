@@ -0,0 +1,83 @@
+package org.sunbird.sms.dlr;
+
+import org.sunbird.utils.BoundedCache;
+
+/**
+ * Remembers the messages sent on this node by provider message id and recipient, so that delivery receipts can be
+ * correlated with the provider and realm that sent them. The recipient is part of the key because a batch send may
+ * return one message id for all its numbers, each of which gets its own receipt. Bounded: messages whose receipt
+ * never arrives are eventually evicted by newer ones.
+ */
+public class DeliveryTracker {
+
+    private static final int DEFAULT_MAX_MESSAGES = 131072;
+    private static final DeliveryTracker INSTANCE = new DeliveryTracker(DEFAULT_MAX_MESSAGES);
+
+    private final BoundedCache<String, SentMessage> messages;
+
+    public DeliveryTracker(int maxMessages) {
+        this.messages = new BoundedCache<>(maxMessages);
+    }
+
+    public static DeliveryTracker getInstance() {
+        return INSTANCE;
+    }
+
+    public void sent(String provider, String messageId, String phoneNumber, String realm) {
+        messages.put(key(provider, messageId, phoneNumber), new SentMessage(provider, realm, System.nanoTime()));
+    }
+
+    /**
+     * Returns the sent message a final receipt is about and forgets it, or null if it was not sent by this node.
+     */
+    public SentMessage delivered(String provider, String messageId, String phoneNumber) {
+        return messages.remove(key(provider, messageId, phoneNumber));
+    }
+
+    /**
+     * Returns the sent message an intermediate receipt is about, or null if it was not sent by this node.
+     */
+    public SentMessage pending(String provider, String messageId, String phoneNumber) {
+        return messages.get(key(provider, messageId, phoneNumber));
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    /**
+     * Gateways report the number without the leading + (Msg91) or with it (SNS), only the digits are compared.
+     */
+    private static String key(String provider, String messageId, String phoneNumber) {
+        String digits = phoneNumber == null ? "" : phoneNumber.replaceAll("[^0-9]", "");
+        return provider + "/" + messageId + "/" + digits;
+    }
+
+    public static final class SentMessage {
+
+        private final String provider;
+        private final String realm;
+        private final long sentAt;
+
+        private SentMessage(String provider, String realm, long sentAt) {
+            this.provider = provider;
+            this.realm = realm;
+            this.sentAt = sentAt;
+        }
+
+        public String getProvider() {
+            return provider;
+        }
+
+        public String getRealm() {
+            return realm;
+        }
+
+        /**
+         * When the message was sent, as {@link System#nanoTime()}.
+         */
+        public long getSentAt() {
+            return sentAt;
+        }
+    }
+}
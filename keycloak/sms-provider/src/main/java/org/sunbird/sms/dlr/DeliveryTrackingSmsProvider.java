@@ -0,0 +1,77 @@
+package org.sunbird.sms.dlr;
+
+import org.sunbird.sms.metrics.SmsMetrics;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Records the message id and recipient of every message the gateway accepted in the {@link DeliveryTracker}, so that
+ * its delivery receipt can be correlated later.
+ */
+public class DeliveryTrackingSmsProvider implements ISmsProvider {
+
+    private final String name;
+    private final ISmsProvider delegate;
+    private final DeliveryTracker tracker;
+
+    public DeliveryTrackingSmsProvider(String name, ISmsProvider delegate) {
+        this(name, delegate, DeliveryTracker.getInstance());
+    }
+
+    public DeliveryTrackingSmsProvider(String name, ISmsProvider delegate, DeliveryTracker tracker) {
+        this.name = name;
+        this.delegate = delegate;
+        this.tracker = tracker;
+    }
+
+    /**
+     * Nothing to configure, the wrapped provider is configured by its own factory.
+     */
+    @Override
+    public void configure(Map<String, String> configurations) {
+    }
+
+    @Override
+    public boolean send(String phoneNumber, String smsText) {
+        return sendAsync(phoneNumber, smsText).join().isSuccess();
+    }
+
+    @Override
+    public CompletableFuture<SmsDeliveryResult> sendAsync(final String phoneNumber, String smsText) {
+        final String realm = SmsMetrics.getRealm();
+        return delegate.sendAsync(phoneNumber, smsText).thenApply(new Function<SmsDeliveryResult, SmsDeliveryResult>() {
+            @Override
+            public SmsDeliveryResult apply(SmsDeliveryResult result) {
+                track(result, phoneNumber, realm);
+                return result;
+            }
+        });
+    }
+
+    @Override
+    public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+        List<SmsDeliveryResult> results = delegate.sendBatch(messages);
+        String realm = SmsMetrics.getRealm();
+        for (int i = 0; i < results.size(); i++) {
+            track(results.get(i), messages.get(i).getPhoneNumber(), realm);
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private void track(SmsDeliveryResult result, String phoneNumber, String realm) {
+        if (result.isSuccess() && result.getProviderMessageId() != null) {
+            tracker.sent(name, result.getProviderMessageId(), phoneNumber, realm);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package org.sunbird.sms.hedging;
+
+import org.jboss.logging.Logger;
+import org.sunbird.sms.SMSConfigurationUtil;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.metrics.LatencyHistogram;
+import org.sunbird.sms.metrics.SmsMetrics;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+import org.sunbird.sms.ratelimit.TokenBucket;
+import org.sunbird.utils.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Sends through the primary provider and, if it has not answered after the hedge delay, sends the same message
+ * through the secondary provider as well. The first successful result wins, the timer or the duplicate still
+ * pending is cancelled. A failed primary fails over to the secondary right away.
+ *
+ * <p>The hedge delay is either fixed or the given percentile of the primary's latency over the last minute. Hedges
+ * are capped by a per-minute budget since every hedge that fires may be a second billed message; failovers are not
+ * counted against it.
+ */
+public class HedgedSmsProvider implements ISmsProvider {
+
+    private static Logger logger = Logger.getLogger(HedgedSmsProvider.class);
+
+    private static final long DEFAULT_DELAY = 0;
+    private static final int DEFAULT_PERCENTILE = 95;
+    private static final long DEFAULT_INITIAL_DELAY = 2000;
+    private static final long DEFAULT_MIN_DELAY = 200;
+    private static final int DEFAULT_MIN_SAMPLES = 20;
+    private static final int DEFAULT_BUDGET = 60;
+
+    private final String primaryName;
+    private final ISmsProvider primary;
+    private final String secondaryName;
+    private final ISmsProvider secondary;
+    private final ScheduledExecutorService scheduler;
+    private final RollingLatency primaryLatency = new RollingLatency(TimeUnit.MINUTES.toNanos(1));
+
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong hedgesOverBudget = new AtomicLong();
+
+    private volatile long fixedDelayNanos;
+    private volatile double percentile;
+    private volatile long initialDelayNanos;
+    private volatile long minDelayNanos;
+    private volatile int minSamples;
+    private volatile TokenBucket budget;
+
+    public HedgedSmsProvider(String primaryName, ISmsProvider primary, String secondaryName, ISmsProvider secondary) {
+        this.primaryName = primaryName;
+        this.primary = primary;
+        this.secondaryName = secondaryName;
+        this.secondary = secondary;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("sms-hedge-timer"));
+    }
+
+    public static boolean isEnabled(Map<String, String> configurations) {
+        return SMSConfigurationUtil.getConfigBoolean(configurations, SmsConfigurationConstants.CONF_SMS_HEDGE_ENABLED, false);
+    }
+
+    /**
+     * Reads the hedge delay and budget. The hedged providers are configured by their own factories.
+     */
+    @Override
+    public void configure(Map<String, String> configurations) {
+        fixedDelayNanos = TimeUnit.MILLISECONDS.toNanos(SMSConfigurationUtil.getConfigLong(configurations,
+                SmsConfigurationConstants.CONF_SMS_HEDGE_DELAY, DEFAULT_DELAY));
+        percentile = SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_HEDGE_PERCENTILE, DEFAULT_PERCENTILE);
+        initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(SMSConfigurationUtil.getConfigLong(configurations,
+                SmsConfigurationConstants.CONF_SMS_HEDGE_INITIAL_DELAY, DEFAULT_INITIAL_DELAY));
+        minDelayNanos = TimeUnit.MILLISECONDS.toNanos(SMSConfigurationUtil.getConfigLong(configurations,
+                SmsConfigurationConstants.CONF_SMS_HEDGE_MIN_DELAY, DEFAULT_MIN_DELAY));
+        minSamples = SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_HEDGE_MIN_SAMPLES, DEFAULT_MIN_SAMPLES);
+        int perMinute = SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_HEDGE_BUDGET, DEFAULT_BUDGET);
+        budget = perMinute > 0 ? new TokenBucket(perMinute, perMinute, 1, TimeUnit.MINUTES) : null;
+    }
+
+    @Override
+    public boolean send(String phoneNumber, String smsText) {
+        return sendAsync(phoneNumber, smsText).join().isSuccess();
+    }
+
+    @Override
+    public CompletableFuture<SmsDeliveryResult> sendAsync(String phoneNumber, String smsText) {
+        HedgedSend hedgedSend = new HedgedSend(phoneNumber, smsText);
+        hedgedSend.start(getHedgeDelayNanos());
+        return hedgedSend.result;
+    }
+
+    /**
+     * Batches are not hedged, duplicating a whole batch costs too much. Messages the primary fails to send are
+     * retried with the secondary.
+     */
+    @Override
+    public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+        List<SmsDeliveryResult> results = new ArrayList<>(primary.sendBatch(messages));
+        List<Integer> failed = new ArrayList<>();
+        List<SmsMessage> retries = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).isSuccess()) {
+                failed.add(i);
+                retries.add(messages.get(i));
+            }
+        }
+        if (retries.isEmpty()) {
+            return results;
+        }
+
+        logger.warn("HedgedSmsProvider - " + retries.size() + " of " + messages.size() + " messages failed on "
+                + primaryName + ", failing over to " + secondaryName);
+        List<SmsDeliveryResult> retried = secondary.sendBatch(retries);
+        for (int j = 0; j < retried.size(); j++) {
+            results.set(failed.get(j), retried.get(j));
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        primary.close();
+        secondary.close();
+    }
+
+    /**
+     * Number of duplicate sends started because the primary was slow.
+     */
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    /**
+     * Number of hedged sends the secondary answered successfully first.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * Number of hedges skipped because the budget was used up.
+     */
+    public long getHedgesOverBudget() {
+        return hedgesOverBudget.get();
+    }
+
+    /**
+     * The delay after which a send still pending on the primary is hedged.
+     */
+    public long getHedgeDelayNanos() {
+        if (fixedDelayNanos > 0) {
+            return fixedDelayNanos;
+        }
+        long observed = primaryLatency.getValueAtPercentile(percentile, minSamples);
+        return Math.max(minDelayNanos, observed > 0 ? observed : initialDelayNanos);
+    }
+
+    // Fail-fast rejections carry no latency information, they would pull the hedge delay down
+    private static boolean isLatencySample(SmsDeliveryResult result) {
+        return result.getErrorClass() != SmsDeliveryResult.ErrorClass.CIRCUIT_OPEN
+                && result.getErrorClass() != SmsDeliveryResult.ErrorClass.RATE_LIMITED;
+    }
+
+    private static SmsDeliveryResult resultOf(SmsDeliveryResult result, Throwable throwable) {
+        return result != null ? result
+                : SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION, String.valueOf(throwable), 0);
+    }
+
+    /**
+     * State of one hedged send. Transitions are guarded by the instance lock, the sends themselves are started
+     * outside of it since providers may complete them on the calling thread.
+     */
+    private final class HedgedSend {
+
+        private final String phoneNumber;
+        private final String smsText;
+        private final String realm = SmsMetrics.getRealm();
+        private final long startTime = System.nanoTime();
+        private final CompletableFuture<SmsDeliveryResult> result = new CompletableFuture<>();
+
+        private CompletableFuture<SmsDeliveryResult> primaryResult;
+        private CompletableFuture<SmsDeliveryResult> secondaryResult;
+        private ScheduledFuture<?> hedgeTimer;
+        private boolean secondaryStarted;
+        private boolean hedged;
+        private boolean completed;
+        private int pending = 1;
+
+        private HedgedSend(String phoneNumber, String smsText) {
+            this.phoneNumber = phoneNumber;
+            this.smsText = smsText;
+        }
+
+        void start(long hedgeDelayNanos) {
+            CompletableFuture<SmsDeliveryResult> sent = primary.sendAsync(phoneNumber, smsText);
+            synchronized (this) {
+                primaryResult = sent;
+            }
+            sent.whenComplete(new BiConsumer<SmsDeliveryResult, Throwable>() {
+                @Override
+                public void accept(SmsDeliveryResult deliveryResult, Throwable throwable) {
+                    onPrimaryResult(resultOf(deliveryResult, throwable));
+                }
+            });
+
+            synchronized (this) {
+                if (completed || secondaryStarted) {
+                    return;
+                }
+                try {
+                    hedgeTimer = scheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            hedge();
+                        }
+                    }, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    logger.debug("HedgedSmsProvider - closed, sending without hedge");
+                }
+            }
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (completed || secondaryStarted) {
+                    return;
+                }
+                TokenBucket hedgeBudget = budget;
+                if (hedgeBudget == null || !hedgeBudget.tryAcquire()) {
+                    hedgesOverBudget.incrementAndGet();
+                    return;
+                }
+                secondaryStarted = true;
+                hedged = true;
+                pending++;
+            }
+            hedges.incrementAndGet();
+            logger.debug("HedgedSmsProvider - " + primaryName + " has not answered after "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms, hedging with " + secondaryName);
+            sendSecondary();
+        }
+
+        private void onPrimaryResult(SmsDeliveryResult deliveryResult) {
+            // A primary cancelled because the hedge won counts with the time it had taken so far, dropping it
+            // would hide exactly the slow tail the delay is derived from
+            if (isLatencySample(deliveryResult)) {
+                primaryLatency.record(System.nanoTime() - startTime);
+            }
+            if (deliveryResult.isSuccess()) {
+                complete(deliveryResult, false);
+                return;
+            }
+
+            boolean failover;
+            synchronized (this) {
+                pending--;
+                failover = !completed && !secondaryStarted;
+                if (failover) {
+                    secondaryStarted = true;
+                    pending++;
+                    cancel(hedgeTimer);
+                }
+            }
+            if (failover) {
+                logger.warn("HedgedSmsProvider - " + primaryName + " failed with " + deliveryResult.getErrorClass()
+                        + ", failing over to " + secondaryName);
+                sendSecondary();
+            } else {
+                failed(deliveryResult);
+            }
+        }
+
+        private void sendSecondary() {
+            // The hedge runs on the timer thread, carry the realm over for the secondary's metrics
+            String previousRealm = SmsMetrics.setRealm(realm);
+            CompletableFuture<SmsDeliveryResult> sent;
+            try {
+                sent = secondary.sendAsync(phoneNumber, smsText);
+            } finally {
+                SmsMetrics.setRealm(previousRealm);
+            }
+            synchronized (this) {
+                secondaryResult = sent;
+            }
+            sent.whenComplete(new BiConsumer<SmsDeliveryResult, Throwable>() {
+                @Override
+                public void accept(SmsDeliveryResult deliveryResult, Throwable throwable) {
+                    SmsDeliveryResult secondaryDelivery = resultOf(deliveryResult, throwable);
+                    if (secondaryDelivery.isSuccess()) {
+                        complete(secondaryDelivery, true);
+                    } else {
+                        synchronized (HedgedSend.this) {
+                            pending--;
+                        }
+                        failed(secondaryDelivery);
+                    }
+                }
+            });
+        }
+
+        private void failed(SmsDeliveryResult deliveryResult) {
+            synchronized (this) {
+                if (completed || pending > 0) {
+                    return;
+                }
+                completed = true;
+            }
+            result.complete(deliveryResult);
+        }
+
+        // The winner is settled under the lock, so the duplicate is cancelled before the caller sees the result
+        private void complete(SmsDeliveryResult deliveryResult, boolean fromSecondary) {
+            CompletableFuture<SmsDeliveryResult> duplicate;
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                completed = true;
+                cancel(hedgeTimer);
+                duplicate = fromSecondary ? primaryResult : secondaryResult;
+                if (fromSecondary && hedged) {
+                    hedgeWins.incrementAndGet();
+                }
+            }
+            // Stops whatever has not happened yet, e.g. a failover of the duplicate; a message already handed
+            // to a gateway cannot be recalled
+            if (duplicate != null) {
+                duplicate.cancel(false);
+            }
+            result.complete(deliveryResult);
+        }
+
+        private void cancel(ScheduledFuture<?> timer) {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Latency percentiles over the current and the previous period, so the hedge delay follows the primary as its
+     * latency changes rather than averaging over its whole lifetime.
+     */
+    private static final class RollingLatency {
+
+        private final long periodNanos;
+        private final AtomicLong rotateAt;
+        private volatile LatencyHistogram current = new LatencyHistogram();
+        private volatile LatencyHistogram previous = new LatencyHistogram();
+
+        private RollingLatency(long periodNanos) {
+            this.periodNanos = periodNanos;
+            this.rotateAt = new AtomicLong(System.nanoTime() + periodNanos);
+        }
+
+        void record(long latencyNanos) {
+            rotate();
+            current.record(latencyNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * The percentile in nanoseconds of whichever period saw more samples, or 0 if neither saw enough.
+         */
+        long getValueAtPercentile(double percentile, long minSamples) {
+            rotate();
+            LatencyHistogram latest = current;
+            LatencyHistogram earlier = previous;
+            LatencyHistogram histogram = latest.getCount() >= earlier.getCount() ? latest : earlier;
+            if (histogram.getCount() < Math.max(1, minSamples)) {
+                return 0;
+            }
+            return TimeUnit.MICROSECONDS.toNanos(histogram.getValueAtPercentile(percentile));
+        }
+
+        private void rotate() {
+            long now = System.nanoTime();
+            long due = rotateAt.get();
+            if (now - due >= 0 && rotateAt.compareAndSet(due, now + periodNanos)) {
+                previous = current;
+                current = new LatencyHistogram();
+            }
+        }
+    }
+}
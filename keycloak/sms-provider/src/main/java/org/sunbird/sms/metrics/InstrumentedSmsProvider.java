@@ -0,0 +1,102 @@
+package org.sunbird.sms.metrics;
+
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Records latency, outcome and in-flight count of every send through a provider in {@link SmsMetrics}, tagged with
+ * the provider name and the realm set on the calling thread.
+ */
+public class InstrumentedSmsProvider implements ISmsProvider {
+
+    private final String name;
+    private final ISmsProvider delegate;
+    private final SmsMetrics metrics;
+
+    public InstrumentedSmsProvider(String name, ISmsProvider delegate) {
+        this(name, delegate, SmsMetrics.getInstance());
+    }
+
+    public InstrumentedSmsProvider(String name, ISmsProvider delegate, SmsMetrics metrics) {
+        this.name = name;
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Nothing to configure, the wrapped provider is configured by its own factory.
+     */
+    @Override
+    public void configure(Map<String, String> configurations) {
+    }
+
+    @Override
+    public boolean send(String phoneNumber, String smsText) {
+        return sendAsync(phoneNumber, smsText).join().isSuccess();
+    }
+
+    @Override
+    public CompletableFuture<SmsDeliveryResult> sendAsync(String phoneNumber, String smsText) {
+        final SmsMetrics.ProviderMetrics providerMetrics = metrics.get(name, SmsMetrics.getRealm());
+        final long startTime = System.nanoTime();
+        providerMetrics.started(1);
+
+        CompletableFuture<SmsDeliveryResult> result;
+        try {
+            result = delegate.sendAsync(phoneNumber, smsText);
+        } catch (RuntimeException e) {
+            providerMetrics.completed(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION, e.getMessage(), 0),
+                    System.nanoTime() - startTime);
+            throw e;
+        }
+        return result.whenComplete(new BiConsumer<SmsDeliveryResult, Throwable>() {
+            @Override
+            public void accept(SmsDeliveryResult deliveryResult, Throwable throwable) {
+                if (deliveryResult == null) {
+                    deliveryResult = SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION,
+                            String.valueOf(throwable), 0);
+                }
+                providerMetrics.completed(deliveryResult, System.nanoTime() - startTime);
+            }
+        });
+    }
+
+    /**
+     * Every message of the batch is recorded with the latency of the whole batch call.
+     */
+    @Override
+    public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+        SmsMetrics.ProviderMetrics providerMetrics = metrics.get(name, SmsMetrics.getRealm());
+        long startTime = System.nanoTime();
+        providerMetrics.started(messages.size());
+
+        List<SmsDeliveryResult> results;
+        try {
+            results = delegate.sendBatch(messages);
+        } catch (RuntimeException e) {
+            long latency = System.nanoTime() - startTime;
+            SmsDeliveryResult failure = SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION, e.getMessage(), 0);
+            for (int i = 0; i < messages.size(); i++) {
+                providerMetrics.completed(failure, latency);
+            }
+            throw e;
+        }
+
+        long latency = System.nanoTime() - startTime;
+        for (SmsDeliveryResult result : results) {
+            providerMetrics.completed(result, latency);
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
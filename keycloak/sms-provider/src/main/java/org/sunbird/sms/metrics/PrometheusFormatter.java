@@ -0,0 +1,88 @@
+package org.sunbird.sms.metrics;
+
+import org.sunbird.sms.provider.SmsDeliveryResult;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes {@link SmsMetrics} in the Prometheus text exposition format (version 0.0.4).
+ */
+public class PrometheusFormatter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // Upper bounds of the exported latency buckets, in microseconds
+    private static final long[] BUCKETS_MICROS = {
+            5000, 10000, 25000, 50000, 100000, 250000, 500000,
+            1000000, 2500000, 5000000, 10000000, 30000000, 60000000
+    };
+
+    public static String format(List<SmsMetrics.ProviderMetrics> metrics) {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# HELP sms_provider_send_duration_seconds Time from handing an SMS to the provider until the gateway answered.\n");
+        out.append("# TYPE sms_provider_send_duration_seconds histogram\n");
+        for (SmsMetrics.ProviderMetrics providerMetrics : metrics) {
+            LatencyHistogram latency = providerMetrics.getLatency();
+            for (long bucket : BUCKETS_MICROS) {
+                sample(out, "sms_provider_send_duration_seconds_bucket", providerMetrics, "le", seconds(bucket),
+                        Long.toString(latency.getCountAtOrBelow(bucket)));
+            }
+            String count = Long.toString(latency.getCount());
+            sample(out, "sms_provider_send_duration_seconds_bucket", providerMetrics, "le", "+Inf", count);
+            sample(out, "sms_provider_send_duration_seconds_sum", providerMetrics, null, null, seconds(latency.getSumMicros()));
+            sample(out, "sms_provider_send_duration_seconds_count", providerMetrics, null, null, count);
+        }
+
+        out.append("# HELP sms_provider_sends_total SMS sends by outcome.\n");
+        out.append("# TYPE sms_provider_sends_total counter\n");
+        for (SmsMetrics.ProviderMetrics providerMetrics : metrics) {
+            for (SmsDeliveryResult.ErrorClass outcome : SmsDeliveryResult.ErrorClass.values()) {
+                sample(out, "sms_provider_sends_total", providerMetrics, "outcome", outcomeName(outcome),
+                        Long.toString(providerMetrics.getCount(outcome)));
+            }
+        }
+
+        out.append("# HELP sms_provider_in_flight SMS handed to the provider and not answered yet.\n");
+        out.append("# TYPE sms_provider_in_flight gauge\n");
+        for (SmsMetrics.ProviderMetrics providerMetrics : metrics) {
+            sample(out, "sms_provider_in_flight", providerMetrics, null, null, Long.toString(providerMetrics.getInFlight()));
+        }
+        return out.toString();
+    }
+
+    private static String outcomeName(SmsDeliveryResult.ErrorClass outcome) {
+        return outcome == SmsDeliveryResult.ErrorClass.NONE ? "success" : outcome.name().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static void sample(StringBuilder out, String name, SmsMetrics.ProviderMetrics providerMetrics,
+                               String extraLabel, String extraValue, String value) {
+        out.append(name).append("{provider=\"");
+        escape(out, providerMetrics.getProvider());
+        out.append("\",realm=\"");
+        escape(out, providerMetrics.getRealm());
+        if (extraLabel != null) {
+            out.append("\",").append(extraLabel).append("=\"");
+            escape(out, extraValue);
+        }
+        out.append("\"} ").append(value).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1000000d);
+    }
+
+    private static void escape(StringBuilder out, String labelValue) {
+        for (int i = 0; i < labelValue.length(); i++) {
+            char c = labelValue.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.sunbird.sms.metrics;
+
+import org.sunbird.sms.provider.SmsDeliveryResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Process wide registry of SMS delivery metrics, one {@link ProviderMetrics} per provider and realm.
+ *
+ * <p>The providers are shared by all realms, so the realm a send is made for travels with the calling thread: the
+ * authenticator sets it with {@link #setRealm(String)} around the send and whoever hands the send over to another
+ * thread carries it along.
+ */
+public class SmsMetrics {
+
+    public static final String UNKNOWN_REALM = "unknown";
+
+    private static final SmsMetrics INSTANCE = new SmsMetrics();
+    private static final ThreadLocal<String> currentRealm = new ThreadLocal<>();
+
+    private final ConcurrentMap<Key, ProviderMetrics> metrics = new ConcurrentHashMap<>();
+
+    public static SmsMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the realm sends on the current thread are recorded for, {@code null} to clear it.
+     *
+     * @return the previously set realm, to be restored once done
+     */
+    public static String setRealm(String realm) {
+        String previous = currentRealm.get();
+        if (realm == null) {
+            currentRealm.remove();
+        } else {
+            currentRealm.set(realm);
+        }
+        return previous;
+    }
+
+    public static String getRealm() {
+        return currentRealm.get();
+    }
+
+    public ProviderMetrics get(String provider, String realm) {
+        return metrics.computeIfAbsent(new Key(provider, realm == null ? UNKNOWN_REALM : realm),
+                new Function<Key, ProviderMetrics>() {
+                    @Override
+                    public ProviderMetrics apply(Key key) {
+                        return new ProviderMetrics(key.provider, key.realm);
+                    }
+                });
+    }
+
+    /**
+     * All metrics recorded so far, sorted by provider and realm.
+     */
+    public List<ProviderMetrics> getAll() {
+        List<ProviderMetrics> all = new ArrayList<>(metrics.values());
+        Collections.sort(all, new Comparator<ProviderMetrics>() {
+            @Override
+            public int compare(ProviderMetrics a, ProviderMetrics b) {
+                int byProvider = a.getProvider().compareTo(b.getProvider());
+                return byProvider != 0 ? byProvider : a.getRealm().compareTo(b.getRealm());
+            }
+        });
+        return all;
+    }
+
+    public void clear() {
+        metrics.clear();
+    }
+
+    public static class ProviderMetrics {
+
+        private final String provider;
+        private final String realm;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLongArray outcomes = new AtomicLongArray(SmsDeliveryResult.ErrorClass.values().length);
+        private final AtomicLong inFlight = new AtomicLong();
+
+        ProviderMetrics(String provider, String realm) {
+            this.provider = provider;
+            this.realm = realm;
+        }
+
+        public void started(int messages) {
+            inFlight.addAndGet(messages);
+        }
+
+        public void completed(SmsDeliveryResult result, long latencyNanos) {
+            inFlight.decrementAndGet();
+            latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+            outcomes.incrementAndGet(result.getErrorClass().ordinal());
+        }
+
+        public String getProvider() {
+            return provider;
+        }
+
+        public String getRealm() {
+            return realm;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getCount(SmsDeliveryResult.ErrorClass outcome) {
+            return outcomes.get(outcome.ordinal());
+        }
+
+        public long getInFlight() {
+            return inFlight.get();
+        }
+    }
+
+    private static final class Key {
+        final String provider;
+        final String realm;
+
+        Key(String provider, String realm) {
+            this.provider = provider;
+            this.realm = realm;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return provider.equals(other.provider) && realm.equals(other.realm);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * provider.hashCode() + realm.hashCode();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.sunbird.sms.msg91;
+
+import com.google.gson.Gson;
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.message.BasicHeader;
+import org.sunbird.utils.ReusableByteArrayOutputStream;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes Msg91 v2 send requests. Everything that only depends on the configuration (URI, headers, sender,
+ * route and country) is encoded once; per request only the URL encoded text and the mobile numbers are streamed
+ * into the calling thread's reusable buffer. The output is byte for byte what Gson produces for
+ * {@link ProviderDetails}.
+ */
+public class Msg91PayloadEncoder {
+
+    private static final Header CONTENT_TYPE_HEADER = new BasicHeader("content-type", "application/json");
+
+    private static final byte[] SMS_START = bytes("{\"message\":\"");
+    private static final byte[] TO_START = bytes("\",\"to\":[");
+    private static final byte[] SMS_END = bytes("]}");
+    private static final byte[] BODY_END = bytes("]}");
+    private static final byte[] HEX = bytes("0123456789ABCDEF");
+    private static final byte[] JSON_HEX = bytes("0123456789abcdef");
+
+    private final URI uri;
+    private final Header authKeyHeader;
+    private final byte[] bodyStart;
+
+    public Msg91PayloadEncoder(String uri, String authKey, String sender, String route, String country) {
+        this.uri = URI.create(uri);
+        this.authKeyHeader = new BasicHeader("authkey", authKey);
+
+        Gson gson = new Gson();
+        this.bodyStart = bytes("{\"sender\":" + gson.toJson(sender)
+                + ",\"route\":" + gson.toJson(route)
+                + ",\"country\":" + gson.toJson(country)
+                + ",\"sms\":[");
+    }
+
+    public HttpPost createRequest(String smsText, String mobileNumber) {
+        ReusableByteArrayOutputStream buffer = ReusableByteArrayOutputStream.acquire();
+        buffer.write(bodyStart);
+        buffer.write(SMS_START);
+        writeUrlEncoded(buffer, smsText);
+        buffer.write(TO_START);
+        writeMobileNumber(buffer, mobileNumber);
+        buffer.write(SMS_END);
+        buffer.write(BODY_END);
+        return createRequest(buffer);
+    }
+
+    /**
+     * Encodes one request holding an sms entry per text, each sent to its list of mobile numbers.
+     */
+    public HttpPost createRequest(Map<String, List<String>> mobileNumbersByText) {
+        ReusableByteArrayOutputStream buffer = ReusableByteArrayOutputStream.acquire();
+        buffer.write(bodyStart);
+        boolean firstSms = true;
+        for (Map.Entry<String, List<String>> sms : mobileNumbersByText.entrySet()) {
+            if (!firstSms) {
+                buffer.write(',');
+            }
+            firstSms = false;
+
+            buffer.write(SMS_START);
+            writeUrlEncoded(buffer, sms.getKey());
+            buffer.write(TO_START);
+            List<String> mobileNumbers = sms.getValue();
+            for (int i = 0; i < mobileNumbers.size(); i++) {
+                if (i > 0) {
+                    buffer.write(',');
+                }
+                writeMobileNumber(buffer, mobileNumbers.get(i));
+            }
+            buffer.write(SMS_END);
+        }
+        buffer.write(BODY_END);
+        return createRequest(buffer);
+    }
+
+    private HttpPost createRequest(ReusableByteArrayOutputStream buffer) {
+        HttpPost httpPost = new HttpPost(uri);
+        httpPost.setHeader(CONTENT_TYPE_HEADER);
+        httpPost.setHeader(authKeyHeader);
+        httpPost.setEntity(buffer.toEntity(null));
+        return httpPost;
+    }
+
+    // Quoted JSON string of the number without a leading '+', see Msg91SmsProvider.removePlusFromMobileNumber
+    private static void writeMobileNumber(ReusableByteArrayOutputStream buffer, String mobileNumber) {
+        buffer.write('"');
+        writeJsonEscaped(buffer, mobileNumber, mobileNumber.startsWith("+") ? 1 : 0);
+        buffer.write('"');
+    }
+
+    /**
+     * Same output as {@code URLEncoder.encode(text, "UTF-8")}. The result only contains characters that need no
+     * JSON escaping.
+     */
+    static void writeUrlEncoded(ReusableByteArrayOutputStream buffer, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                buffer.write(c);
+            } else if (c == ' ') {
+                buffer.write('+');
+            } else {
+                int codePoint = c;
+                if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, text.charAt(++i));
+                } else if (Character.isSurrogate(c)) {
+                    // An unpaired surrogate is not encodable, the JDK encoder substitutes '?'
+                    codePoint = '?';
+                }
+                writePercentEncodedUtf8(buffer, codePoint);
+            }
+        }
+    }
+
+    private static void writePercentEncodedUtf8(ReusableByteArrayOutputStream buffer, int codePoint) {
+        if (codePoint < 0x80) {
+            writePercent(buffer, codePoint);
+        } else if (codePoint < 0x800) {
+            writePercent(buffer, 0xC0 | (codePoint >> 6));
+            writePercent(buffer, 0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            writePercent(buffer, 0xE0 | (codePoint >> 12));
+            writePercent(buffer, 0x80 | ((codePoint >> 6) & 0x3F));
+            writePercent(buffer, 0x80 | (codePoint & 0x3F));
+        } else {
+            writePercent(buffer, 0xF0 | (codePoint >> 18));
+            writePercent(buffer, 0x80 | ((codePoint >> 12) & 0x3F));
+            writePercent(buffer, 0x80 | ((codePoint >> 6) & 0x3F));
+            writePercent(buffer, 0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    private static void writePercent(ReusableByteArrayOutputStream buffer, int b) {
+        buffer.write('%');
+        buffer.write(HEX[(b >> 4) & 0xF]);
+        buffer.write(HEX[b & 0xF]);
+    }
+
+    /**
+     * Writes the string JSON escaped the way Gson does by default, including its HTML safe escapes.
+     */
+    static void writeJsonEscaped(ReusableByteArrayOutputStream buffer, String value, int from) {
+        for (int i = from; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    buffer.write('\\');
+                    buffer.write('"');
+                    break;
+                case '\\':
+                    buffer.write('\\');
+                    buffer.write('\\');
+                    break;
+                case '\t':
+                    buffer.write('\\');
+                    buffer.write('t');
+                    break;
+                case '\b':
+                    buffer.write('\\');
+                    buffer.write('b');
+                    break;
+                case '\n':
+                    buffer.write('\\');
+                    buffer.write('n');
+                    break;
+                case '\r':
+                    buffer.write('\\');
+                    buffer.write('r');
+                    break;
+                case '\f':
+                    buffer.write('\\');
+                    buffer.write('f');
+                    break;
+                case '<':
+                case '>':
+                case '&':
+                case '=':
+                case '\'':
+                case '\u2028':
+                case '\u2029':
+                    writeUnicodeEscape(buffer, c);
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writeUnicodeEscape(buffer, c);
+                    } else if (c < 0x80) {
+                        buffer.write(c);
+                    } else {
+                        int end = i + 1;
+                        if (Character.isHighSurrogate(c) && end < value.length() && Character.isLowSurrogate(value.charAt(end))) {
+                            end++;
+                        }
+                        buffer.write(value.substring(i, end).getBytes(StandardCharsets.UTF_8));
+                        i = end - 1;
+                    }
+            }
+        }
+    }
+
+    private static void writeUnicodeEscape(ReusableByteArrayOutputStream buffer, char c) {
+        buffer.write('\\');
+        buffer.write('u');
+        buffer.write(JSON_HEX[(c >> 12) & 0xF]);
+        buffer.write(JSON_HEX[(c >> 8) & 0xF]);
+        buffer.write(JSON_HEX[(c >> 4) & 0xF]);
+        buffer.write(JSON_HEX[c & 0xF]);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,26 +1,48 @@
 package org.sunbird.sms.msg91;
 
 import com.amazonaws.util.StringUtils;
-import org.apache.http.HttpEntity;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 import org.jboss.logging.Logger;
 import org.sunbird.sms.SMSConfigurationUtil;
 import org.sunbird.sms.SmsConfigurationConstants;
 import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
 import org.sunbird.utils.JsonUtil;
+import org.sunbird.utils.NamedThreadFactory;
 
 import javax.ws.rs.HttpMethod;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class Msg91SmsProvider implements ISmsProvider {
 
@@ -28,22 +50,99 @@ public class Msg91SmsProvider implements ISmsProvider {
     private static String BASE_URL = "http://api.msg91.com/";
     private static String GET_URL = "api/sendhttp.php?";
     private static String POST_URL = "api/v2/sendsms";
-
-    private Map<String, String> configurations;
+    private static final String RESPONSE_TYPE_SUCCESS = "success";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 50;
+    private static final int DEFAULT_KEEP_ALIVE_TIMEOUT = 60;
+    private static final int DEFAULT_IDLE_CONNECTION_TIMEOUT = 30;
+    private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    private static final int DEFAULT_SOCKET_TIMEOUT = 10000;
+    private static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1000;
+    private static final int DEFAULT_BATCH_MAX_RECIPIENTS = 500;
+    // Keeps the query string of a batched GET well below common URL length limits
+    private static final int MAX_GET_RECIPIENTS = 100;
+
+    // Everything a send needs, published at once so that a send never mixes an old and a new configuration
+    private volatile Settings settings;
+
+    /**
+     * Replaces the HTTP client and the send pool when the configuration changed. The old client is closed once the
+     * requests still running on it, synchronous ones included, have finished; sends queued on the old pool go out
+     * on the new client.
+     */
+    @Override
+    public synchronized void configure(Map<String, String> configurations) {
+        Settings previous = settings;
+        if (previous != null && configurations.equals(previous.configurations)) {
+            return;
+        }
+        settings = new Settings(configurations);
+        if (previous != null) {
+            previous.sendExecutor.shutdown();
+            previous.httpClient.retire();
+        }
+    }
 
     @Override
-    public void configure(Map<String, String> configurations) {
-        this.configurations = configurations;
+    public synchronized void close() {
+        Settings current = settings;
+        settings = null;
+        if (current != null) {
+            shutdown(current.sendExecutor, current.socketTimeout);
+            current.httpClient.retire();
+        }
     }
 
     @Override
     public boolean send(String phoneNumber, String smsText) {
-        return sendSms(phoneNumber, smsText);
+        return sendSms(phoneNumber, smsText).isSuccess();
+    }
+
+    @Override
+    public CompletableFuture<SmsDeliveryResult> sendAsync(final String phoneNumber, final String smsText) {
+        final long startTime = System.nanoTime();
+        Settings current = settings;
+        if (current == null) {
+            return CompletableFuture.completedFuture(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.REJECTED,
+                    "Msg91SmsProvider is not configured or already closed", 0));
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(new Supplier<SmsDeliveryResult>() {
+                @Override
+                public SmsDeliveryResult get() {
+                    return sendSms(phoneNumber, smsText, startTime);
+                }
+            }, current.sendExecutor);
+        } catch (RejectedExecutionException e) {
+            logger.error("Msg91SmsProvider - send queue is full, rejecting SMS to " + phoneNumber);
+            return CompletableFuture.completedFuture(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.REJECTED,
+                    "Send queue is full", System.nanoTime() - startTime));
+        }
     }
 
-    private boolean sendSms(String mobileNumber, String smsText) {
+    private SmsDeliveryResult sendSms(String mobileNumber, String smsText) {
+        return sendSms(mobileNumber, smsText, System.nanoTime());
+    }
+
+    private SmsDeliveryResult sendSms(String mobileNumber, String smsText, long startTime) {
+        Settings current = acquireSettings();
+        if (current == null) {
+            return notConfigured(startTime);
+        }
+        try {
+            return sendSms(current, mobileNumber, smsText, startTime);
+        } finally {
+            current.httpClient.release();
+        }
+    }
+
+    private SmsDeliveryResult sendSms(Settings settings, String mobileNumber, String smsText, long startTime) {
         // Send an SMS
         logger.debug("Msg91SmsProvider@Sending " + smsText + "  to mobileNumber " + mobileNumber);
+        Map<String, String> configurations = settings.configurations;
+        String baseUrl = settings.baseUrl;
 
         String authKey = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_AUTH_KEY);
         String sender = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_SENDER);
@@ -53,7 +152,7 @@ public class Msg91SmsProvider implements ISmsProvider {
         String httpMethod = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_METHOD_TYPE);
 
         logger.debug("Msg91SmsProvider@SMS Provider parameters \n" +
-                "Gateway - " + BASE_URL + "\n" +
+                "Gateway - " + baseUrl + "\n" +
                 "authKey - " + authKey + "\n" +
                 "sender - " + sender + "\n" +
                 "country - " + country + "\n" +
@@ -62,11 +161,7 @@ public class Msg91SmsProvider implements ISmsProvider {
         );
 
 
-        CloseableHttpClient httpClient = null;
         try {
-
-            httpClient = HttpClients.createDefault();
-
             String path = null;
 
             if (!StringUtils.isNullOrEmpty(sender) && !StringUtils.isNullOrEmpty(smsRoute)
@@ -79,82 +174,413 @@ public class Msg91SmsProvider implements ISmsProvider {
 
                 if (httpMethod.equals(HttpMethod.GET)) {
                     logger.debug("Inside GET");
-                    path = getCompletePath(BASE_URL + GET_URL, sender, smsRoute, mobileNumber, authKey, country, URLEncoder.encode(smsText, "UTF-8"));
+                    path = getCompletePath(baseUrl + GET_URL, sender, smsRoute, mobileNumber, authKey, country, URLEncoder.encode(smsText, "UTF-8"));
 
                     logger.debug("Msg91SmsProvider -Executing request - " + path);
 
                     HttpGet httpGet = new HttpGet(path);
 
-                    CloseableHttpResponse response = httpClient.execute(httpGet);
-                    StatusLine sl = response.getStatusLine();
-                    response.close();
-                    if (sl.getStatusCode() != 200) {
-                        logger.error("SMS code for " + mobileNumber + " could not be sent: " + sl.getStatusCode() + " - " + sl.getReasonPhrase());
-                    }
-                    return sl.getStatusCode() == 200;
+                    return execute(settings, httpGet, mobileNumber, startTime);
                 } else if (httpMethod.equals(HttpMethod.POST)) {
                     logger.debug("Inside POST");
 
-                    path = BASE_URL + POST_URL;
-                    logger.debug("Msg91SmsProvider -Executing request - " + path);
+                    HttpPost httpPost = settings.payloadEncoder.createRequest(smsText, mobileNumber);
+                    return execute(settings, httpPost, mobileNumber, startTime);
+                }
+
+            } else {
+                logger.debug("Msg91SmsProvider - Some mandatory parameters are empty!");
+            }
+            return SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.INVALID_REQUEST,
+                    "Mandatory parameters are missing or method type is unsupported", System.nanoTime() - startTime);
+        } catch (IOException | RuntimeException e) {
+            logger.error(e);
+            return SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION, e.getMessage(), System.nanoTime() - startTime);
+        }
+    }
+
+    @Override
+    public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+        long startTime = System.nanoTime();
+        Settings current = acquireSettings();
+        if (current == null) {
+            List<SmsDeliveryResult> results = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                results.add(notConfigured(startTime));
+            }
+            return results;
+        }
+        try {
+            return sendBatch(current, messages, startTime);
+        } finally {
+            current.httpClient.release();
+        }
+    }
+
+    private List<SmsDeliveryResult> sendBatch(Settings settings, List<SmsMessage> messages, long startTime) {
+        logger.debug("Msg91SmsProvider@sendBatch - Sending " + messages.size() + " messages");
+        Map<String, String> configurations = settings.configurations;
+
+        String authKey = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_AUTH_KEY);
+        String sender = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_SENDER);
+        String country = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_COUNTRY);
+        String smsRoute = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_ROUTE);
+        String httpMethod = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_METHOD_TYPE);
+        int maxRecipients = Math.max(1, SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_BATCH_MAX_RECIPIENTS, DEFAULT_BATCH_MAX_RECIPIENTS));
+
+        SmsDeliveryResult[] results = new SmsDeliveryResult[messages.size()];
+
+        if (!StringUtils.isNullOrEmpty(sender) && !StringUtils.isNullOrEmpty(smsRoute)
+                && !StringUtils.isNullOrEmpty(authKey) && !StringUtils.isNullOrEmpty(country)
+                && (HttpMethod.GET.equals(httpMethod) || HttpMethod.POST.equals(httpMethod))) {
+
+            // Group identical texts so that each one is sent once with all of its recipients
+            Map<String, List<Integer>> textGroups = new LinkedHashMap<>();
+            for (int i = 0; i < messages.size(); i++) {
+                SmsMessage message = messages.get(i);
+                if (StringUtils.isNullOrEmpty(message.getPhoneNumber()) || StringUtils.isNullOrEmpty(message.getText())) {
+                    results[i] = SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.INVALID_REQUEST,
+                            "Phone number or text is empty", 0);
+                    continue;
+                }
+                List<Integer> group = textGroups.get(message.getText());
+                if (group == null) {
+                    group = new ArrayList<>();
+                    textGroups.put(message.getText(), group);
+                }
+                group.add(i);
+            }
+
+            if (httpMethod.equals(HttpMethod.GET)) {
+                sendBatchWithGet(settings, messages, textGroups, Math.min(maxRecipients, MAX_GET_RECIPIENTS), authKey, sender,
+                        smsRoute, country, results, startTime);
+            } else {
+                sendBatchWithPost(settings, messages, textGroups, maxRecipients, results, startTime);
+            }
+        } else {
+            logger.debug("Msg91SmsProvider - Some mandatory parameters are empty!");
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.INVALID_REQUEST,
+                        "Mandatory parameters are missing or method type is unsupported", System.nanoTime() - startTime);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    // The GET api takes a comma separated list of mobiles for one message text
+    private void sendBatchWithGet(Settings settings, List<SmsMessage> messages, Map<String, List<Integer>> textGroups, int maxRecipients,
+                                  String authKey, String sender, String smsRoute, String country,
+                                  SmsDeliveryResult[] results, long startTime) {
+        for (Map.Entry<String, List<Integer>> group : textGroups.entrySet()) {
+            List<Integer> indices = group.getValue();
+            for (int from = 0; from < indices.size(); from += maxRecipients) {
+                List<Integer> chunk = indices.subList(from, Math.min(from + maxRecipients, indices.size()));
+
+                StringBuilder mobiles = new StringBuilder();
+                for (Integer index : chunk) {
+                    if (mobiles.length() > 0) {
+                        mobiles.append(',');
+                    }
+                    mobiles.append(removePlusFromMobileNumber(messages.get(index).getPhoneNumber()));
+                }
+
+                SmsDeliveryResult result;
+                try {
+                    String path = getCompletePath(settings.baseUrl + GET_URL, sender, smsRoute, mobiles.toString(), authKey, country,
+                            URLEncoder.encode(group.getKey(), "UTF-8"));
+                    result = execute(settings, new HttpGet(path), chunk.size() + " recipients", startTime);
+                } catch (IOException | RuntimeException e) {
+                    logger.error(e);
+                    result = SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION, e.getMessage(), System.nanoTime() - startTime);
+                }
+                for (Integer index : chunk) {
+                    results[index] = result;
+                }
+            }
+        }
+    }
 
-                    HttpPost httpPost = new HttpPost(path);
+    // The v2 POST api takes a list of sms entries, each with its own recipients, so many texts share one request
+    private void sendBatchWithPost(Settings settings, List<SmsMessage> messages, Map<String, List<Integer>> textGroups,
+                                   int maxRecipients, SmsDeliveryResult[] results, long startTime) {
+        Map<String, List<String>> smsList = new LinkedHashMap<>();
+        List<Integer> requestIndices = new ArrayList<>();
+
+        for (Map.Entry<String, List<Integer>> group : textGroups.entrySet()) {
+            List<Integer> indices = group.getValue();
+            int from = 0;
+            while (from < indices.size()) {
+                int to = Math.min(indices.size(), from + maxRecipients - requestIndices.size());
+                List<String> mobileNumbers = new ArrayList<>(to - from);
+                for (Integer index : indices.subList(from, to)) {
+                    mobileNumbers.add(messages.get(index).getPhoneNumber());
+                    requestIndices.add(index);
+                }
+                smsList.put(group.getKey(), mobileNumbers);
+                from = to;
 
-                    //add content-type headers
-                    httpPost.setHeader("content-type", "application/json");
+                if (requestIndices.size() >= maxRecipients) {
+                    postBatch(settings, smsList, requestIndices, results, startTime);
+                    smsList = new LinkedHashMap<>();
+                    requestIndices = new ArrayList<>();
+                }
+            }
+        }
 
-                    //add authkey header
-                    httpPost.setHeader("authkey", authKey);
+        if (!requestIndices.isEmpty()) {
+            postBatch(settings, smsList, requestIndices, results, startTime);
+        }
+    }
 
-                    List<String> mobileNumbers = new ArrayList<>();
-                    mobileNumbers.add(mobileNumber);
+    private void postBatch(Settings settings, Map<String, List<String>> smsList, List<Integer> requestIndices,
+                           SmsDeliveryResult[] results, long startTime) {
+        SmsDeliveryResult result;
+        try {
+            HttpPost httpPost = settings.payloadEncoder.createRequest(smsList);
+            result = execute(settings, httpPost, requestIndices.size() + " recipients", startTime);
+        } catch (IOException | RuntimeException e) {
+            logger.error(e);
+            result = SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION, e.getMessage(), System.nanoTime() - startTime);
+        }
+        for (Integer index : requestIndices) {
+            results[index] = result;
+        }
+    }
 
-                    //create sms
-                    Sms sms = new Sms(URLEncoder.encode(smsText, "UTF-8"), mobileNumbers);
+    // The caller holds the client of the settings, see acquireSettings
+    private SmsDeliveryResult execute(Settings settings, HttpUriRequest request, String mobileNumber, long startTime)
+            throws IOException {
+        try (CloseableHttpResponse response = settings.httpClient.client.execute(request)) {
+            // Read the body fully so that the connection is released back to the pool for reuse
+            String body = response.getEntity() != null ? EntityUtils.toString(response.getEntity(), "UTF-8") : null;
+            StatusLine sl = response.getStatusLine();
+            long latency = System.nanoTime() - startTime;
+
+            if (sl.getStatusCode() != 200) {
+                logger.error("SMS code for " + mobileNumber + " could not be sent: " + sl.getStatusCode() + " - " + sl.getReasonPhrase());
+                return SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.HTTP_ERROR,
+                        sl.getStatusCode() + " - " + sl.getReasonPhrase(), latency);
+            }
+            return getResult(body, mobileNumber, latency);
+        }
+    }
 
-                    List<Sms> smsList = new ArrayList<>();
-                    smsList.add(sms);
+    // The current settings with their client acquired, or null when not configured or closed. Must be released
+    private Settings acquireSettings() {
+        while (true) {
+            Settings current = settings;
+            if (current == null || current.httpClient.acquire()) {
+                return current;
+            }
+        }
+    }
 
-                    //create body
-                    ProviderDetails providerDetails = new ProviderDetails(sender, smsRoute, country, smsList);
+    private static SmsDeliveryResult notConfigured(long startTime) {
+        return SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION,
+                "Msg91SmsProvider is not configured or already closed", System.nanoTime() - startTime);
+    }
 
-                    String providerDetailsString = JsonUtil.toJson(providerDetails);
+    // Msg91 answers with the request id, either as plain text (GET) or as {"message": "<id>", "type": "success"} (POST).
+    // Errors such as an invalid auth key also come with a 200, as {"message": "<reason>", "type": "error"}
+    private static SmsDeliveryResult getResult(String body, String mobileNumber, long latency) {
+        if (StringUtils.isNullOrEmpty(body)) {
+            return SmsDeliveryResult.success(null, latency);
+        }
 
-                    if (!StringUtils.isNullOrEmpty(providerDetailsString)) {
-                        logger.debug("Msg91SmsProvider - Body - " + providerDetailsString);
+        String trimmed = body.trim();
+        if (!trimmed.startsWith("{")) {
+            return SmsDeliveryResult.success(trimmed, latency);
+        }
 
-                        HttpEntity entity = new ByteArrayEntity(providerDetailsString.getBytes("UTF-8"));
-                        httpPost.setEntity(entity);
+        Map<String, String> response;
+        try {
+            response = JsonUtil.fromJson(trimmed);
+        } catch (RuntimeException e) {
+            response = null;
+        }
+        if (response == null || !RESPONSE_TYPE_SUCCESS.equalsIgnoreCase(response.get("type"))) {
+            logger.error("SMS code for " + mobileNumber + " could not be sent: " + trimmed);
+            return SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.HTTP_ERROR,
+                    response != null && response.get("message") != null ? response.get("message") : trimmed, latency);
+        }
+        return SmsDeliveryResult.success(response.get("message"), latency);
+    }
+
+    private static Msg91PayloadEncoder createPayloadEncoder(Map<String, String> configurations) {
+        String authKey = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_AUTH_KEY);
+        String sender = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_SENDER);
+        String country = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_COUNTRY);
+        String smsRoute = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_ROUTE);
+
+        if (StringUtils.isNullOrEmpty(authKey) || StringUtils.isNullOrEmpty(sender)
+                || StringUtils.isNullOrEmpty(country) || StringUtils.isNullOrEmpty(smsRoute)) {
+            return null;
+        }
+        String baseUrl = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_BASE_URL, BASE_URL);
+        return new Msg91PayloadEncoder(baseUrl + POST_URL, authKey, sender, smsRoute, country);
+    }
+
+    private static CloseableHttpClient createHttpClient(Map<String, String> configurations) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS));
+        connectionManager.setDefaultMaxPerRoute(SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(SMSConfigurationUtil.getConfigInt(configurations,
+                        SmsConfigurationConstants.CONF_SMS_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT))
+                .setSocketTimeout(SMSConfigurationUtil.getConfigInt(configurations,
+                        SmsConfigurationConstants.CONF_SMS_SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT))
+                .build();
+
+        int idleConnectionTimeout = SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_IDLE_CONNECTION_TIMEOUT, DEFAULT_IDLE_CONNECTION_TIMEOUT);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy(SMSConfigurationUtil.getConfigInt(configurations,
+                        SmsConfigurationConstants.CONF_SMS_KEEP_ALIVE_TIMEOUT, DEFAULT_KEEP_ALIVE_TIMEOUT)))
+                .evictExpiredConnections()
+                .evictIdleConnections((long) idleConnectionTimeout, TimeUnit.SECONDS)
+                .build();
+    }
 
-                        CloseableHttpResponse response = httpClient.execute(httpPost);
-                        StatusLine sl = response.getStatusLine();
-                        response.close();
-                        if (sl.getStatusCode() != 200) {
-                            logger.error("SMS code for " + mobileNumber + " could not be sent: " + sl.getStatusCode() + " - " + sl.getReasonPhrase());
+    // Honour the gateway's Keep-Alive timeout header and fall back to the configured timeout when it is absent
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(final int defaultKeepAliveSeconds) {
+        return new ConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                BasicHeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+                while (it.hasNext()) {
+                    HeaderElement element = it.nextElement();
+                    if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                        try {
+                            return Long.parseLong(element.getValue()) * 1000;
+                        } catch (NumberFormatException ignore) {
+                            // Fall back to the default below
                         }
-                        return sl.getStatusCode() == 200;
-                    } else {
-                        return false;
                     }
                 }
+                return defaultKeepAliveSeconds * 1000L;
+            }
+        };
+    }
 
-            } else {
-                logger.debug("Msg91SmsProvider - Some mandatory parameters are empty!");
+    /**
+     * One thread per connection of the pool, each running the blocking HttpClient call of one send. Sends beyond
+     * the queue capacity are rejected instead of piling up.
+     */
+    private static ExecutorService createSendExecutor(Map<String, String> configurations) {
+        int threads = SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+        int queueCapacity = SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_ASYNC_QUEUE_CAPACITY, DEFAULT_ASYNC_QUEUE_CAPACITY);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new NamedThreadFactory("msg91-sms-sender"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Let in-flight sends finish on the pool before it is dropped. A send can take up to the socket timeout of its client
+    private static void shutdown(ExecutorService executor, int socketTimeout) {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(socketTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A configuration with everything derived from it. Immutable, replaced as a whole by configure.
+     */
+    private static final class Settings {
+
+        private final Map<String, String> configurations;
+
+        // Gateway base URL ending with '/', sms_base_url overrides the public Msg91 endpoint e.g. for a stub gateway
+        private final String baseUrl;
+
+        // Long-lived pooled client shared by all sends so that connections to the gateway are kept alive and reused
+        private final PooledClient httpClient;
+
+        // sendAsync is a bounded thread-pool offload, not non-blocking I/O: every send in flight holds one of these
+        // threads for its whole round-trip, so at most sms_max_connections sends run and sms_async_queue_capacity wait
+        private final ExecutorService sendExecutor;
+
+        // Pre-encoded static parts of POST requests, null while mandatory parameters are missing
+        private final Msg91PayloadEncoder payloadEncoder;
+
+        // Bounds the wait for the in-flight sends of the client when the provider is closed
+        private final int socketTimeout;
+
+        Settings(Map<String, String> configurations) {
+            this.configurations = configurations;
+            this.baseUrl = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_BASE_URL, BASE_URL);
+            this.httpClient = new PooledClient(createHttpClient(configurations));
+            this.sendExecutor = createSendExecutor(configurations);
+            this.payloadEncoder = createPayloadEncoder(configurations);
+            this.socketTimeout = SMSConfigurationUtil.getConfigInt(configurations,
+                    SmsConfigurationConstants.CONF_SMS_SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+        }
+    }
+
+    /**
+     * An HTTP client with a count of the requests running on it, so that a replaced client is only closed once the
+     * last of them has finished.
+     */
+    private static final class PooledClient {
+
+        private final CloseableHttpClient client;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean retired;
+
+        PooledClient(CloseableHttpClient client) {
+            this.client = client;
+        }
+
+        // False once the client is retired, the caller then takes the current client instead
+        boolean acquire() {
+            inFlight.incrementAndGet();
+            if (retired) {
+                release();
                 return false;
             }
-        } catch (IOException e) {
-            logger.error(e);
-            return false;
-        } finally {
-            if (httpClient != null) {
+            return true;
+        }
+
+        void release() {
+            if (inFlight.decrementAndGet() == 0 && retired) {
+                closeQuietly();
+            }
+        }
+
+        void retire() {
+            retired = true;
+            if (inFlight.get() == 0) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            if (closed.compareAndSet(false, true)) {
                 try {
-                    httpClient.close();
+                    client.close();
                 } catch (IOException ignore) {
                     // Ignore ...
                 }
             }
         }
-        return false;
     }
 
     private String removePlusFromMobileNumber(String mobileNumber) {
@@ -5,17 +5,36 @@ import org.sunbird.sms.provider.ISmsProviderFactory;
 
 import java.util.Map;
 
+/**
+ * Holds one {@link Msg91SmsProvider} per factory instance, so that every realm built by the
+ * {@link org.sunbird.sms.SmsProviderRegistry} gets a provider of its own.
+ */
 public class Msg91SmsProviderFactory implements ISmsProviderFactory {
 
-    private static Msg91SmsProvider msg91SmsProvider = null;
+    private Msg91SmsProvider msg91SmsProvider = null;
+    private Map<String, String> msg91SmsProviderConfigurations = null;
 
     @Override
-    public ISmsProvider create(Map<String, String> configurations) {
-        if (msg91SmsProvider == null){
+    public synchronized ISmsProvider create(Map<String, String> configurations) {
+        if (msg91SmsProvider == null) {
             msg91SmsProvider = new Msg91SmsProvider();
             msg91SmsProvider.configure(configurations);
+            msg91SmsProviderConfigurations = configurations;
+        } else if (!configurations.equals(msg91SmsProviderConfigurations)) {
+            // Apply changed credentials or settings to the live provider instead of ignoring them
+            msg91SmsProvider.configure(configurations);
+            msg91SmsProviderConfigurations = configurations;
         }
 
         return msg91SmsProvider;
     }
+
+    @Override
+    public synchronized void close() {
+        if (msg91SmsProvider != null) {
+            msg91SmsProvider.close();
+            msg91SmsProvider = null;
+            msg91SmsProviderConfigurations = null;
+        }
+    }
 }
@@ -1,10 +1,29 @@
 package org.sunbird.sms.provider;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface ISmsProvider {
 
     void configure(Map<String, String> configurations);
 
+    /**
+     * Blocking send, kept for existing callers. Equivalent to waiting on {@link #sendAsync(String, String)}.
+     */
     boolean send(String phoneNumber, String smsText);
+
+    /**
+     * Sends an SMS without holding the calling thread for the gateway round-trip. The returned future never
+     * completes exceptionally, failures are reported through {@link SmsDeliveryResult#getErrorClass()}.
+     */
+    CompletableFuture<SmsDeliveryResult> sendAsync(String phoneNumber, String smsText);
+
+    /**
+     * Sends many messages with as few gateway calls as the provider allows. The returned results are in the same
+     * order as the given messages.
+     */
+    List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages);
+
+    void close();
 }
@@ -5,4 +5,6 @@ import java.util.Map;
 public interface ISmsProviderFactory  {
 
     ISmsProvider create(Map<String, String> configurations);
+
+    void close();
 }
@@ -0,0 +1,73 @@
+package org.sunbird.sms.provider;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a single SMS send as reported by the gateway.
+ */
+public class SmsDeliveryResult implements Serializable {
+
+    public enum ErrorClass {
+        NONE,
+        INVALID_REQUEST,
+        HTTP_ERROR,
+        EXCEPTION,
+        REJECTED,
+        CIRCUIT_OPEN,
+        RATE_LIMITED
+    }
+
+    private final boolean success;
+    private final String providerMessageId;
+    private final ErrorClass errorClass;
+    private final String errorMessage;
+    private final long latencyNanos;
+
+    private SmsDeliveryResult(boolean success, String providerMessageId, ErrorClass errorClass, String errorMessage, long latencyNanos) {
+        this.success = success;
+        this.providerMessageId = providerMessageId;
+        this.errorClass = errorClass;
+        this.errorMessage = errorMessage;
+        this.latencyNanos = latencyNanos;
+    }
+
+    public static SmsDeliveryResult success(String providerMessageId, long latencyNanos) {
+        return new SmsDeliveryResult(true, providerMessageId, ErrorClass.NONE, null, latencyNanos);
+    }
+
+    public static SmsDeliveryResult failure(ErrorClass errorClass, String errorMessage, long latencyNanos) {
+        return new SmsDeliveryResult(false, null, errorClass, errorMessage, latencyNanos);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getProviderMessageId() {
+        return providerMessageId;
+    }
+
+    public ErrorClass getErrorClass() {
+        return errorClass;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public long getLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "SmsDeliveryResult{success=" + success + ", providerMessageId=" + providerMessageId
+                + ", errorClass=" + errorClass + ", errorMessage=" + errorMessage
+                + ", latencyMillis=" + getLatencyMillis() + "}";
+    }
+}
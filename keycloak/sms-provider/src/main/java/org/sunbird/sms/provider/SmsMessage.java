@@ -0,0 +1,25 @@
+package org.sunbird.sms.provider;
+
+import java.io.Serializable;
+
+/**
+ * A single (phone number, text) pair of a batch send.
+ */
+public class SmsMessage implements Serializable {
+
+    private final String phoneNumber;
+    private final String text;
+
+    public SmsMessage(String phoneNumber, String text) {
+        this.phoneNumber = phoneNumber;
+        this.text = text;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
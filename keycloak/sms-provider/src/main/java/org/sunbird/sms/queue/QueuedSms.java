@@ -0,0 +1,86 @@
+package org.sunbird.sms.queue;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An SMS that has been durably enqueued and is waiting for (re)delivery by the {@link SmsDispatcher}.
+ */
+public class QueuedSms implements Delayed {
+
+    private final long id;
+    private final String phoneNumber;
+    private final String text;
+    private final long enqueuedAt;
+    private final long expiresAt;
+    private int attempts;
+    // Only kept in memory for the metrics, messages replayed from the journal are recorded without a realm
+    private volatile String realm;
+    private long nextAttemptNanos;
+
+    public QueuedSms(long id, String phoneNumber, String text, long enqueuedAt, long expiresAt) {
+        this.id = id;
+        this.phoneNumber = phoneNumber;
+        this.text = text;
+        this.enqueuedAt = enqueuedAt;
+        this.expiresAt = expiresAt;
+        this.nextAttemptNanos = System.nanoTime();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    /**
+     * Returns the time after which the message must not be sent anymore, {@link Long#MAX_VALUE} for messages
+     * journaled before expiries were recorded.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    void setRealm(String realm) {
+        this.realm = realm;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    int incrementAttempts() {
+        return ++attempts;
+    }
+
+    void retryAfter(long delayMillis) {
+        nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(nextAttemptNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        if (other instanceof QueuedSms) {
+            return Long.compare(nextAttemptNanos, ((QueuedSms) other).nextAttemptNanos);
+        }
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+}
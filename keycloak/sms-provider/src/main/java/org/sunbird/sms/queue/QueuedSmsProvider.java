@@ -0,0 +1,198 @@
+package org.sunbird.sms.queue;
+
+import org.jboss.logging.Logger;
+import org.sunbird.sms.SMSConfigurationUtil;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.metrics.SmsMetrics;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Decorates a provider with a durable local outbound queue. A send returns as soon as the message is fsync'ed to
+ * the journal, delivery through the wrapped provider happens in the background and survives gateway outages as
+ * well as Keycloak restarts.
+ *
+ * <p>Only one provider at a time may use a queue directory, the journal is locked while it is open. A provider that
+ * replaces another one on the same directory must be configured after the other one is closed.
+ */
+public class QueuedSmsProvider implements ISmsProvider {
+
+    private static Logger logger = Logger.getLogger(QueuedSmsProvider.class);
+
+    public static final String DEFAULT_QUEUE_DIRECTORY = "sms-provider/queue";
+    private static final int DEFAULT_DISPATCHER_THREADS = 4;
+    private static final int DEFAULT_MAX_ATTEMPTS = 8;
+    private static final long DEFAULT_INITIAL_BACKOFF = 500;
+    private static final long DEFAULT_MAX_BACKOFF = 60000;
+    private static final long DEFAULT_MAX_JOURNAL_SIZE = 64L * 1024 * 1024;
+    // Matches the default OTP ttl, an SMS that is still queued after it is of no use
+    private static final long DEFAULT_MESSAGE_TTL = 10 * 60 * 1000L;
+
+    private final ISmsProvider delegate;
+    // Enqueues hold the read lock, so the journal is not closed under them
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private SmsJournal journal;
+    private SmsDispatcher dispatcher;
+    private long messageTtl = DEFAULT_MESSAGE_TTL;
+
+    public QueuedSmsProvider(ISmsProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    public static boolean isEnabled(Map<String, String> configurations) {
+        return SMSConfigurationUtil.getConfigBoolean(configurations, SmsConfigurationConstants.CONF_SMS_QUEUE_ENABLED, false);
+    }
+
+    /**
+     * Opens the journal and starts the dispatcher. The wrapped provider is configured by its own factory.
+     */
+    @Override
+    public void configure(Map<String, String> configurations) {
+        lock.writeLock().lock();
+        try {
+            open(configurations);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void open(Map<String, String> configurations) {
+        stopDispatcher();
+
+        String directory = SMSConfigurationUtil.getConfigString(configurations,
+                SmsConfigurationConstants.CONF_SMS_QUEUE_DIRECTORY, DEFAULT_QUEUE_DIRECTORY);
+        try {
+            journal = new SmsJournal(new File(directory), SMSConfigurationUtil.getConfigLong(configurations,
+                    SmsConfigurationConstants.CONF_SMS_QUEUE_MAX_DEAD_LETTER_SIZE, SmsJournal.DEFAULT_MAX_DEAD_LETTER_SIZE));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open SMS queue journal in " + directory, e);
+        }
+        String legacyDirectory = SMSConfigurationUtil.getConfigString(configurations,
+                SmsConfigurationConstants.CONF_SMS_QUEUE_LEGACY_DIRECTORY);
+        if (legacyDirectory != null) {
+            try {
+                journal.migrateFrom(new File(legacyDirectory));
+            } catch (IOException e) {
+                logger.error("QueuedSmsProvider - failed to migrate the SMS queue journal in " + legacyDirectory, e);
+            }
+        }
+
+        messageTtl = SMSConfigurationUtil.getConfigLong(configurations,
+                SmsConfigurationConstants.CONF_SMS_QUEUE_MESSAGE_TTL, DEFAULT_MESSAGE_TTL);
+        dispatcher = new SmsDispatcher(journal, delegate,
+                SMSConfigurationUtil.getConfigInt(configurations, SmsConfigurationConstants.CONF_SMS_QUEUE_MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS),
+                SMSConfigurationUtil.getConfigLong(configurations, SmsConfigurationConstants.CONF_SMS_QUEUE_INITIAL_BACKOFF, DEFAULT_INITIAL_BACKOFF),
+                SMSConfigurationUtil.getConfigLong(configurations, SmsConfigurationConstants.CONF_SMS_QUEUE_MAX_BACKOFF, DEFAULT_MAX_BACKOFF),
+                SMSConfigurationUtil.getConfigLong(configurations, SmsConfigurationConstants.CONF_SMS_QUEUE_MAX_JOURNAL_SIZE, DEFAULT_MAX_JOURNAL_SIZE),
+                messageTtl);
+        dispatcher.start(SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_QUEUE_DISPATCHER_THREADS, DEFAULT_DISPATCHER_THREADS));
+    }
+
+    @Override
+    public boolean send(String phoneNumber, String smsText) {
+        return sendAsync(phoneNumber, smsText).join().isSuccess();
+    }
+
+    /**
+     * Completes once the message is durably enqueued. The result carries the journal id of the message, not the
+     * gateway's message id.
+     */
+    @Override
+    public CompletableFuture<SmsDeliveryResult> sendAsync(String phoneNumber, String smsText) {
+        List<SmsMessage> messages = new ArrayList<>(1);
+        messages.add(new SmsMessage(phoneNumber, smsText));
+        return CompletableFuture.completedFuture(sendBatch(messages).get(0));
+    }
+
+    /**
+     * Enqueues every message and makes them durable with a single fsync.
+     */
+    @Override
+    public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+        lock.readLock().lock();
+        try {
+            return enqueue(messages);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<SmsDeliveryResult> enqueue(List<SmsMessage> messages) {
+        long startTime = System.nanoTime();
+        List<SmsDeliveryResult> results = new ArrayList<>(messages.size());
+        SmsJournal currentJournal = journal;
+        SmsDispatcher currentDispatcher = dispatcher;
+        long expiresAt = System.currentTimeMillis() + messageTtl;
+
+        if (currentJournal == null) {
+            for (int i = 0; i < messages.size(); i++) {
+                results.add(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.REJECTED,
+                        "QueuedSmsProvider is not configured or already closed", 0));
+            }
+            return results;
+        }
+
+        List<QueuedSms> enqueued = new ArrayList<>(messages.size());
+        try {
+            String realm = SmsMetrics.getRealm();
+            for (SmsMessage message : messages) {
+                QueuedSms sms = currentJournal.append(message.getPhoneNumber(), message.getText(), expiresAt);
+                sms.setRealm(realm);
+                enqueued.add(sms);
+            }
+            currentJournal.sync(currentJournal.position());
+        } catch (IOException e) {
+            logger.error("QueuedSmsProvider - failed to enqueue SMS", e);
+            results.clear();
+            for (int i = 0; i < messages.size(); i++) {
+                results.add(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.EXCEPTION, e.getMessage(),
+                        System.nanoTime() - startTime));
+            }
+            return results;
+        }
+
+        long latency = System.nanoTime() - startTime;
+        for (QueuedSms sms : enqueued) {
+            currentDispatcher.dispatch(sms);
+            results.add(SmsDeliveryResult.success(String.valueOf(sms.getId()), latency));
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            stopDispatcher();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        delegate.close();
+    }
+
+    private void stopDispatcher() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+            dispatcher = null;
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.error("QueuedSmsProvider - failed to close journal", e);
+            }
+            journal = null;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.sunbird.sms.queue;
+
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.ISmsProviderFactory;
+
+import java.util.Map;
+
+/**
+ * Puts the durable outbound queue in front of the providers created by another factory when
+ * {@code sms_queue_enabled} is set, otherwise hands out the wrapped factory's provider unchanged.
+ */
+public class QueuedSmsProviderFactory implements ISmsProviderFactory {
+
+    private final ISmsProviderFactory delegateFactory;
+    private QueuedSmsProvider queuedSmsProvider = null;
+
+    public QueuedSmsProviderFactory(ISmsProviderFactory delegateFactory) {
+        this.delegateFactory = delegateFactory;
+    }
+
+    @Override
+    public synchronized ISmsProvider create(Map<String, String> configurations) {
+        ISmsProvider provider = delegateFactory.create(configurations);
+        if (provider == null || !QueuedSmsProvider.isEnabled(configurations)) {
+            return provider;
+        }
+
+        if (queuedSmsProvider == null) {
+            queuedSmsProvider = new QueuedSmsProvider(provider);
+            queuedSmsProvider.configure(configurations);
+        }
+        return queuedSmsProvider;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (queuedSmsProvider != null) {
+            queuedSmsProvider.close();
+            queuedSmsProvider = null;
+        }
+        delegateFactory.close();
+    }
+}
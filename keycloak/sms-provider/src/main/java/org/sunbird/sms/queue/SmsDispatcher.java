@@ -0,0 +1,215 @@
+package org.sunbird.sms.queue;
+
+import org.jboss.logging.Logger;
+import org.sunbird.sms.metrics.SmsMetrics;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.utils.NamedThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the journal through the wrapped provider. Failed sends are retried with exponential backoff and full
+ * jitter, so that a recovering gateway is not hit by every queued message at the same instant; messages that are
+ * rejected as invalid, exhaust their attempts or outlive their expiry are moved to the dead letter file. An expired
+ * message is never sent, its OTP would not be accepted anymore.
+ */
+public class SmsDispatcher {
+
+    private static Logger logger = Logger.getLogger(SmsDispatcher.class);
+
+    private static final long COMPACTION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final SmsJournal journal;
+    private final ISmsProvider delegate;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long maxJournalBytes;
+    private final long messageTtlMillis;
+    private final DelayQueue<QueuedSms> queue = new DelayQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    // Delivered messages whose ack could not be written yet
+    private final Queue<QueuedSms> unacknowledged = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+    private volatile long lastCompaction = System.currentTimeMillis();
+
+    public SmsDispatcher(SmsJournal journal, ISmsProvider delegate, int maxAttempts, long initialBackoffMillis,
+                         long maxBackoffMillis, long maxJournalBytes, long messageTtlMillis) {
+        this.journal = journal;
+        this.delegate = delegate;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+        this.maxJournalBytes = maxJournalBytes;
+        this.messageTtlMillis = Math.max(1, messageTtlMillis);
+    }
+
+    public synchronized void start(int threads) {
+        if (running) {
+            return;
+        }
+        running = true;
+        queue.addAll(journal.getPending());
+
+        NamedThreadFactory threadFactory = new NamedThreadFactory("sms-queue-dispatcher");
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            Thread worker = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    dispatchLoop();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public void dispatch(QueuedSms sms) {
+        queue.offer(sms);
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the workers. Messages still queued stay in the journal and are picked up again on the next start.
+     */
+    public synchronized void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workers.clear();
+        queue.clear();
+        retryAcks();
+        if (!unacknowledged.isEmpty()) {
+            logger.warn("SmsDispatcher - " + unacknowledged.size() + " delivered SMS could not be acked and are sent again after a restart");
+            unacknowledged.clear();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            QueuedSms sms;
+            try {
+                sms = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            if (sms != null) {
+                deliver(sms);
+            }
+            retryAcks();
+            compactIfDue();
+        }
+    }
+
+    private void deliver(QueuedSms sms) {
+        if (System.currentTimeMillis() >= expiresAt(sms)) {
+            try {
+                journal.deadLetter(sms, "EXPIRED - not sent after " + sms.getAttempts() + " attempts");
+            } catch (IOException e) {
+                // Stays pending in the journal and is dead-lettered again after a restart
+                logger.error("SmsDispatcher - failed to journal expiry of SMS " + sms.getId(), e);
+            }
+            return;
+        }
+
+        int attempt = sms.incrementAttempts();
+        SmsDeliveryResult result;
+        String previousRealm = SmsMetrics.setRealm(sms.getRealm());
+        try {
+            result = delegate.sendAsync(sms.getPhoneNumber(), sms.getText()).join();
+        } finally {
+            SmsMetrics.setRealm(previousRealm);
+        }
+
+        if (result.isSuccess()) {
+            logger.debug("SmsDispatcher - delivered SMS " + sms.getId() + " on attempt " + attempt);
+            acknowledge(sms);
+            return;
+        }
+
+        try {
+            if (result.getErrorClass() == SmsDeliveryResult.ErrorClass.INVALID_REQUEST || attempt >= maxAttempts) {
+                journal.deadLetter(sms, result.getErrorClass() + " - " + result.getErrorMessage());
+            } else {
+                long backoff = Math.min(backoffMillis(attempt), Math.max(0, expiresAt(sms) - System.currentTimeMillis()));
+                logger.warn("SmsDispatcher - attempt " + attempt + " for SMS " + sms.getId() + " failed with "
+                        + result.getErrorClass() + ", retrying in " + backoff + " ms");
+                sms.retryAfter(backoff);
+                queue.offer(sms);
+            }
+        } catch (IOException e) {
+            // The failure could not be journaled, keep the message in memory so it is not lost before a restart
+            logger.error("SmsDispatcher - failed to journal outcome of SMS " + sms.getId(), e);
+            sms.retryAfter(backoffMillis(attempt));
+            queue.offer(sms);
+        }
+    }
+
+    // A delivered message is never sent again, if its ack cannot be journaled it is retried without the send
+    private void acknowledge(QueuedSms sms) {
+        try {
+            journal.ack(sms);
+        } catch (IOException e) {
+            logger.error("SmsDispatcher - failed to journal delivery of SMS " + sms.getId() + ", retrying the ack", e);
+            unacknowledged.offer(sms);
+        }
+    }
+
+    private void retryAcks() {
+        QueuedSms sms;
+        for (int i = unacknowledged.size(); i > 0 && (sms = unacknowledged.poll()) != null; i--) {
+            acknowledge(sms);
+        }
+    }
+
+    // Messages journaled without an expiry expire after the configured TTL as well
+    private long expiresAt(QueuedSms sms) {
+        long ttlExpiresAt = sms.getEnqueuedAt() + messageTtlMillis;
+        return ttlExpiresAt < sms.getEnqueuedAt() ? sms.getExpiresAt() : Math.min(sms.getExpiresAt(), ttlExpiresAt);
+    }
+
+    long backoffMillis(int attempt) {
+        long ceiling = initialBackoffMillis << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        // Full jitter: anywhere between the initial backoff and the exponential ceiling
+        return initialBackoffMillis + ThreadLocalRandom.current().nextLong(ceiling - initialBackoffMillis + 1);
+    }
+
+    private void compactIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastCompaction < COMPACTION_INTERVAL_MILLIS) {
+            return;
+        }
+        lastCompaction = now;
+        try {
+            journal.compactIfLarger(maxJournalBytes);
+            journal.compactIfOlder(messageTtlMillis);
+        } catch (IOException e) {
+            logger.error("SmsDispatcher - journal compaction failed", e);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package org.sunbird.sms.queue;
+
+import org.jboss.logging.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of outbound SMS. Every message is written as an ENQUEUE record and later closed by either
+ * an ACK (delivered) or a DEAD (given up) record, so replaying the file after a restart yields exactly the
+ * messages that were still pending.
+ *
+ * <p>Records are framed as {@code [length][crc32][payload]}; a torn or corrupt tail left by a crash is detected on
+ * replay and truncated. Durability is provided by {@link #sync(long)}, which group-commits: one fsync covers every
+ * record appended before it started, so concurrent callers share the cost of a single force.
+ *
+ * <p>The text of an SMS usually carries an OTP, so it is only kept as long as needed: delivered and dead-lettered
+ * messages are dropped from the journal by {@link #compactIfOlder(long)}, and the dead letter file records which
+ * message was given up and why, but not its text. The dead letter file is rotated once it reaches its size limit.
+ *
+ * <p>Until then the journal holds the text of pending messages, OTPs included, in plain text, and so does a legacy
+ * journal until {@link #migrateFrom(File)} has moved its messages. The journal directory and its files are therefore
+ * restricted to the owner on file systems with POSIX permissions, and the directory should not be on a volume that
+ * is shared, backed up or shipped elsewhere.
+ *
+ * <p>A journal holds a lock on its directory while it is open, opening a second journal on the same directory, in
+ * this process or another one, fails instead of letting two writers overwrite each other's records.
+ */
+public class SmsJournal implements Closeable {
+
+    private static Logger logger = Logger.getLogger(SmsJournal.class);
+
+    static final String JOURNAL_FILE = "sms-journal.log";
+    static final String LOCK_FILE = "sms-journal.lock";
+    static final String DEAD_LETTER_FILE = "sms-dead-letter.txt";
+    // Dead letter file of earlier versions, which held the text of the messages
+    private static final String LEGACY_DEAD_LETTER_FILE = "sms-dead-letter.log";
+    private static final String ROTATED_SUFFIX = ".1";
+    private static final String MIGRATION_DIRECTORY = "migrating";
+
+    public static final long DEFAULT_MAX_DEAD_LETTER_SIZE = 1024L * 1024;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+    // Enqueue record without an expiry, written by earlier versions
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+    private static final byte DEAD = 3;
+    private static final byte ENQUEUE_EXPIRING = 4;
+
+    private final Path journalPath;
+    private final Path deadLetterPath;
+    private final long maxDeadLetterBytes;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    // Kept on a file of its own, the journal file is replaced on compaction
+    private final FileChannel lockChannel;
+    private FileChannel journal;
+    private FileChannel deadLetter;
+    private volatile long writtenPosition;
+    private volatile long syncedPosition;
+
+    // Messages with an ENQUEUE record but no ACK or DEAD record yet, guarded by writeLock
+    private final Map<Long, QueuedSms> pending = new LinkedHashMap<>();
+    // Enqueue time of the oldest message whose text is still in the journal although it is closed, guarded by writeLock
+    private long oldestClosedEnqueuedAt = Long.MAX_VALUE;
+
+    public SmsJournal(File directory) throws IOException {
+        this(directory, DEFAULT_MAX_DEAD_LETTER_SIZE);
+    }
+
+    public SmsJournal(File directory, long maxDeadLetterBytes) throws IOException {
+        Files.createDirectories(directory.toPath());
+        restrict(directory.toPath(), OWNER_ONLY_DIRECTORY);
+        this.journalPath = new File(directory, JOURNAL_FILE).toPath();
+        this.deadLetterPath = new File(directory, DEAD_LETTER_FILE).toPath();
+        this.maxDeadLetterBytes = maxDeadLetterBytes;
+        this.lockChannel = lock(new File(directory, LOCK_FILE).toPath());
+        try {
+            Files.deleteIfExists(new File(directory, LEGACY_DEAD_LETTER_FILE).toPath());
+            this.journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            restrict(journalPath, OWNER_ONLY_FILE);
+            this.deadLetter = openDeadLetter(deadLetterPath);
+            replay();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(journal);
+            closeQuietly(deadLetter);
+            closeQuietly(lockChannel);
+            throw e;
+        }
+    }
+
+    // The lock is released when the returned channel is closed
+    private static FileChannel lock(Path lockPath) throws IOException {
+        FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            restrict(lockPath, OWNER_ONLY_FILE);
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+        if (lock == null) {
+            closeQuietly(channel);
+            throw new IOException("SMS queue journal in " + lockPath.getParent() + " is already open");
+        }
+        return channel;
+    }
+
+    private static FileChannel openDeadLetter(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            restrict(path, OWNER_ONLY_FILE);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+        return channel;
+    }
+
+    // Also tightens the permissions of a directory or file created by an earlier version
+    private static void restrict(Path path, Set<PosixFilePermission> permissions) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, permissions);
+        } catch (UnsupportedOperationException e) {
+            logger.debug("SmsJournal - " + path + " does not support POSIX permissions, not restricting its access");
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignore) {
+                // Ignore ...
+            }
+        }
+    }
+
+    /**
+     * Returns the messages that are enqueued but neither delivered nor dead-lettered.
+     */
+    public List<QueuedSms> getPending() {
+        synchronized (writeLock) {
+            return new ArrayList<>(pending.values());
+        }
+    }
+
+    /**
+     * Appends an ENQUEUE record for a message that must not be sent after {@code expiresAt}. The record is durable
+     * only once {@link #sync(long)} has been called with the returned position.
+     */
+    public QueuedSms append(String phoneNumber, String text, long expiresAt) throws IOException {
+        QueuedSms sms = new QueuedSms(nextId.getAndIncrement(), phoneNumber, text, System.currentTimeMillis(), expiresAt);
+        write(encode(ENQUEUE_EXPIRING, sms), sms.getId(), sms);
+        return sms;
+    }
+
+    public long position() {
+        return writtenPosition;
+    }
+
+    public void ack(QueuedSms sms) throws IOException {
+        write(encode(ACK, sms), sms.getId(), null);
+    }
+
+    public void deadLetter(QueuedSms sms, String reason) throws IOException {
+        String line = sms.getEnqueuedAt() + "\t" + sms.getId() + "\t" + sms.getPhoneNumber() + "\t" + sms.getAttempts()
+                + "\t" + String.valueOf(reason).replace('\n', ' ').replace('\r', ' ') + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        synchronized (writeLock) {
+            if (deadLetter.size() + buffer.remaining() > maxDeadLetterBytes) {
+                rotateDeadLetter();
+            }
+            while (buffer.hasRemaining()) {
+                deadLetter.write(buffer);
+            }
+            deadLetter.force(false);
+        }
+        logger.error("SmsJournal - SMS " + sms.getId() + " to " + sms.getPhoneNumber() + " moved to dead letter after "
+                + sms.getAttempts() + " attempts: " + reason);
+        write(encode(DEAD, sms), sms.getId(), null);
+    }
+
+    /**
+     * Blocks until every record up to the given position is on disk.
+     */
+    public void sync(long position) throws IOException {
+        if (syncedPosition >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                return;
+            }
+            long target = writtenPosition;
+            journal.force(false);
+            syncedPosition = target;
+        }
+    }
+
+    /**
+     * Moves the messages still pending in the journal of another directory, e.g. one written before the journal
+     * moved, into this journal and removes that journal as well as its dead letters. The journal is first
+     * renamed into this journal's directory, so concurrent migrations of the same directory do not both take its
+     * messages, and a migration interrupted by a crash is finished by the next one. Returns the number of messages
+     * moved, which may then be sent twice if a crash hits after they were synced here but before the old journal was
+     * deleted.
+     */
+    public int migrateFrom(File directory) throws IOException {
+        Path migrating = journalPath.resolveSibling(MIGRATION_DIRECTORY);
+        Path legacyJournal = new File(directory, JOURNAL_FILE).toPath();
+        if (!Files.isDirectory(migrating)) {
+            if (!Files.isRegularFile(legacyJournal)) {
+                return 0;
+            }
+            Files.createDirectories(migrating);
+            restrict(migrating, OWNER_ONLY_DIRECTORY);
+            try {
+                Files.move(legacyJournal, migrating.resolve(JOURNAL_FILE), StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                // Taken by another journal in the meantime
+            }
+        }
+
+        int moved = 0;
+        SmsJournal legacy = new SmsJournal(migrating.toFile());
+        try {
+            for (QueuedSms sms : legacy.getPending()) {
+                append(sms.getPhoneNumber(), sms.getText(), sms.getExpiresAt());
+                moved++;
+            }
+            sync(position());
+        } finally {
+            legacy.close();
+        }
+        Files.deleteIfExists(migrating.resolve(JOURNAL_FILE));
+        Files.deleteIfExists(migrating.resolve(DEAD_LETTER_FILE));
+        Files.deleteIfExists(migrating.resolve(LOCK_FILE));
+        Files.deleteIfExists(migrating);
+        Files.deleteIfExists(new File(directory, LEGACY_DEAD_LETTER_FILE).toPath());
+        if (moved > 0) {
+            logger.info("SmsJournal - migrated " + moved + " pending SMS from " + legacyJournal + " to " + journalPath);
+        }
+        return moved;
+    }
+
+    public long size() throws IOException {
+        return journal.size();
+    }
+
+    /**
+     * Rewrites the journal so that it only holds the pending messages, once it has grown past {@code maxBytes}.
+     * Appends are blocked while the journal is rewritten.
+     */
+    public void compactIfLarger(long maxBytes) throws IOException {
+        synchronized (writeLock) {
+            if (writtenPosition > maxBytes) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal so that it only holds the pending messages, once it holds a delivered or dead-lettered
+     * message that was enqueued more than {@code maxAgeMillis} ago.
+     */
+    public void compactIfOlder(long maxAgeMillis) throws IOException {
+        synchronized (writeLock) {
+            if (oldestClosedEnqueuedAt != Long.MAX_VALUE
+                    && System.currentTimeMillis() - oldestClosedEnqueuedAt >= maxAgeMillis) {
+                compact();
+            }
+        }
+    }
+
+    // Called with writeLock held
+    private void compact() throws IOException {
+        synchronized (syncLock) {
+            Path compacted = journalPath.resolveSibling(JOURNAL_FILE + ".compact");
+            try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                restrict(compacted, OWNER_ONLY_FILE);
+                for (QueuedSms sms : pending.values()) {
+                    channel.write(ByteBuffer.wrap(encode(ENQUEUE_EXPIRING, sms)));
+                }
+                channel.force(true);
+            }
+            journal.close();
+            Files.move(compacted, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writtenPosition = journal.size();
+            journal.position(writtenPosition);
+            syncedPosition = writtenPosition;
+            oldestClosedEnqueuedAt = Long.MAX_VALUE;
+        }
+        logger.debug("SmsJournal - compacted journal to " + pending.size() + " pending messages");
+    }
+
+    // Called with writeLock held
+    private void rotateDeadLetter() throws IOException {
+        deadLetter.close();
+        Files.move(deadLetterPath, deadLetterPath.resolveSibling(DEAD_LETTER_FILE + ROTATED_SUFFIX),
+                StandardCopyOption.REPLACE_EXISTING);
+        deadLetter = openDeadLetter(deadLetterPath);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            synchronized (syncLock) {
+                try {
+                    journal.force(false);
+                    journal.close();
+                    deadLetter.close();
+                } finally {
+                    lockChannel.close();
+                }
+            }
+        }
+    }
+
+    private void write(byte[] record, long id, QueuedSms enqueued) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        synchronized (writeLock) {
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            writtenPosition += record.length;
+            if (enqueued != null) {
+                pending.put(id, enqueued);
+            } else {
+                closed(pending.remove(id));
+            }
+        }
+    }
+
+    // Called with writeLock held
+    private void closed(QueuedSms sms) {
+        if (sms != null) {
+            oldestClosedEnqueuedAt = Math.min(oldestClosedEnqueuedAt, sms.getEnqueuedAt());
+        }
+    }
+
+    private static byte[] encode(byte type, QueuedSms sms) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(64);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(type);
+        payload.writeLong(sms.getId());
+        if (type == ENQUEUE_EXPIRING) {
+            payload.writeLong(sms.getEnqueuedAt());
+            payload.writeLong(sms.getExpiresAt());
+            payload.writeUTF(sms.getPhoneNumber());
+            payload.writeUTF(sms.getText());
+        }
+        payload.flush();
+
+        byte[] body = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(body.length + 8);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeInt(body.length);
+        record.writeInt((int) crc.getValue());
+        record.write(body);
+        record.flush();
+        return recordBytes.toByteArray();
+    }
+
+    private void replay() throws IOException {
+        long validPosition = 0;
+        long maxId = 0;
+
+        journal.position(0);
+        InputStream in = new BufferedInputStream(Channels.newInputStream(journal));
+        DataInputStream data = new DataInputStream(in);
+        try {
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int checksum = data.readInt();
+                if (length <= 0 || length > 1024 * 1024) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                data.readFully(body);
+
+                CRC32 crc = new CRC32();
+                crc.update(body, 0, body.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                byte type = record.readByte();
+                long id = record.readLong();
+                maxId = Math.max(maxId, id);
+                if (type == ENQUEUE || type == ENQUEUE_EXPIRING) {
+                    long enqueuedAt = record.readLong();
+                    long expiresAt = type == ENQUEUE_EXPIRING ? record.readLong() : Long.MAX_VALUE;
+                    String phoneNumber = record.readUTF();
+                    String text = record.readUTF();
+                    pending.put(id, new QueuedSms(id, phoneNumber, text, enqueuedAt, expiresAt));
+                } else {
+                    closed(pending.remove(id));
+                }
+                validPosition += 8 + length;
+            }
+        } catch (EOFException e) {
+            // Torn record at the tail, truncated below
+        }
+
+        if (validPosition < journal.size()) {
+            logger.warn("SmsJournal - truncating " + (journal.size() - validPosition) + " bytes of incomplete records from " + journalPath);
+            journal.truncate(validPosition);
+        }
+        journal.position(validPosition);
+        writtenPosition = validPosition;
+        syncedPosition = validPosition;
+        nextId.set(maxId + 1);
+
+        if (!pending.isEmpty()) {
+            logger.info("SmsJournal - recovered " + pending.size() + " pending SMS from " + journalPath);
+        }
+    }
+}
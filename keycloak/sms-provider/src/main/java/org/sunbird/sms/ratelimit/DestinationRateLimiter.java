@@ -0,0 +1,44 @@
+package org.sunbird.sms.ratelimit;
+
+import org.sunbird.utils.BoundedCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Limits the number of SMS per destination number, e.g. 5 per 15 minutes. The buckets live in a
+ * {@link BoundedCache}, so a flood of distinct numbers evicts the least recently used buckets instead of growing
+ * the heap; an evicted number simply starts over with a full bucket.
+ */
+public class DestinationRateLimiter {
+
+    private final BoundedCache<String, TokenBucket> buckets;
+    private final Function<String, TokenBucket> bucketFactory;
+
+    public DestinationRateLimiter(final long sends, final long period, final TimeUnit unit, int maxNumbers) {
+        this.buckets = new BoundedCache<>(maxNumbers);
+        this.bucketFactory = new Function<String, TokenBucket>() {
+            @Override
+            public TokenBucket apply(String phoneNumber) {
+                return new TokenBucket(sends, sends, period, unit);
+            }
+        };
+    }
+
+    public boolean tryAcquire(String phoneNumber) {
+        if (phoneNumber == null) {
+            return true;
+        }
+        return buckets.get(phoneNumber, bucketFactory).tryAcquire();
+    }
+
+    /**
+     * Refunds a send permitted by {@link #tryAcquire(String)} that was not made after all.
+     */
+    public void release(String phoneNumber) {
+        TokenBucket bucket = phoneNumber != null ? buckets.get(phoneNumber) : null;
+        if (bucket != null) {
+            bucket.release();
+        }
+    }
+}
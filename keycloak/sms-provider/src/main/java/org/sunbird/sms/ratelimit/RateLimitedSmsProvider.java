@@ -0,0 +1,128 @@
+package org.sunbird.sms.ratelimit;
+
+import org.jboss.logging.Logger;
+import org.sunbird.sms.SMSConfigurationUtil;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects sends with {@link SmsDeliveryResult.ErrorClass#RATE_LIMITED} once a throughput cap for the wrapped
+ * provider or a per-destination cap is exhausted. Either limit may be absent.
+ */
+public class RateLimitedSmsProvider implements ISmsProvider {
+
+    private static Logger logger = Logger.getLogger(RateLimitedSmsProvider.class);
+
+    private static final int STRIPES = 8;
+    private static final int DEFAULT_DESTINATION_LIMIT = 5;
+    private static final long DEFAULT_DESTINATION_WINDOW = 900;
+    private static final int DEFAULT_DESTINATION_MAX_NUMBERS = 100000;
+
+    private final ISmsProvider delegate;
+    private final StripedTokenBucket providerLimit;
+    private final DestinationRateLimiter destinationLimit;
+
+    public RateLimitedSmsProvider(ISmsProvider delegate, StripedTokenBucket providerLimit, DestinationRateLimiter destinationLimit) {
+        this.delegate = delegate;
+        this.providerLimit = providerLimit;
+        this.destinationLimit = destinationLimit;
+    }
+
+    /**
+     * Builds the throughput cap of the named provider from {@code sms_provider_rate_limit_<name>}, falling back to
+     * {@code sms_provider_rate_limit}, in sends per second. Returns null when no cap is configured.
+     */
+    public static StripedTokenBucket createProviderLimit(String name, Map<String, String> configurations) {
+        int perSecond = SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_PROVIDER_RATE_LIMIT + "_" + name,
+                SMSConfigurationUtil.getConfigInt(configurations, SmsConfigurationConstants.CONF_SMS_PROVIDER_RATE_LIMIT, 0));
+        return perSecond > 0 ? new StripedTokenBucket(STRIPES, perSecond, perSecond, 1, TimeUnit.SECONDS) : null;
+    }
+
+    /**
+     * Builds the per-destination cap, {@code sms_destination_rate_limit} sends per
+     * {@code sms_destination_rate_limit_window} seconds. Returns null when the limit is set to 0.
+     */
+    public static DestinationRateLimiter createDestinationLimit(Map<String, String> configurations) {
+        int sends = SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_DESTINATION_RATE_LIMIT, DEFAULT_DESTINATION_LIMIT);
+        long window = SMSConfigurationUtil.getConfigLong(configurations,
+                SmsConfigurationConstants.CONF_SMS_DESTINATION_RATE_LIMIT_WINDOW, DEFAULT_DESTINATION_WINDOW);
+        int maxNumbers = SMSConfigurationUtil.getConfigInt(configurations,
+                SmsConfigurationConstants.CONF_SMS_DESTINATION_RATE_LIMIT_MAX_NUMBERS, DEFAULT_DESTINATION_MAX_NUMBERS);
+        return sends > 0 ? new DestinationRateLimiter(sends, window, TimeUnit.SECONDS, maxNumbers) : null;
+    }
+
+    /**
+     * The limits are given at construction. The wrapped provider is configured by its own factory.
+     */
+    @Override
+    public void configure(Map<String, String> configurations) {
+    }
+
+    @Override
+    public boolean send(String phoneNumber, String smsText) {
+        return sendAsync(phoneNumber, smsText).join().isSuccess();
+    }
+
+    @Override
+    public CompletableFuture<SmsDeliveryResult> sendAsync(String phoneNumber, String smsText) {
+        SmsDeliveryResult rejected = tryAcquire(phoneNumber);
+        if (rejected != null) {
+            return CompletableFuture.completedFuture(rejected);
+        }
+        return delegate.sendAsync(phoneNumber, smsText);
+    }
+
+    @Override
+    public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+        List<SmsDeliveryResult> results = new ArrayList<>(messages.size());
+        List<SmsMessage> permitted = new ArrayList<>(messages.size());
+        for (SmsMessage message : messages) {
+            SmsDeliveryResult rejected = tryAcquire(message.getPhoneNumber());
+            results.add(rejected);
+            if (rejected == null) {
+                permitted.add(message);
+            }
+        }
+
+        if (!permitted.isEmpty()) {
+            List<SmsDeliveryResult> sent = delegate.sendBatch(permitted);
+            int next = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, sent.get(next++));
+                }
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private SmsDeliveryResult tryAcquire(String phoneNumber) {
+        if (destinationLimit != null && !destinationLimit.tryAcquire(phoneNumber)) {
+            logger.warn("RateLimitedSmsProvider - too many SMS to " + phoneNumber + ", rejecting");
+            return SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.RATE_LIMITED, "Too many SMS to this number", 0);
+        }
+        if (providerLimit != null && !providerLimit.tryAcquire()) {
+            // The SMS is not sent, so it must not count against the number's own limit
+            if (destinationLimit != null) {
+                destinationLimit.release(phoneNumber);
+            }
+            return SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.RATE_LIMITED, "Provider throughput limit reached", 0);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,38 @@
+package org.sunbird.sms.ratelimit;
+
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.ISmsProviderFactory;
+
+import java.util.Map;
+
+/**
+ * Applies the per-destination rate limit in front of the providers created by another factory.
+ */
+public class RateLimitedSmsProviderFactory implements ISmsProviderFactory {
+
+    private final ISmsProviderFactory delegateFactory;
+    private ISmsProvider smsProvider = null;
+
+    public RateLimitedSmsProviderFactory(ISmsProviderFactory delegateFactory) {
+        this.delegateFactory = delegateFactory;
+    }
+
+    @Override
+    public synchronized ISmsProvider create(Map<String, String> configurations) {
+        if (smsProvider == null) {
+            ISmsProvider provider = delegateFactory.create(configurations);
+            DestinationRateLimiter destinationLimit = RateLimitedSmsProvider.createDestinationLimit(configurations);
+            if (provider == null || destinationLimit == null) {
+                return provider;
+            }
+            smsProvider = new RateLimitedSmsProvider(provider, null, destinationLimit);
+        }
+        return smsProvider;
+    }
+
+    @Override
+    public synchronized void close() {
+        smsProvider = null;
+        delegateFactory.close();
+    }
+}
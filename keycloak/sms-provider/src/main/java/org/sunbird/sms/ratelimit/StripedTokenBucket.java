@@ -0,0 +1,34 @@
+package org.sunbird.sms.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket split into stripes, each holding an equal share of the rate and burst, so that threads sending
+ * at a high rate do not all compare-and-set the same word. A thread takes from its home stripe and only visits
+ * the other stripes when that one is empty, so the combined limit is the configured one.
+ */
+public class StripedTokenBucket {
+
+    private final TokenBucket[] stripes;
+
+    public StripedTokenBucket(int stripeCount, long capacity, long tokens, long period, TimeUnit unit) {
+        int count = (int) Math.max(1, Math.min(stripeCount, Math.min(capacity, tokens)));
+        stripes = new TokenBucket[count];
+        for (int i = 0; i < count; i++) {
+            // Spread the remainder over the first stripes so that the shares add up to the totals
+            long stripeCapacity = capacity / count + (i < capacity % count ? 1 : 0);
+            long stripeTokens = tokens / count + (i < tokens % count ? 1 : 0);
+            stripes[i] = new TokenBucket(stripeCapacity, stripeTokens, period, unit);
+        }
+    }
+
+    public boolean tryAcquire() {
+        int home = (int) (Thread.currentThread().getId() % stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            if (stripes[(home + i) % stripes.length].tryAcquire()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
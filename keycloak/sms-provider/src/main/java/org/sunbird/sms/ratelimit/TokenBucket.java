@@ -0,0 +1,47 @@
+package org.sunbird.sms.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as the equivalent generic cell rate algorithm: the whole state is the
+ * theoretical arrival time of the next token, updated with a single compare-and-set per acquire.
+ */
+public class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param capacity tokens the bucket holds when full, i.e. the permitted burst
+     * @param tokens   tokens refilled per {@code period}
+     */
+    public TokenBucket(long capacity, long tokens, long period, TimeUnit unit) {
+        this.nanosPerToken = Math.max(1, unit.toNanos(period) / Math.max(1, tokens));
+        this.burstNanos = nanosPerToken * Math.max(1, capacity);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now - burstNanos) + nanosPerToken;
+            if (next - now > 0) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a token taken by {@link #tryAcquire()} that ended up unused. The bucket never holds more than its
+     * capacity, a release on a full bucket is lost.
+     */
+    public void release() {
+        theoreticalArrival.addAndGet(-nanosPerToken);
+    }
+}
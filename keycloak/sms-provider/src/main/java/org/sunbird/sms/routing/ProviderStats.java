@@ -0,0 +1,78 @@
+package org.sunbird.sms.routing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rolling latency and error rate of one provider. Both are exponentially weighted moving averages whose weight
+ * depends on the time since the previous sample, so a burst of failures moves the score within seconds and an
+ * idle provider drifts back to a neutral error rate instead of being shunned forever. Only successful sends move the
+ * latency: a gateway that refuses connections fails in milliseconds, and counting that would rank it first.
+ */
+public class ProviderStats {
+
+    private final double decayNanos;
+    private final AtomicReference<Snapshot> snapshot;
+
+    public ProviderStats(long decayMillis, double initialLatencyMillis) {
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, decayMillis));
+        this.snapshot = new AtomicReference<>(new Snapshot(initialLatencyMillis, 0, System.nanoTime(), 0));
+    }
+
+    public void record(boolean success, long latencyNanos) {
+        double latencyMillis = latencyNanos / 1_000_000.0;
+        double error = success ? 0 : 1;
+        long now = System.nanoTime();
+
+        Snapshot current;
+        Snapshot next;
+        do {
+            current = snapshot.get();
+            double alpha = 1 - Math.exp(-Math.max(0, now - current.updatedAt) / decayNanos);
+            // The very first samples should count even if they arrive in quick succession
+            alpha = Math.max(alpha, 1.0 / (Math.min(current.samples, 9) + 1));
+            next = new Snapshot(
+                    success ? current.latencyMillis + alpha * (latencyMillis - current.latencyMillis) : current.latencyMillis,
+                    current.errorRate + alpha * (error - current.errorRate),
+                    now,
+                    current.samples + 1);
+        } while (!snapshot.compareAndSet(current, next));
+    }
+
+    public double getLatencyMillis() {
+        return snapshot.get().latencyMillis;
+    }
+
+    /**
+     * The error rate, decayed towards zero for the time that passed without new samples.
+     */
+    public double getErrorRate() {
+        Snapshot current = snapshot.get();
+        return current.errorRate * Math.exp(-Math.max(0, System.nanoTime() - current.updatedAt) / decayNanos);
+    }
+
+    public long getSamples() {
+        return snapshot.get().samples;
+    }
+
+    /**
+     * Expected time to a successful send, lower is better. The latency is that of the successful sends.
+     */
+    public double score() {
+        return getLatencyMillis() / Math.max(0.01, 1 - getErrorRate());
+    }
+
+    private static final class Snapshot {
+        private final double latencyMillis;
+        private final double errorRate;
+        private final long updatedAt;
+        private final long samples;
+
+        private Snapshot(double latencyMillis, double errorRate, long updatedAt, long samples) {
+            this.latencyMillis = latencyMillis;
+            this.errorRate = errorRate;
+            this.updatedAt = updatedAt;
+            this.samples = samples;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.sunbird.sms.routing;
+
+import org.jboss.logging.Logger;
+import org.sunbird.sms.SMSConfigurationUtil;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.dlr.DeliveryStats;
+import org.sunbird.sms.metrics.SmsMetrics;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Sends through the provider with the best rolling latency and success rate, failing over to the next best one
+ * when a send fails. Providers are tried in configuration order while their statistics are equal. Where delivery
+ * receipts are processed, a provider's rate of accepted but undelivered messages counts against it as well.
+ */
+public class RoutingSmsProvider implements ISmsProvider {
+
+    private static Logger logger = Logger.getLogger(RoutingSmsProvider.class);
+
+    private static final long DEFAULT_DECAY = 10000;
+    private static final long DEFAULT_INITIAL_LATENCY = 1000;
+
+    private final Map<String, ISmsProvider> providers;
+    private volatile List<Route> routes = Collections.emptyList();
+
+    /**
+     * @param providers the providers by name, in order of preference
+     */
+    public RoutingSmsProvider(Map<String, ISmsProvider> providers) {
+        this.providers = new LinkedHashMap<>(providers);
+    }
+
+    /**
+     * Resets the statistics. The routed providers are configured by their own factories.
+     */
+    @Override
+    public void configure(Map<String, String> configurations) {
+        long decay = SMSConfigurationUtil.getConfigLong(configurations, SmsConfigurationConstants.CONF_SMS_ROUTING_DECAY, DEFAULT_DECAY);
+        long initialLatency = SMSConfigurationUtil.getConfigLong(configurations,
+                SmsConfigurationConstants.CONF_SMS_ROUTING_INITIAL_LATENCY, DEFAULT_INITIAL_LATENCY);
+
+        List<Route> configured = new ArrayList<>(providers.size());
+        for (Map.Entry<String, ISmsProvider> provider : providers.entrySet()) {
+            configured.add(new Route(provider.getKey(), provider.getValue(), new ProviderStats(decay, initialLatency)));
+        }
+        routes = Collections.unmodifiableList(configured);
+    }
+
+    @Override
+    public boolean send(String phoneNumber, String smsText) {
+        return sendAsync(phoneNumber, smsText).join().isSuccess();
+    }
+
+    @Override
+    public CompletableFuture<SmsDeliveryResult> sendAsync(String phoneNumber, String smsText) {
+        return sendAsync(rankedRoutes(), 0, phoneNumber, smsText);
+    }
+
+    private CompletableFuture<SmsDeliveryResult> sendAsync(final List<Route> ranked, final int index,
+                                                           final String phoneNumber, final String smsText) {
+        if (ranked.isEmpty()) {
+            return CompletableFuture.completedFuture(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.REJECTED,
+                    "No SMS provider configured", 0));
+        }
+
+        final Route route = ranked.get(index);
+        final String realm = SmsMetrics.getRealm();
+        return route.provider.sendAsync(phoneNumber, smsText).thenCompose(new Function<SmsDeliveryResult, CompletableFuture<SmsDeliveryResult>>() {
+            @Override
+            public CompletableFuture<SmsDeliveryResult> apply(SmsDeliveryResult result) {
+                record(route, result);
+                if (result.isSuccess() || index + 1 >= ranked.size()) {
+                    return CompletableFuture.completedFuture(result);
+                }
+                logger.warn("RoutingSmsProvider - " + route.name + " failed with " + result.getErrorClass()
+                        + ", failing over to " + ranked.get(index + 1).name);
+                // The failover may run on the failed provider's thread, carry the realm over for its metrics
+                String previousRealm = SmsMetrics.setRealm(realm);
+                try {
+                    return sendAsync(ranked, index + 1, phoneNumber, smsText);
+                } finally {
+                    SmsMetrics.setRealm(previousRealm);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends the whole batch through the best provider, then retries the messages that failed with the next one.
+     */
+    @Override
+    public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+        List<Route> ranked = rankedRoutes();
+        List<SmsDeliveryResult> results = new ArrayList<>(messages.size());
+        if (ranked.isEmpty()) {
+            for (int i = 0; i < messages.size(); i++) {
+                results.add(SmsDeliveryResult.failure(SmsDeliveryResult.ErrorClass.REJECTED, "No SMS provider configured", 0));
+            }
+            return results;
+        }
+
+        List<Integer> pending = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            results.add(null);
+            pending.add(i);
+        }
+
+        for (int r = 0; r < ranked.size() && !pending.isEmpty(); r++) {
+            Route route = ranked.get(r);
+            List<SmsMessage> batch = new ArrayList<>(pending.size());
+            for (Integer i : pending) {
+                batch.add(messages.get(i));
+            }
+
+            List<SmsDeliveryResult> batchResults = route.provider.sendBatch(batch);
+            List<Integer> failed = new ArrayList<>();
+            for (int j = 0; j < batchResults.size(); j++) {
+                SmsDeliveryResult result = batchResults.get(j);
+                record(route, result);
+                results.set(pending.get(j), result);
+                if (!result.isSuccess()) {
+                    failed.add(pending.get(j));
+                }
+            }
+            if (!failed.isEmpty() && r + 1 < ranked.size()) {
+                logger.warn("RoutingSmsProvider - " + failed.size() + " of " + batch.size() + " messages failed on "
+                        + route.name + ", failing over to " + ranked.get(r + 1).name);
+            }
+            pending = failed;
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        for (ISmsProvider provider : providers.values()) {
+            provider.close();
+        }
+    }
+
+    /**
+     * Returns the rolling statistics of every routed provider, by provider name.
+     */
+    public Map<String, ProviderStats> getStats() {
+        Map<String, ProviderStats> stats = new LinkedHashMap<>();
+        for (Route route : routes) {
+            stats.put(route.name, route.stats);
+        }
+        return stats;
+    }
+
+    // Fail-fast rejections carry no latency information, counting them would make the route look fast
+    private static void record(Route route, SmsDeliveryResult result) {
+        if (result.getErrorClass() != SmsDeliveryResult.ErrorClass.CIRCUIT_OPEN
+                && result.getErrorClass() != SmsDeliveryResult.ErrorClass.RATE_LIMITED) {
+            route.stats.record(result.isSuccess(), result.getLatencyNanos());
+        }
+    }
+
+    private List<Route> rankedRoutes() {
+        List<Route> ranked = new ArrayList<>(routes);
+        if (ranked.size() > 1) {
+            // Scores are computed once per ranking, they move while other threads record samples
+            final Map<Route, Double> scores = new LinkedHashMap<>();
+            DeliveryStats deliveryStats = DeliveryStats.getInstance();
+            String realm = SmsMetrics.getRealm();
+            for (Route route : ranked) {
+                scores.put(route, route.stats.score() / Math.max(0.01, 1 - deliveryStats.getFailureRate(route.name, realm)));
+            }
+            Collections.sort(ranked, new Comparator<Route>() {
+                @Override
+                public int compare(Route left, Route right) {
+                    return Double.compare(scores.get(left), scores.get(right));
+                }
+            });
+        }
+        return ranked;
+    }
+
+    private static final class Route {
+        private final String name;
+        private final ISmsProvider provider;
+        private final ProviderStats stats;
+
+        private Route(String name, ISmsProvider provider, ProviderStats stats) {
+            this.name = name;
+            this.provider = provider;
+            this.stats = stats;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.sunbird.sms.routing;
+
+import org.jboss.logging.Logger;
+import org.sunbird.sms.SMSConfigurationUtil;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.amazonsns.AmazonSnsFactory;
+import org.sunbird.sms.circuitbreaker.CircuitBreakerSmsProvider;
+import org.sunbird.sms.dlr.DeliveryTrackingSmsProvider;
+import org.sunbird.sms.hedging.HedgedSmsProvider;
+import org.sunbird.sms.metrics.InstrumentedSmsProvider;
+import org.sunbird.sms.msg91.Msg91SmsProviderFactory;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.ISmsProviderFactory;
+import org.sunbird.sms.ratelimit.RateLimitedSmsProvider;
+import org.sunbird.sms.ratelimit.StripedTokenBucket;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates the providers listed in {@code sms_providers} (comma separated, in order of preference), each behind
+ * its own circuit breaker and throughput cap with metrics recorded for each, and routes between them. With a
+ * single provider configured that provider is returned without a router. With {@code sms_hedge_enabled} the first
+ * provider is hedged with the others instead of routed. With {@code sms_dlr_enabled} the messages each provider
+ * accepted are tracked for their delivery receipts.
+ */
+public class RoutingSmsProviderFactory implements ISmsProviderFactory {
+
+    private static Logger logger = Logger.getLogger(RoutingSmsProviderFactory.class);
+
+    public static final String MSG91 = "msg91";
+    public static final String AMAZON_SNS = "amazonsns";
+
+    private static final String DEFAULT_PROVIDERS = MSG91;
+
+    private final Map<String, ISmsProviderFactory> factories = new LinkedHashMap<>();
+    private ISmsProvider smsProvider = null;
+
+    public RoutingSmsProviderFactory() {
+        factories.put(MSG91, new Msg91SmsProviderFactory());
+        factories.put(AMAZON_SNS, new AmazonSnsFactory());
+    }
+
+    @Override
+    public synchronized ISmsProvider create(Map<String, String> configurations) {
+        if (smsProvider != null) {
+            return smsProvider;
+        }
+
+        Map<String, ISmsProvider> providers = new LinkedHashMap<>();
+        String names = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_PROVIDERS, DEFAULT_PROVIDERS);
+        for (String name : names.split(",")) {
+            name = name.trim().toLowerCase();
+            ISmsProviderFactory factory = factories.get(name);
+            if (factory == null) {
+                logger.error("RoutingSmsProviderFactory - unknown SMS provider " + name + ", skipping");
+                continue;
+            }
+            ISmsProvider provider = factory.create(configurations);
+            if (SMSConfigurationUtil.getConfigBoolean(configurations, SmsConfigurationConstants.CONF_SMS_DLR_ENABLED, false)) {
+                provider = new DeliveryTrackingSmsProvider(name, provider);
+            }
+            provider = new InstrumentedSmsProvider(name, provider);
+            if (CircuitBreakerSmsProvider.isEnabled(configurations)) {
+                provider = new CircuitBreakerSmsProvider(name, provider);
+                provider.configure(configurations);
+            }
+            StripedTokenBucket providerLimit = RateLimitedSmsProvider.createProviderLimit(name, configurations);
+            if (providerLimit != null) {
+                provider = new RateLimitedSmsProvider(provider, providerLimit, null);
+            }
+            providers.put(name, provider);
+        }
+
+        if (providers.isEmpty()) {
+            return null;
+        }
+        if (providers.size() > 1 && HedgedSmsProvider.isEnabled(configurations)) {
+            Iterator<Map.Entry<String, ISmsProvider>> iterator = providers.entrySet().iterator();
+            Map.Entry<String, ISmsProvider> primary = iterator.next();
+            iterator.remove();
+            smsProvider = new HedgedSmsProvider(primary.getKey(), primary.getValue(),
+                    String.join("+", providers.keySet()), route(providers, configurations));
+            smsProvider.configure(configurations);
+        } else {
+            smsProvider = route(providers, configurations);
+        }
+        return smsProvider;
+    }
+
+    private static ISmsProvider route(Map<String, ISmsProvider> providers, Map<String, String> configurations) {
+        if (providers.size() == 1) {
+            return providers.values().iterator().next();
+        }
+        ISmsProvider router = new RoutingSmsProvider(providers);
+        router.configure(configurations);
+        return router;
+    }
+
+    @Override
+    public synchronized void close() {
+        smsProvider = null;
+        for (ISmsProviderFactory factory : factories.values()) {
+            factory.close();
+        }
+    }
+}
@@ -3,16 +3,22 @@ package org.sunbird.utils;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.util.Map;
 
 public class JsonUtil {
 
-    public static Map<String, String> readFromJson(String jsonFile) {
-        ObjectMapper mapper = new ObjectMapper();
+    // Both are thread-safe once configured and expensive to create, so they are shared
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Gson gson = new Gson();
+    private static final Type STRING_MAP_TYPE = new TypeToken<Map<String, String>>() {
+    }.getType();
 
+    public static Map<String, String> readFromJson(String jsonFile) {
         // read JSON from a file
         Map<String, String> map = null;
 
@@ -30,9 +36,11 @@ public class JsonUtil {
 
 
     public static String toJson(Object object) {
-        Gson gsonObj = new Gson();
+        return gson.toJson(object);
+    }
 
-        return gsonObj.toJson(object);
+    public static Map<String, String> fromJson(String json) {
+        return gson.fromJson(json, STRING_MAP_TYPE);
     }
 
 }
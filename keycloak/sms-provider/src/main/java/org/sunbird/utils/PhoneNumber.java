@@ -0,0 +1,55 @@
+package org.sunbird.utils;
+
+/**
+ * A phone number in canonical E.164 form, e.g. {@code +919999999999}. Created by {@link PhoneNumberNormalizer}.
+ */
+public final class PhoneNumber {
+
+    private final String e164;
+
+    PhoneNumber(String e164) {
+        this.e164 = e164;
+    }
+
+    /**
+     * The number with a leading '+', as AWS SNS expects it.
+     */
+    public String getE164() {
+        return e164;
+    }
+
+    /**
+     * The number without the leading '+', as Msg91 expects it.
+     */
+    public String getDigits() {
+        return e164.substring(1);
+    }
+
+    /**
+     * The number without the given country code, or {@code null} if it belongs to another country.
+     *
+     * @param countryCode with or without a leading '+'
+     */
+    public String getNationalNumber(String countryCode) {
+        int offset = countryCode.startsWith("+") ? 0 : 1;
+        if (e164.regionMatches(offset, countryCode, 0, countryCode.length())) {
+            return e164.substring(countryCode.length() + offset);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PhoneNumber && e164.equals(((PhoneNumber) o).e164);
+    }
+
+    @Override
+    public int hashCode() {
+        return e164.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return e164;
+    }
+}
@@ -0,0 +1,131 @@
+package org.sunbird.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Parses user entered and stored phone numbers into {@link PhoneNumber}s with a single pass over the input.
+ *
+ * <p>Spaces, '-', '.', '/' and parentheses are ignored. A number starting with '+' or '00' is taken as
+ * international. Otherwise it belongs to the default country: a single leading trunk '0' is dropped and the
+ * default country code is prepended, unless the number already starts with that code and is longer than the 10
+ * digit national numbers the default country is expected to use. Numbers of 8 to 15 digits in total are valid.
+ *
+ * <p>Results, including rejected input, are memoized per default country code in a {@link BoundedCache}.
+ */
+public class PhoneNumberNormalizer {
+
+    private static final int MAX_CACHED_NUMBERS = 8192;
+    private static final int NATIONAL_NUMBER_LENGTH = 10;
+    private static final int MIN_DIGITS = 8;
+    private static final int MAX_DIGITS = 15;
+
+    private static final PhoneNumber INVALID = new PhoneNumber("");
+    private static final ConcurrentMap<String, BoundedCache<String, PhoneNumber>> caches = new ConcurrentHashMap<>();
+
+    private PhoneNumberNormalizer() {
+    }
+
+    /**
+     * @param defaultCountryCode the country code of numbers without one, with or without a leading '+'
+     * @return the canonical number, or {@code null} if the input is not a valid phone number
+     */
+    public static PhoneNumber normalize(String number, String defaultCountryCode) {
+        if (number == null) {
+            return null;
+        }
+        final String countryCode = defaultCountryCode.startsWith("+") ? defaultCountryCode.substring(1) : defaultCountryCode;
+        BoundedCache<String, PhoneNumber> cache = caches.get(countryCode);
+        if (cache == null) {
+            caches.putIfAbsent(countryCode, new BoundedCache<String, PhoneNumber>(MAX_CACHED_NUMBERS));
+            cache = caches.get(countryCode);
+        }
+
+        PhoneNumber phoneNumber = cache.get(number, new Function<String, PhoneNumber>() {
+            @Override
+            public PhoneNumber apply(String input) {
+                PhoneNumber parsed = parse(input, countryCode);
+                return parsed != null ? parsed : INVALID;
+            }
+        });
+        return phoneNumber == INVALID ? null : phoneNumber;
+    }
+
+    /**
+     * Whether the input is a phone number {@link #normalize(String, String)} accepts.
+     */
+    public static boolean isValid(String number, String defaultCountryCode) {
+        return normalize(number, defaultCountryCode) != null;
+    }
+
+    /**
+     * Whether the input is a non-empty run of ASCII digits.
+     */
+    public static boolean isDigits(String input) {
+        if (input == null || input.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static PhoneNumber parse(String input, String countryCode) {
+        char[] digits = new char[input.length()];
+        int count = 0;
+        boolean plus = false;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits[count++] = c;
+            } else if (c == '+' && count == 0 && !plus) {
+                plus = true;
+            } else if (c != ' ' && c != '-' && c != '.' && c != '/' && c != '(' && c != ')') {
+                return null;
+            }
+        }
+
+        int start = 0;
+        boolean international = plus;
+        if (!international && count > 2 && digits[0] == '0' && digits[1] == '0') {
+            start = 2;
+            international = true;
+        } else if (!international && count > 1 && digits[0] == '0') {
+            start = 1;
+        } else if (!international && count > NATIONAL_NUMBER_LENGTH && startsWith(digits, count, countryCode)) {
+            international = true;
+        }
+
+        int total = count - start + (international ? 0 : countryCode.length());
+        if (total < MIN_DIGITS || total > MAX_DIGITS) {
+            return null;
+        }
+
+        StringBuilder e164 = new StringBuilder(total + 1).append('+');
+        if (!international) {
+            e164.append(countryCode);
+        }
+        e164.append(digits, start, count - start);
+        if (e164.charAt(1) == '0') {
+            return null;
+        }
+        return new PhoneNumber(e164.toString());
+    }
+
+    private static boolean startsWith(char[] digits, int count, String prefix) {
+        if (count < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (digits[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+package org.sunbird.utils;
+
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A per-thread byte buffer for encoding request bodies without allocating a new array, string and copy per
+ * request. The entity returned by {@link #toEntity(ContentType)} wraps the buffer itself, so the request must be
+ * executed on the same thread before the buffer is acquired again.
+ */
+public class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+    private static final int INITIAL_SIZE = 1024;
+    // Buffers that grew beyond this for a large batch are not kept around
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ReusableByteArrayOutputStream> BUFFERS = new ThreadLocal<ReusableByteArrayOutputStream>() {
+        @Override
+        protected ReusableByteArrayOutputStream initialValue() {
+            return new ReusableByteArrayOutputStream();
+        }
+    };
+
+    private ReusableByteArrayOutputStream() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * Returns the calling thread's buffer, emptied.
+     */
+    public static ReusableByteArrayOutputStream acquire() {
+        ReusableByteArrayOutputStream buffer = BUFFERS.get();
+        if (buffer.buf.length > MAX_RETAINED_SIZE) {
+            buffer = new ReusableByteArrayOutputStream();
+            BUFFERS.set(buffer);
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    public ByteArrayEntity toEntity(ContentType contentType) {
+        return new ByteArrayEntity(buf, 0, count, contentType);
+    }
+}
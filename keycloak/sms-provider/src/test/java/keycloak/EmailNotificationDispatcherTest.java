@@ -0,0 +1,173 @@
+package keycloak;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sunbird.keycloak.utils.EmailNotificationDispatcher;
+import org.sunbird.keycloak.utils.HttpClient;
+
+public class EmailNotificationDispatcherTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private HttpServer server;
+    private final AtomicInteger singleRequests = new AtomicInteger();
+    private final AtomicInteger bulkRequests = new AtomicInteger();
+    private final AtomicInteger bulkNotifications = new AtomicInteger();
+    private EmailNotificationDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/email", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                singleRequests.incrementAndGet();
+                mapper.readTree(exchange.getRequestBody());
+                respond(exchange, "{}");
+            }
+        });
+        server.createContext("/bulk", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                bulkRequests.incrementAndGet();
+                assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                JsonNode notifications;
+                try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                    notifications = mapper.readTree(in).path("request").path("notifications");
+                }
+                bulkNotifications.addAndGet(notifications.size());
+                // Addresses starting with "bounce" are rejected
+                StringBuilder response = new StringBuilder("{\"result\":{\"response\":[");
+                for (int i = 0; i < notifications.size(); i++) {
+                    String email = notifications.get(i).path("recipientEmails").get(0).asText();
+                    response.append(i > 0 ? "," : "").append(email.startsWith("bounce") ? "\"FAILED\"" : "\"SUCCESS\"");
+                }
+                respond(exchange, response.append("]}}").toString());
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+        server.stop(0);
+        HttpClient.close();
+    }
+
+    @Test
+    public void testCoalescesNotificationsIntoBulkRequests() {
+        dispatcher = new EmailNotificationDispatcher(url("/email"), url("/bulk"), "key", 10, 200, 100);
+        dispatcher.start();
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(dispatcher.send(notification((i % 5 == 0 ? "bounce" : "user") + i + "@example.com")));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i % 5 != 0, results.get(i).join());
+        }
+        assertEquals(20, bulkNotifications.get() + singleRequests.get());
+        assertTrue(bulkRequests.get() <= 4);
+    }
+
+    @Test
+    public void testPostsSingleNotificationWithoutBulkUri() {
+        dispatcher = new EmailNotificationDispatcher(url("/email"), null, "key", 10, 200, 100);
+        dispatcher.start();
+
+        assertTrue(dispatcher.send(notification("user@example.com")).join());
+        assertTrue(dispatcher.send(notification("other@example.com")).join());
+        assertEquals(2, singleRequests.get());
+        assertEquals(0, bulkRequests.get());
+    }
+
+    @Test
+    public void testFailsWhenLmsIsDown() {
+        dispatcher = new EmailNotificationDispatcher(url("/email"), url("/bulk"), "key", 10, 50, 100);
+        dispatcher.start();
+        server.stop(0);
+
+        CompletableFuture<Boolean> first = dispatcher.send(notification("user@example.com"));
+        CompletableFuture<Boolean> second = dispatcher.send(notification("other@example.com"));
+        assertFalse(first.join());
+        assertFalse(second.join());
+    }
+
+    @Test
+    public void testCompletesNotificationsSentWhileClosing() throws Exception {
+        dispatcher = new EmailNotificationDispatcher(url("/email"), url("/bulk"), "key", 10, 50, 1000);
+        dispatcher.start();
+
+        final List<CompletableFuture<Boolean>> results = Collections.synchronizedList(
+            new ArrayList<CompletableFuture<Boolean>>());
+        final CountDownLatch started = new CountDownLatch(4);
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int sender = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    for (int j = 0; j < 50; j++) {
+                        results.add(dispatcher.send(notification("user" + sender + "-" + j + "@example.com")));
+                    }
+                }
+            });
+            thread.start();
+            senders.add(thread);
+        }
+        started.await();
+        dispatcher.close();
+        for (Thread thread : senders) {
+            thread.join();
+        }
+
+        assertEquals(200, results.size());
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static Map<String, Object> notification(String email) {
+        return Collections.<String, Object>singletonMap("recipientEmails", Collections.singletonList(email));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] response = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package keycloak;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+import org.sunbird.keycloak.resetcredential.sms.HmacOtpGenerator;
+
+public class HmacOtpGeneratorTest {
+
+    private static final SecretKey KEY =
+            new SecretKeySpec("realm-hmac-key-for-tests".getBytes(StandardCharsets.UTF_8), HmacOtpGenerator.ALGORITHM);
+
+    @Test
+    public void testCodeIsDeterministicAndPadded() {
+        for (int digits = 1; digits <= HmacOtpGenerator.MAX_DIGITS; digits++) {
+            String code = HmacOtpGenerator.generate(KEY, "user", "session", 1000, digits);
+            assertEquals(digits, code.length());
+            assertTrue(code.matches("[0-9]+"));
+            assertEquals(code, HmacOtpGenerator.generate(KEY, "user", "session", 1000, digits));
+        }
+    }
+
+    @Test
+    public void testCodeDependsOnEveryInput() {
+        String code = HmacOtpGenerator.generate(KEY, "user", "session", 1000, 8);
+        assertNotEquals(code, HmacOtpGenerator.generate(KEY, "other", "session", 1000, 8));
+        assertNotEquals(code, HmacOtpGenerator.generate(KEY, "user", "other", 1000, 8));
+        assertNotEquals(code, HmacOtpGenerator.generate(KEY, "user", "session", 1001, 8));
+        SecretKey otherKey = new SecretKeySpec("other-key".getBytes(StandardCharsets.UTF_8), HmacOtpGenerator.ALGORITHM);
+        assertNotEquals(code, HmacOtpGenerator.generate(otherKey, "user", "session", 1000, 8));
+    }
+
+    @Test
+    public void testVerifyAcceptsStepsWithinWindow() {
+        String code = HmacOtpGenerator.generate(KEY, "user", "session", 1000, 6);
+        assertTrue(HmacOtpGenerator.verify(KEY, "user", "session", code, 1000, 0, 6));
+        assertTrue(HmacOtpGenerator.verify(KEY, "user", "session", code, 1010, 10, 6));
+        assertFalse(HmacOtpGenerator.verify(KEY, "user", "session", code, 1011, 10, 6));
+        // Codes of future steps are not accepted
+        assertFalse(HmacOtpGenerator.verify(KEY, "user", "session", code, 999, 10, 6));
+        assertFalse(HmacOtpGenerator.verify(KEY, "user", "other", code, 1000, 10, 6));
+        assertFalse(HmacOtpGenerator.verify(KEY, "user", "session", null, 1000, 10, 6));
+        assertFalse(HmacOtpGenerator.verify(KEY, "user", "session", code + "0", 1000, 10, 6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTooManyDigits() {
+        HmacOtpGenerator.generate(KEY, "user", "session", 1000, HmacOtpGenerator.MAX_DIGITS + 1);
+    }
+}
@@ -0,0 +1,82 @@
+package keycloak;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sunbird.keycloak.utils.HttpClient;
+import org.sunbird.keycloak.utils.HttpResult;
+
+public class HttpClientTest {
+
+    private HttpServer server;
+    private volatile String received;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/notify", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                received = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                byte[] response = "{\"result\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+                int status = exchange.getRequestHeaders().getFirst("Authorization") != null ? 200 : 401;
+                exchange.sendResponseHeaders(status, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        HttpClient.close();
+    }
+
+    @Test
+    public void testPostReadsResponse() {
+        Map<String, Object> request = Collections.<String, Object>singletonMap("request", "otp");
+        for (int i = 0; i < 3; i++) {
+            HttpResult result = HttpClient.post(request, url(), "key");
+            assertTrue(result.isSuccess());
+            assertEquals(200, result.getStatusCode());
+            assertEquals("{\"result\":\"ok\"}", result.getBody());
+            assertEquals("{\"request\":\"otp\"}", received);
+        }
+
+        HttpResult unauthorized = HttpClient.post(request, url(), null);
+        assertFalse(unauthorized.isSuccess());
+        assertEquals(401, unauthorized.getStatusCode());
+    }
+
+    @Test
+    public void testPostWithoutResponseReturnsFailure() {
+        String url = url();
+        server.stop(0);
+
+        HttpResult result = HttpClient.post(Collections.<String, Object>emptyMap(), url, "key");
+        assertFalse(result.isSuccess());
+        assertEquals(HttpResult.NO_RESPONSE, result.getStatusCode());
+        assertTrue(result.getError() != null);
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/notify";
+    }
+}
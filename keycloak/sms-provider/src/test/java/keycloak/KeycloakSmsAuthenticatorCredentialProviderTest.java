@@ -1,21 +1,108 @@
 package keycloak;
 
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.keycloak.credential.CredentialModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserCredentialManager;
+import org.keycloak.models.UserCredentialModel;
+import org.keycloak.models.UserModel;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorConstants;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorCredentialProvider;
+import org.sunbird.keycloak.resetcredential.sms.StoredOtp;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class KeycloakSmsAuthenticatorCredentialProviderTest {
 
+    private KeycloakSession session;
+    private UserCredentialManager credentialManager;
+    private RealmModel realm;
+    private UserModel user;
+    private KeycloakSmsAuthenticatorCredentialProvider provider;
+
     @BeforeClass
     public static void setUp() {
     }
 
+    @Before
+    public void createProvider() {
+        session = mock(KeycloakSession.class);
+        credentialManager = mock(UserCredentialManager.class);
+        when(session.userCredentialManager()).thenReturn(credentialManager);
+        realm = mock(RealmModel.class);
+        user = mock(UserModel.class);
+        provider = new KeycloakSmsAuthenticatorCredentialProvider(session);
+    }
+
     @Test
     public void test1UpdateCredential() {
+        CredentialModel stored = storedCode(new StoredOtp("1234", System.currentTimeMillis() + 60000).encode());
+
+        UserCredentialModel input = new UserCredentialModel();
+        input.setType(KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
+        input.setValue(new StoredOtp("5678", System.currentTimeMillis() + 60000).encode());
+        assertTrue(provider.updateCredential(realm, user, input));
 
+        verify(credentialManager).updateCredential(realm, user, stored);
+        // The cached user stays valid on every node
+        verify(session, never()).userCache();
     }
 
+    @Test
+    public void test2DisableCredentialTypeRemovesStoredCodes() {
+        CredentialModel first = storedCode("1234:0:0");
+        first.setId("first");
+        CredentialModel second = new CredentialModel();
+        second.setId("second");
+        when(credentialManager.getStoredCredentialsByType(realm, user, KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE))
+                .thenReturn(Arrays.asList(first, second));
+
+        provider.disableCredentialType(realm, user, KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
+
+        verify(credentialManager).removeStoredCredential(realm, user, "first");
+        verify(credentialManager).removeStoredCredential(realm, user, "second");
+        verify(credentialManager, never()).disableCredentialType(any(RealmModel.class), any(UserModel.class), any(String.class));
+        verify(session, never()).userCache();
+    }
+
+    @Test
+    public void test3IsValidHonoursExpiry() {
+        UserCredentialModel input = new UserCredentialModel();
+        input.setType(KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
+        input.setValue("1234");
+
+        storedCode(new StoredOtp("1234", System.currentTimeMillis() + 60000).encode());
+        assertTrue(provider.isValid(realm, user, input));
+
+        storedCode(new StoredOtp("1234", System.currentTimeMillis() - 1).encode());
+        assertFalse(provider.isValid(realm, user, input));
+
+        when(credentialManager.getStoredCredentialsByType(realm, user, KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE))
+                .thenReturn(Collections.<CredentialModel>emptyList());
+        assertFalse(provider.isValid(realm, user, input));
+    }
+
+    private CredentialModel storedCode(String value) {
+        CredentialModel credential = new CredentialModel();
+        credential.setType(KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
+        credential.setValue(value);
+        when(credentialManager.getStoredCredentialsByType(realm, user, KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE))
+                .thenReturn(Collections.singletonList(credential));
+        return credential;
+    }
 }
@@ -0,0 +1,108 @@
+package keycloak;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.sunbird.keycloak.resetcredential.sms.OtpDispatcher;
+
+public class OtpDispatcherTest {
+
+    private final OtpDispatcher dispatcher = new OtpDispatcher(4, 16);
+
+    @Test
+    public void testReturnsOnFirstSuccess() {
+        CountDownLatch release = new CountDownLatch(1);
+        long start = System.nanoTime();
+        assertTrue(dispatcher.dispatch(Arrays.asList(blocked(release), result(true)), 10000));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        release.countDown();
+    }
+
+    @Test
+    public void testWaitsForSuccessAfterFailure() {
+        assertTrue(dispatcher.dispatch(Arrays.asList(result(false), delayed(true, 100)), 10000));
+        assertTrue(dispatcher.dispatch(Arrays.asList(failing(), result(true)), 10000));
+    }
+
+    @Test
+    public void testFailsWhenNoChannelSucceeds() {
+        assertFalse(dispatcher.dispatch(Arrays.asList(result(false), failing()), 10000));
+        assertFalse(dispatcher.dispatch(Collections.singletonList(failing()), 10000));
+        assertFalse(dispatcher.dispatch(Collections.<Callable<Boolean>>emptyList(), 10000));
+    }
+
+    @Test
+    public void testFailsAtDeadline() {
+        CountDownLatch release = new CountDownLatch(1);
+        assertFalse(dispatcher.dispatch(Arrays.asList(blocked(release), result(false)), 200));
+        release.countDown();
+    }
+
+    @Test
+    public void testSingleChannelIsBoundByDeadline() {
+        CountDownLatch release = new CountDownLatch(1);
+        long start = System.nanoTime();
+        assertFalse(dispatcher.dispatch(Collections.singletonList(blocked(release)), 200));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        release.countDown();
+        assertTrue(dispatcher.dispatch(Collections.singletonList(result(true)), 10000));
+    }
+
+    @Test
+    public void testSaturatedPoolFailsWithoutRunningOnCaller() {
+        OtpDispatcher saturated = new OtpDispatcher(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertFalse(saturated.dispatch(Arrays.asList(blocked(release), blocked(release)), 50));
+            long start = System.nanoTime();
+            assertFalse(saturated.dispatch(Collections.singletonList(blocked(release)), 10000));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static Callable<Boolean> result(final boolean sent) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return sent;
+            }
+        };
+    }
+
+    private static Callable<Boolean> delayed(final boolean sent, final long delayMillis) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws InterruptedException {
+                Thread.sleep(delayMillis);
+                return sent;
+            }
+        };
+    }
+
+    private static Callable<Boolean> blocked(final CountDownLatch release) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws InterruptedException {
+                release.await();
+                return true;
+            }
+        };
+    }
+
+    private static Callable<Boolean> failing() {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                throw new IllegalStateException("gateway down");
+            }
+        };
+    }
+}
@@ -0,0 +1,103 @@
+package keycloak;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.sunbird.keycloak.resetcredential.sms.OtpIssueCoalescer;
+
+public class OtpIssueCoalescerTest {
+
+    @Test
+    public void testReusesDeliveredOtpWithinWindow() {
+        OtpIssueCoalescer coalescer = new OtpIssueCoalescer();
+        OtpIssueCoalescer.Issue leader = coalescer.begin("realm/user", 30000);
+        assertTrue(leader.isLeader());
+        leader.issued(System.currentTimeMillis() + 60000);
+        leader.dispatched(true);
+
+        OtpIssueCoalescer.Issue reused = coalescer.begin("realm/user", 30000);
+        assertFalse(reused.isLeader());
+        assertTrue(reused.awaitDispatch(1000));
+        assertTrue(coalescer.begin("realm/other", 30000).isLeader());
+
+        coalescer.invalidate("realm/user");
+        assertTrue(coalescer.begin("realm/user", 30000).isLeader());
+    }
+
+    @Test
+    public void testIssuesNewOtpAfterFailureExpiryOrWindow() throws Exception {
+        OtpIssueCoalescer coalescer = new OtpIssueCoalescer();
+        OtpIssueCoalescer.Issue failed = coalescer.begin("failed", 30000);
+        failed.issued(System.currentTimeMillis() + 60000);
+        failed.dispatched(false);
+        assertTrue(coalescer.begin("failed", 30000).isLeader());
+
+        OtpIssueCoalescer.Issue expired = coalescer.begin("expired", 30000);
+        expired.issued(System.currentTimeMillis() - 1);
+        expired.dispatched(true);
+        assertTrue(coalescer.begin("expired", 30000).isLeader());
+
+        OtpIssueCoalescer.Issue old = coalescer.begin("old", 20);
+        old.issued(System.currentTimeMillis() + 60000);
+        old.dispatched(true);
+        Thread.sleep(30);
+        assertTrue(coalescer.begin("old", 20).isLeader());
+    }
+
+    @Test
+    public void testConcurrentRequestsShareInFlightDispatch() throws Exception {
+        final OtpIssueCoalescer coalescer = new OtpIssueCoalescer();
+        OtpIssueCoalescer.Issue leader = coalescer.begin("realm/user", 30000);
+        leader.issued(System.currentTimeMillis() + 60000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> followers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                followers.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        OtpIssueCoalescer.Issue issue = coalescer.begin("realm/user", 30000);
+                        return !issue.isLeader() && issue.awaitDispatch(10000);
+                    }
+                }));
+            }
+            Thread.sleep(50);
+            for (Future<Boolean> follower : followers) {
+                assertFalse(follower.isDone());
+            }
+
+            leader.dispatched(true);
+            for (Future<Boolean> follower : followers) {
+                assertEquals(Boolean.TRUE, follower.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAwaitDispatchGivesUpAfterTimeout() {
+        OtpIssueCoalescer coalescer = new OtpIssueCoalescer();
+        OtpIssueCoalescer.Issue leader = coalescer.begin("realm/user", 30000);
+        leader.issued(System.currentTimeMillis() + 60000);
+
+        OtpIssueCoalescer.Issue follower = coalescer.begin("realm/user", 30000);
+        assertFalse(follower.isLeader());
+        long start = System.nanoTime();
+        assertFalse(follower.awaitDispatch(50));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        leader.dispatched(true);
+        assertTrue(follower.awaitDispatch(50));
+    }
+}
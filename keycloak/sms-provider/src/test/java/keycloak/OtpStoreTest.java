@@ -0,0 +1,199 @@
+package keycloak;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.cluster.ClusterProvider;
+import org.keycloak.cluster.ExecutionResult;
+import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
+import org.keycloak.credential.CredentialInput;
+import org.keycloak.credential.CredentialModel;
+import org.keycloak.models.AuthenticatorConfigModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserCredentialManager;
+import org.keycloak.models.UserCredentialModel;
+import org.keycloak.models.UserModel;
+import org.mockito.ArgumentCaptor;
+import org.sunbird.keycloak.resetcredential.sms.CredentialOtpStore;
+import org.sunbird.keycloak.resetcredential.sms.InfinispanOtpStore;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorConstants;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorUtil;
+import org.sunbird.keycloak.resetcredential.sms.OtpStoreException;
+import org.sunbird.keycloak.resetcredential.sms.StoredOtp;
+
+public class OtpStoreTest {
+
+    private Cache<String, String> cache;
+    private AdvancedCache<String, String> advancedCache;
+    private RealmModel realm;
+    private UserModel user;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        cache = mock(Cache.class);
+        advancedCache = mock(AdvancedCache.class);
+        when(cache.getAdvancedCache()).thenReturn(advancedCache);
+        when(advancedCache.withFlags(Flag.IGNORE_RETURN_VALUES)).thenReturn(advancedCache);
+        realm = mock(RealmModel.class);
+        when(realm.getId()).thenReturn("realm");
+        user = mock(UserModel.class);
+        when(user.getId()).thenReturn("user");
+    }
+
+    @Test
+    public void testStoredOtpRoundTrip() {
+        StoredOtp otp = StoredOtp.decode(new StoredOtp("012345", 1500000000000L).encode());
+        assertEquals("012345", otp.getCode());
+        assertEquals(1500000000000L, otp.getExpiresAt());
+
+        assertNull(StoredOtp.decode(null));
+        assertNull(StoredOtp.decode("012345"));
+        assertNull(StoredOtp.decode(":1500000000000"));
+        assertNull(StoredOtp.decode("012345:soon"));
+    }
+
+    @Test
+    public void testStoredOtpPacksAttempts() {
+        StoredOtp otp = new StoredOtp("012345", 1500000000000L).withAttempt().withAttempt();
+        assertEquals("012345:1500000000000:2", otp.encode());
+
+        StoredOtp decoded = StoredOtp.decode(otp.encode());
+        assertEquals("012345", decoded.getCode());
+        assertEquals(1500000000000L, decoded.getExpiresAt());
+        assertEquals(2, decoded.getAttempts());
+        assertEquals(0, StoredOtp.decode("012345:1500000000000").getAttempts());
+        assertNull(StoredOtp.decode("012345:1500000000000:many"));
+    }
+
+    @Test
+    public void testCredentialStoreWritesOneCredential() {
+        KeycloakSession session = mock(KeycloakSession.class);
+        UserCredentialManager credentialManager = mock(UserCredentialManager.class);
+        when(session.userCredentialManager()).thenReturn(credentialManager);
+        CredentialOtpStore store = new CredentialOtpStore(session);
+
+        store.put(realm, user, new StoredOtp("1234", 1500000000000L));
+        ArgumentCaptor<CredentialInput> input = ArgumentCaptor.forClass(CredentialInput.class);
+        verify(credentialManager, times(1)).updateCredential(eq(realm), eq(user), input.capture());
+        assertEquals(KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE, input.getValue().getType());
+        assertEquals("1234:1500000000000:0", ((UserCredentialModel) input.getValue()).getValue());
+
+        CredentialModel credential = new CredentialModel();
+        credential.setValue("1234:1500000000000:3");
+        when(credentialManager.getStoredCredentialsByType(realm, user, KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE))
+                .thenReturn(Collections.singletonList(credential));
+        assertEquals(3, store.get(realm, user).getAttempts());
+
+        when(credentialManager.getStoredCredentialsByType(realm, user, KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE))
+                .thenReturn(Collections.<CredentialModel>emptyList());
+        assertNull(store.get(realm, user));
+    }
+
+    @Test
+    public void testPutExpiresWithOtp() {
+        InfinispanOtpStore store = new InfinispanOtpStore(cache);
+        long expiresAt = System.currentTimeMillis() + 600000;
+        store.put(realm, user, new StoredOtp("1234", expiresAt));
+
+        ArgumentCaptor<Long> lifespan = ArgumentCaptor.forClass(Long.class);
+        verify(advancedCache).put(eq("realm/user"), eq("1234:" + expiresAt + ":0"), lifespan.capture(), eq(TimeUnit.MILLISECONDS));
+        assertEquals(600000, lifespan.getValue(), 1000);
+
+        store.put(realm, user, new StoredOtp("5678", System.currentTimeMillis() - 1));
+        verify(advancedCache, never()).put(anyString(), startsWith("5678:"), anyLong(), eq(TimeUnit.MILLISECONDS));
+        verify(advancedCache).remove("realm/user");
+    }
+
+    @Test
+    public void testGetIgnoresExpiredOtp() {
+        InfinispanOtpStore store = new InfinispanOtpStore(cache);
+        long expiresAt = System.currentTimeMillis() + 600000;
+        when(cache.get("realm/user")).thenReturn("1234:" + expiresAt);
+        assertEquals("1234", store.get(realm, user).getCode());
+
+        when(cache.get("realm/user")).thenReturn("1234:" + (System.currentTimeMillis() - 1));
+        assertNull(store.get(realm, user));
+
+        when(cache.get("realm/user")).thenReturn(null);
+        assertNull(store.get(realm, user));
+    }
+
+    @Test
+    public void testAddAttemptRetriesConcurrentWrites() {
+        InfinispanOtpStore store = new InfinispanOtpStore(cache);
+        long expiresAt = System.currentTimeMillis() + 600000;
+        // Another node counted an attempt between the read and the write
+        when(cache.get("realm/user")).thenReturn("1234:" + expiresAt + ":1", "1234:" + expiresAt + ":2");
+        when(cache.replace(eq("realm/user"), eq("1234:" + expiresAt + ":1"), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS)))
+                .thenReturn(false);
+        when(cache.replace(eq("realm/user"), eq("1234:" + expiresAt + ":2"), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS)))
+                .thenReturn(true);
+
+        assertEquals(3, store.addAttempt(realm, user).getAttempts());
+        verify(cache).replace(eq("realm/user"), eq("1234:" + expiresAt + ":2"), eq("1234:" + expiresAt + ":3"), anyLong(),
+                eq(TimeUnit.MILLISECONDS));
+
+        when(cache.get("realm/user")).thenReturn("1234:" + (System.currentTimeMillis() - 1));
+        assertNull(store.addAttempt(realm, user));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCredentialStoreCountsAttemptUnderClusterLock() {
+        KeycloakSession session = mock(KeycloakSession.class);
+        ClusterProvider cluster = mock(ClusterProvider.class);
+        when(session.getProvider(ClusterProvider.class)).thenReturn(cluster);
+        when(cluster.executeIfNotExecuted(eq("sms-auth.code.attempt::realm/user"), anyInt(), any(Callable.class)))
+                .thenReturn(ExecutionResult.notExecuted(), ExecutionResult.executed(new StoredOtp("1234", 1500000000000L, 2)));
+
+        CredentialOtpStore store = new CredentialOtpStore(session);
+        try {
+            store.addAttempt(realm, user);
+            fail("A busy lock must not look like a missing code");
+        } catch (OtpStoreException e) {
+            // expected, the request thread does not wait for the lock
+        }
+        assertEquals(2, store.addAttempt(realm, user).getAttempts());
+        verify(cluster, times(2)).executeIfNotExecuted(eq("sms-auth.code.attempt::realm/user"), anyInt(), any(Callable.class));
+    }
+
+    @Test
+    public void testInfinispanStoreIsTheDefault() {
+        KeycloakSession session = mock(KeycloakSession.class);
+        InfinispanConnectionProvider infinispan = mock(InfinispanConnectionProvider.class);
+        when(session.getProvider(InfinispanConnectionProvider.class)).thenReturn(infinispan);
+        when(infinispan.<String, String>getCache(InfinispanOtpStore.CACHE_NAME)).thenReturn(cache);
+        AuthenticatorConfigModel config = new AuthenticatorConfigModel();
+        config.setConfig(new HashMap<String, String>());
+
+        assertTrue(KeycloakSmsAuthenticatorUtil.getOtpStore(session, config) instanceof InfinispanOtpStore);
+
+        config.getConfig().put(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_STORE,
+                KeycloakSmsAuthenticatorConstants.OTP_STORE_CREDENTIAL);
+        assertTrue(KeycloakSmsAuthenticatorUtil.getOtpStore(session, config) instanceof CredentialOtpStore);
+    }
+}
@@ -0,0 +1,66 @@
+package keycloak;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorUtil;
+import org.sunbird.utils.PhoneNumber;
+import org.sunbird.utils.PhoneNumberNormalizer;
+
+public class PhoneNumberNormalizerTest {
+
+    @Test
+    public void testNormalizesToE164() {
+        assertEquals("+919999999999", e164("9999999999", "+91"));
+        assertEquals("+919999999999", e164("09999999999", "+91"));
+        assertEquals("+919999999999", e164("919999999999", "91"));
+        assertEquals("+919999999999", e164("+91 99999-99999", "+91"));
+        assertEquals("+919999999999", e164("0091 (999) 999.9999", "+91"));
+        assertEquals("+14155550123", e164("+1 415 555 0123", "+91"));
+        assertEquals("+14155550123", e164("(415) 555-0123", "+1"));
+    }
+
+    @Test
+    public void testRejectsInvalidNumbers() {
+        assertNull(PhoneNumberNormalizer.normalize("user@example.com", "+91"));
+        assertNull(PhoneNumberNormalizer.normalize("99999", "+91"));
+        assertNull(PhoneNumberNormalizer.normalize("+0123456789", "+91"));
+        assertNull(PhoneNumberNormalizer.normalize("99+9999999999", "+91"));
+        assertNull(PhoneNumberNormalizer.normalize("+1234567890123456", "+91"));
+        assertNull(PhoneNumberNormalizer.normalize("", "+91"));
+        assertNull(PhoneNumberNormalizer.normalize(null, "+91"));
+    }
+
+    @Test
+    public void testCanonicalFormsAndMemoization() {
+        PhoneNumber phoneNumber = PhoneNumberNormalizer.normalize("9999999999", "+91");
+        assertEquals("919999999999", phoneNumber.getDigits());
+        assertEquals("9999999999", phoneNumber.getNationalNumber("+91"));
+        assertEquals("9999999999", phoneNumber.getNationalNumber("91"));
+        assertNull(phoneNumber.getNationalNumber("+1"));
+        assertEquals(phoneNumber, PhoneNumberNormalizer.normalize("+919999999999", "+91"));
+        assertSame(phoneNumber, PhoneNumberNormalizer.normalize("9999999999", "+91"));
+    }
+
+    @Test
+    public void testValidatesNumbers() {
+        assertTrue(PhoneNumberNormalizer.isValid("(999)999-9999", "+91"));
+        assertTrue(KeycloakSmsAuthenticatorUtil.validateTelephoneNumber("+919999999999", null));
+        assertFalse(KeycloakSmsAuthenticatorUtil.validateTelephoneNumber("999", null));
+        assertFalse(PhoneNumberNormalizer.isValid(null, "+91"));
+    }
+
+    @Test
+    public void testIsDigits() {
+        assertTrue(PhoneNumberNormalizer.isDigits("0123"));
+        assertFalse(PhoneNumberNormalizer.isDigits("01a3"));
+    }
+
+    private static String e164(String number, String defaultCountryCode) {
+        return PhoneNumberNormalizer.normalize(number, defaultCountryCode).getE164();
+    }
+}
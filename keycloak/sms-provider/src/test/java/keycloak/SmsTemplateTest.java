@@ -0,0 +1,46 @@
+package keycloak;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.junit.Test;
+import org.keycloak.models.AuthenticatorConfigModel;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorConstants;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorUtil;
+import org.sunbird.keycloak.resetcredential.sms.SmsTemplate;
+
+public class SmsTemplateTest {
+
+    @Test
+    public void testRendersPlaceholders() {
+        SmsTemplate template = SmsTemplate.compile("%sms-code% is your OTP for %phonenumber%. Code: %sms-code%");
+        assertEquals("1234 is your OTP for +919999999999. Code: 1234", template.render("1234", "+919999999999"));
+    }
+
+    @Test
+    public void testKeepsSpecialCharactersAndUnknownPlaceholders() {
+        SmsTemplate template = SmsTemplate.compile("100% sure: %sms-code% %unknown% 50%");
+        assertEquals("100% sure: $1\\2 %unknown% 50%", template.render("$1\\2", "+919999999999"));
+        assertEquals("no placeholders", SmsTemplate.compile("no placeholders").render("1", "2"));
+        assertEquals("", SmsTemplate.compile("").render("1", "2"));
+    }
+
+    @Test
+    public void testLocalizedTemplatesAndReload() {
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT, "Your OTP is %sms-code%");
+        configuration.put(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT + ".hi", "OTP %sms-code% hai");
+        AuthenticatorConfigModel config = new AuthenticatorConfigModel();
+        config.setId("sms-template-test");
+        config.setConfig(configuration);
+
+        assertEquals("Your OTP is 42", KeycloakSmsAuthenticatorUtil.createMessage("42", "1", config));
+        assertEquals("OTP 42 hai", KeycloakSmsAuthenticatorUtil.createMessage("42", "1", config, new Locale("hi", "IN")));
+        assertEquals("Your OTP is 42", KeycloakSmsAuthenticatorUtil.createMessage("42", "1", config, Locale.FRENCH));
+
+        configuration.put(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT, "OTP: %sms-code%");
+        assertEquals("OTP: 42", KeycloakSmsAuthenticatorUtil.createMessage("42", "1", config));
+    }
+}
@@ -0,0 +1,76 @@
+package keycloak;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.authentication.AuthenticationFlowContext;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.UserProvider;
+import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorConstants;
+import org.sunbird.keycloak.utils.SunbirdModelUtils;
+
+public class SunbirdModelUtilsTest {
+
+    private AuthenticationFlowContext context;
+    private RealmModel realm;
+    private UserProvider users;
+    private UserModel user;
+
+    @Before
+    public void setUp() {
+        context = mock(AuthenticationFlowContext.class);
+        KeycloakSession session = mock(KeycloakSession.class);
+        realm = mock(RealmModel.class);
+        users = mock(UserProvider.class);
+        user = mock(UserModel.class);
+        when(context.getSession()).thenReturn(session);
+        when(context.getRealm()).thenReturn(realm);
+        when(session.users()).thenReturn(users);
+        when(users.searchForUserByUserAttribute(KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, "9999999999", realm))
+                .thenReturn(Collections.singletonList(user));
+    }
+
+    @Test
+    public void testPhoneFormsAreSearchedOnceAsNationalNumber() {
+        for (String login : new String[]{"9999999999", "09999999999", "919999999999", "+919999999999"}) {
+            assertSame(login, user, SunbirdModelUtils.getUserByNameEmailOrPhone(context, login));
+        }
+        verify(users, times(4)).searchForUserByUserAttribute(anyString(), anyString(), any(RealmModel.class));
+    }
+
+    @Test
+    public void testPhoneStoredInAnotherFormIsSearchedAsEntered() {
+        UserModel international = mock(UserModel.class);
+        when(users.searchForUserByUserAttribute(KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, "+919999999998", realm))
+                .thenReturn(Collections.singletonList(international));
+
+        assertSame(international, SunbirdModelUtils.getUserByNameEmailOrPhone(context, "+919999999998"));
+        verify(users).searchForUserByUserAttribute(KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, "9999999998", realm);
+        verify(users, never()).getUserByUsername(anyString(), any(RealmModel.class));
+    }
+
+    @Test
+    public void testUnknownPhoneFallsBackToUsername() {
+        assertNull(SunbirdModelUtils.getUserByNameEmailOrPhone(context, "8888888888"));
+        verify(users, times(1)).searchForUserByUserAttribute(KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, "8888888888", realm);
+        verify(users).getUserByUsername("8888888888", realm);
+    }
+
+    @Test
+    public void testUsernameIsNotSearchedAsPhone() {
+        SunbirdModelUtils.getUserByNameEmailOrPhone(context, "some.user");
+        verify(users, never()).searchForUserByUserAttribute(anyString(), anyString(), any(RealmModel.class));
+    }
+}
@@ -0,0 +1,96 @@
+package keycloak.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.keycloak.models.KeycloakContext;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.representations.AccessToken.Access;
+import org.keycloak.representations.idm.ErrorRepresentation;
+import org.keycloak.services.managers.AppAuthManager;
+import org.keycloak.services.managers.AuthenticationManager.AuthResult;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.sunbird.keycloak.rest.SmsMetricsProvider;
+import org.sunbird.keycloak.utils.Constants;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({SmsMetricsProvider.class, KeycloakSession.class, KeycloakContext.class,
+    RealmModel.class, AppAuthManager.class, AccessToken.class, Access.class, AuthResult.class})
+@PowerMockIgnore({"javax.management.*", "javax.net.ssl.*", "javax.security.*"})
+public class SmsMetricsProviderTest {
+
+  private KeycloakSession session;
+  private RealmModel realm;
+  private AppAuthManager authManager;
+
+  @Before
+  public void setUp() throws Exception {
+    session = PowerMockito.mock(KeycloakSession.class);
+    KeycloakContext context = PowerMockito.mock(KeycloakContext.class);
+    realm = PowerMockito.mock(RealmModel.class);
+    authManager = PowerMockito.mock(AppAuthManager.class);
+    PowerMockito.when(session.getContext()).thenReturn(context);
+    PowerMockito.when(context.getRealm()).thenReturn(realm);
+    PowerMockito.when(realm.getName()).thenReturn("sunbird");
+    PowerMockito.whenNew(AppAuthManager.class).withAnyArguments().thenReturn(authManager);
+  }
+
+  @Test
+  public void testWithoutTokenIsUnauthorized() {
+    PowerMockito.when(authManager.authenticateBearerToken(session, realm)).thenReturn(null);
+    assertRejected(Status.UNAUTHORIZED, Constants.ERROR_NOT_AUTHORIZED);
+  }
+
+  @Test
+  public void testWithoutAdminRoleIsForbidden() {
+    authenticate(false);
+    assertRejected(Status.FORBIDDEN, Constants.ERROR_REALM_ADMIN_ROLE_ACCESS);
+  }
+
+  @Test
+  public void testWithoutRealmAccessIsForbidden() {
+    AuthResult authResult = PowerMockito.mock(AuthResult.class);
+    AccessToken token = PowerMockito.mock(AccessToken.class);
+    PowerMockito.when(authManager.authenticateBearerToken(session, realm)).thenReturn(authResult);
+    PowerMockito.when(authResult.getToken()).thenReturn(token);
+    assertRejected(Status.FORBIDDEN, Constants.ERROR_REALM_ADMIN_ROLE_ACCESS);
+  }
+
+  @Test
+  public void testRealmAdminGetsMetrics() {
+    authenticate(true);
+    Response response = new SmsMetricsProvider(session).getMetrics();
+    assertEquals(Status.OK.getStatusCode(), response.getStatus());
+  }
+
+  private void authenticate(boolean admin) {
+    AuthResult authResult = PowerMockito.mock(AuthResult.class);
+    AccessToken token = PowerMockito.mock(AccessToken.class);
+    Access access = PowerMockito.mock(Access.class);
+    PowerMockito.when(authManager.authenticateBearerToken(session, realm)).thenReturn(authResult);
+    PowerMockito.when(authResult.getToken()).thenReturn(token);
+    PowerMockito.when(token.getRealmAccess()).thenReturn(access);
+    PowerMockito.when(access.isUserInRole(Constants.ADMIN)).thenReturn(admin);
+  }
+
+  private void assertRejected(Status status, String message) {
+    try {
+      new SmsMetricsProvider(session).getMetrics();
+      fail("Expected " + status);
+    } catch (WebApplicationException e) {
+      assertEquals(status.getStatusCode(), e.getResponse().getStatus());
+      assertEquals(message, ((ErrorRepresentation) e.getResponse().getEntity()).getErrorMessage());
+    }
+  }
+}
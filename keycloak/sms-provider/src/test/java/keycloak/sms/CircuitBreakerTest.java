@@ -0,0 +1,111 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.circuitbreaker.CircuitBreaker;
+import org.sunbird.sms.circuitbreaker.CircuitBreakerSmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+
+public class CircuitBreakerTest {
+
+  @Test
+  public void testOpensOnFailureRateAndClosesAfterProbes() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker("test", 0.5, 4, 10000, 50, 2);
+
+    for (int i = 0; i < 4; i++) {
+      assertTrue(breaker.tryAcquire());
+      breaker.onFailure();
+    }
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+
+    Thread.sleep(60);
+    assertTrue(breaker.tryAcquire());
+    assertTrue(breaker.tryAcquire());
+    assertFalse(breaker.tryAcquire());
+    breaker.onSuccess();
+    breaker.onSuccess();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testFailedProbeReopens() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker("test", 0.5, 2, 10000, 50, 1);
+    breaker.onFailure();
+    breaker.onFailure();
+    Thread.sleep(60);
+
+    assertTrue(breaker.tryAcquire());
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  @Test
+  public void testStaysClosedBelowMinimumCalls() {
+    CircuitBreaker breaker = new CircuitBreaker("test", 0.5, 10, 10000, 50, 1);
+    for (int i = 0; i < 9; i++) {
+      breaker.onFailure();
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testInvalidRequestDoesNotCloseHalfOpenBreaker() throws Exception {
+    StubSmsProvider gateway = new StubSmsProvider("id", false);
+    CircuitBreakerSmsProvider provider = createProvider(gateway);
+    provider.send("919999999999", "otp");
+    provider.send("919999999999", "otp");
+    assertEquals(CircuitBreaker.State.OPEN, provider.getState());
+    Thread.sleep(60);
+
+    gateway.failureClass = SmsDeliveryResult.ErrorClass.INVALID_REQUEST;
+    assertFalse(provider.send("1", "otp"));
+    assertEquals(CircuitBreaker.State.HALF_OPEN, provider.getState());
+
+    // The permit was released, the next send is the probe
+    gateway.failureClass = SmsDeliveryResult.ErrorClass.HTTP_ERROR;
+    assertFalse(provider.send("919999999999", "otp"));
+    assertEquals(CircuitBreaker.State.OPEN, provider.getState());
+  }
+
+  @Test
+  public void testLocalRejectionsDoNotOpenBreaker() throws Exception {
+    StubSmsProvider gateway = new StubSmsProvider("id", false);
+    gateway.failureClass = SmsDeliveryResult.ErrorClass.REJECTED;
+    CircuitBreakerSmsProvider provider = createProvider(gateway);
+    for (int i = 0; i < 5; i++) {
+      assertFalse(provider.send("919999999999", "otp"));
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, provider.getState());
+    assertEquals(0, provider.getCircuitBreaker().getFailureRate(), 0);
+
+    gateway.failureClass = SmsDeliveryResult.ErrorClass.HTTP_ERROR;
+    provider.send("919999999999", "otp");
+    provider.send("919999999999", "otp");
+    Thread.sleep(60);
+    gateway.failureClass = SmsDeliveryResult.ErrorClass.REJECTED;
+    assertFalse(provider.send("919999999999", "otp"));
+    assertEquals(CircuitBreaker.State.HALF_OPEN, provider.getState());
+
+    gateway.succeed = true;
+    assertTrue(provider.send("919999999999", "otp"));
+    assertEquals(CircuitBreaker.State.CLOSED, provider.getState());
+  }
+
+  // Opens after 2 failed calls, probes after 50 ms and closes after 1 successful probe
+  private static CircuitBreakerSmsProvider createProvider(StubSmsProvider gateway) {
+    Map<String, String> config = new HashMap<>();
+    config.put(SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_MINIMUM_CALLS, "2");
+    config.put(SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_OPEN_DURATION, "50");
+    config.put(SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_HALF_OPEN_PROBES, "1");
+    CircuitBreakerSmsProvider provider = new CircuitBreakerSmsProvider("test", gateway);
+    provider.configure(config);
+    return provider;
+  }
+}
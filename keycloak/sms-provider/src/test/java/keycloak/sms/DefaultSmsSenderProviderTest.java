@@ -0,0 +1,110 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.RealmModel;
+import org.keycloak.provider.ProviderEventListener;
+import org.mockito.ArgumentCaptor;
+import org.sunbird.keycloak.sms.DefaultSmsSenderProvider;
+import org.sunbird.keycloak.sms.DefaultSmsSenderProviderFactory;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.queue.SmsJournal;
+
+public class DefaultSmsSenderProviderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRealmOverridesAllowedKeys() {
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put("sms-provider." + SmsConfigurationConstants.CONF_SMS_SENDER, "REALM");
+    attributes.put("sms-provider." + SmsConfigurationConstants.CONF_SMS_PROVIDERS, "amazonsns");
+    attributes.put("other.attribute", "value");
+
+    Map<String, String> realmConfigurations =
+        DefaultSmsSenderProvider.getRealmConfigurations(realm(attributes), configuration());
+
+    assertEquals("REALM", realmConfigurations.get(SmsConfigurationConstants.CONF_SMS_SENDER));
+    assertEquals("amazonsns", realmConfigurations.get(SmsConfigurationConstants.CONF_SMS_PROVIDERS));
+    assertEquals("key", realmConfigurations.get(SmsConfigurationConstants.CONF_AUTH_KEY));
+  }
+
+  @Test
+  public void testRealmCannotOverrideOtherKeys() {
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put("sms-provider." + SmsConfigurationConstants.CONF_SMS_QUEUE_DIRECTORY, "/etc");
+    attributes.put("sms-provider." + SmsConfigurationConstants.CONF_SMS_BASE_URL, "http://attacker.example/");
+    attributes.put("sms-provider." + SmsConfigurationConstants.CONF_SMS_SNS_ENDPOINT, "http://attacker.example/");
+    attributes.put("sms-provider." + SmsConfigurationConstants.CONF_AUTH_KEY, "other");
+
+    Map<String, String> configurations = configuration();
+    assertSame(configurations, DefaultSmsSenderProvider.getRealmConfigurations(realm(attributes), configurations));
+  }
+
+  @Test
+  public void testRemovedRealmReleasesItsQueue() throws Exception {
+    File directory = folder.newFolder();
+    File file = folder.newFile("Msg91Creds.json");
+    Files.write(file.toPath(), ("{\"" + SmsConfigurationConstants.CONF_SMS_PROVIDERS + "\": \"msg91\", \""
+        + SmsConfigurationConstants.CONF_AUTH_KEY + "\": \"key\", \""
+        + SmsConfigurationConstants.CONF_SMS_QUEUE_ENABLED + "\": \"true\", \""
+        + SmsConfigurationConstants.CONF_SMS_QUEUE_DIRECTORY + "\": \"" + directory.getPath() + "\"}")
+        .getBytes(StandardCharsets.UTF_8));
+    Config.Scope config = mock(Config.Scope.class);
+    when(config.get(eq("configFile"), anyString())).thenReturn(file.getPath());
+    KeycloakSessionFactory sessionFactory = mock(KeycloakSessionFactory.class);
+
+    DefaultSmsSenderProviderFactory factory = new DefaultSmsSenderProviderFactory();
+    factory.init(config);
+    factory.postInit(sessionFactory);
+    try {
+      ArgumentCaptor<ProviderEventListener> listener = ArgumentCaptor.forClass(ProviderEventListener.class);
+      verify(sessionFactory).register(listener.capture());
+
+      RealmModel realm = realm(new HashMap<String, String>());
+      when(realm.getId()).thenReturn("removed-realm");
+      assertNotNull(factory.create(null).getSmsProvider(realm));
+
+      RealmModel.RealmRemovedEvent event = mock(RealmModel.RealmRemovedEvent.class);
+      when(event.getRealm()).thenReturn(realm);
+      listener.getValue().onEvent(event);
+      // The journal is no longer locked by the removed realm's queue
+      new SmsJournal(new File(directory, "removed-realm")).close();
+    } finally {
+      factory.close();
+    }
+  }
+
+  private static RealmModel realm(Map<String, String> attributes) {
+    RealmModel realm = mock(RealmModel.class);
+    when(realm.getName()).thenReturn("realm");
+    when(realm.getAttributes()).thenReturn(attributes);
+    return realm;
+  }
+
+  private static Map<String, String> configuration() {
+    Map<String, String> configuration = new HashMap<>();
+    configuration.put(SmsConfigurationConstants.CONF_AUTH_KEY, "key");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_SENDER, "SENDER");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_QUEUE_DIRECTORY, "sms-provider/queue");
+    return configuration;
+  }
+}
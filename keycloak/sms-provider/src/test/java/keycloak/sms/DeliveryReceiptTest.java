@@ -0,0 +1,122 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.sunbird.sms.dlr.DeliveryReceipt;
+import org.sunbird.sms.dlr.DeliveryReceiptParser;
+import org.sunbird.sms.dlr.DeliveryReceiptProcessor;
+import org.sunbird.sms.dlr.DeliveryStats;
+import org.sunbird.sms.dlr.DeliveryTracker;
+import org.sunbird.sms.dlr.DeliveryTrackingSmsProvider;
+import org.sunbird.sms.metrics.SmsMetrics;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsMessage;
+
+public class DeliveryReceiptTest {
+
+  private static final String MSG91_REPORT = "[{\"senderId\":\"SUNBRD\",\"requestId\":\"3763646c3058373530393138\","
+      + "\"report\":[{\"date\":\"2018-01-01 10:00:00\",\"number\":\"919999999999\",\"status\":\"1\",\"desc\":\"DELIVERED\"},"
+      + "{\"date\":\"2018-01-01 10:00:00\",\"number\":\"919999999998\",\"status\":\"16\",\"desc\":\"REJECTED\"},"
+      + "{\"date\":\"2018-01-01 10:00:00\",\"number\":\"919999999997\",\"status\":\"8\",\"desc\":\"SUBMITTED\"}]}]";
+
+  private static final String SNS_STATUS = "{\"notification\":{\"messageId\":\"5a1b2c3d\",\"timestamp\":\"2018-01-01 10:00:00.000\"},"
+      + "\"delivery\":{\"destination\":\"+919999999999\",\"providerResponse\":\"Phone is currently unreachable\"},"
+      + "\"status\":\"FAILURE\"}";
+
+  @Test
+  public void testParsesMsg91Reports() throws Exception {
+    List<DeliveryReceipt> receipts = DeliveryReceiptParser.parseMsg91(MSG91_REPORT);
+    assertEquals(3, receipts.size());
+    assertEquals("3763646c3058373530393138", receipts.get(0).getMessageId());
+    assertEquals("919999999998", receipts.get(1).getPhoneNumber());
+    assertEquals(DeliveryReceipt.Status.DELIVERED, receipts.get(0).getStatus());
+    assertEquals(DeliveryReceipt.Status.FAILED, receipts.get(1).getStatus());
+    assertEquals(DeliveryReceipt.Status.PENDING, receipts.get(2).getStatus());
+
+    assertEquals(3, DeliveryReceiptParser.parseMsg91("data=" + URLEncoder.encode(MSG91_REPORT, "UTF-8")).size());
+  }
+
+  @Test
+  public void testParsesSnsDeliveryStatus() throws Exception {
+    List<DeliveryReceipt> receipts = DeliveryReceiptParser.parseSns("[" + SNS_STATUS + "]");
+    assertEquals(1, receipts.size());
+    assertEquals("amazonsns", receipts.get(0).getProvider());
+    assertEquals("5a1b2c3d", receipts.get(0).getMessageId());
+    assertEquals("+919999999999", receipts.get(0).getPhoneNumber());
+    assertEquals(DeliveryReceipt.Status.FAILED, receipts.get(0).getStatus());
+    assertEquals("Phone is currently unreachable", receipts.get(0).getDescription());
+  }
+
+  @Test
+  public void testCorrelatesReceiptsWithTrackedMessages() throws Exception {
+    DeliveryTracker tracker = new DeliveryTracker(1024);
+    DeliveryStats stats = new DeliveryStats();
+    ISmsProvider provider = new DeliveryTrackingSmsProvider("msg91", new StubSmsProvider("request-1"), tracker);
+    String previous = SmsMetrics.setRealm("sunbird");
+    try {
+      assertTrue(provider.send("919999999999", "otp"));
+    } finally {
+      SmsMetrics.setRealm(previous);
+    }
+    assertEquals(1, tracker.size());
+
+    DeliveryReceiptProcessor processor = new DeliveryReceiptProcessor(16, 4, tracker, stats);
+    processor.start();
+    try {
+      processor.offer(new DeliveryReceipt("msg91", "unknown", "919999999999", DeliveryReceipt.Status.DELIVERED, null));
+      processor.offer(new DeliveryReceipt("msg91", "request-1", "919999999999", DeliveryReceipt.Status.PENDING, null));
+      processor.offer(new DeliveryReceipt("msg91", "request-1", "919999999999", DeliveryReceipt.Status.FAILED,
+          "REJECTED"));
+      for (int i = 0; i < 100 && processor.getFailed() + processor.getUnmatched() < 2; i++) {
+        Thread.sleep(10);
+      }
+    } finally {
+      processor.close();
+    }
+
+    assertEquals(1, processor.getUnmatched());
+    assertEquals(1, processor.getFailed());
+    assertEquals(0, tracker.size());
+    assertTrue(stats.getFailureRate("msg91", "sunbird") > 0.5);
+    assertEquals(0, stats.getFailureRate("msg91", "other"), 0);
+    assertNull(stats.get("msg91", null));
+    assertNull(stats.get("amazonsns", "sunbird"));
+  }
+
+  @Test
+  public void testCorrelatesEachRecipientOfABatch() throws Exception {
+    DeliveryTracker tracker = new DeliveryTracker(1024);
+    DeliveryStats stats = new DeliveryStats();
+    ISmsProvider provider = new DeliveryTrackingSmsProvider("msg91", new StubSmsProvider("3763646c3058373530393138"),
+        tracker);
+    provider.sendBatch(Arrays.asList(new SmsMessage("+919999999999", "otp"), new SmsMessage("+919999999998", "otp"),
+        new SmsMessage("+919999999997", "otp")));
+    assertEquals(3, tracker.size());
+
+    DeliveryReceiptProcessor processor = new DeliveryReceiptProcessor(16, 4, tracker, stats);
+    processor.start();
+    try {
+      for (DeliveryReceipt receipt : DeliveryReceiptParser.parseMsg91(MSG91_REPORT)) {
+        processor.offer(receipt);
+      }
+      processor.offer(new DeliveryReceipt("msg91", "3763646c3058373530393138", "919999999997",
+          DeliveryReceipt.Status.DELIVERED, null));
+      for (int i = 0; i < 100 && processor.getDelivered() + processor.getFailed() + processor.getUnmatched() < 3; i++) {
+        Thread.sleep(10);
+      }
+    } finally {
+      processor.close();
+    }
+
+    assertEquals(0, processor.getUnmatched());
+    assertEquals(2, processor.getDelivered());
+    assertEquals(1, processor.getFailed());
+    assertEquals(0, tracker.size());
+  }
+}
@@ -0,0 +1,161 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.circuitbreaker.CircuitBreaker;
+import org.sunbird.sms.circuitbreaker.CircuitBreakerSmsProvider;
+import org.sunbird.sms.hedging.HedgedSmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+public class HedgedSmsProviderTest {
+
+  @Test
+  public void testFastPrimaryIsNotHedged() {
+    StubSmsProvider primary = new StubSmsProvider("primary");
+    StubSmsProvider secondary = new StubSmsProvider("secondary");
+    HedgedSmsProvider provider = createProvider(primary, secondary, "1");
+    try {
+      assertTrue(provider.send("919999999999", "otp"));
+      assertEquals(1, primary.calls);
+      assertEquals(0, secondary.calls);
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testSlowPrimaryIsHedgedAndCancelled() {
+    StubSmsProvider primary = new StubSmsProvider("primary");
+    primary.answerImmediately = false;
+    StubSmsProvider secondary = new StubSmsProvider("secondary");
+    HedgedSmsProvider provider = createProvider(primary, secondary, "1");
+    try {
+      SmsDeliveryResult result = provider.sendAsync("919999999999", "otp").join();
+      assertTrue(result.isSuccess());
+      assertEquals("secondary", result.getProviderMessageId());
+      assertEquals(1, secondary.calls);
+      assertTrue(primary.pending.get(0).isCancelled());
+      assertEquals(1, provider.getHedges());
+      assertEquals(1, provider.getHedgeWins());
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testHalfOpenPrimaryRecordsProbeWhenHedgeWins() throws Exception {
+    StubSmsProvider stub = new StubSmsProvider("primary", false);
+    CircuitBreakerSmsProvider primary = new CircuitBreakerSmsProvider("primary", stub);
+    Map<String, String> breakerConfigurations = new HashMap<>();
+    breakerConfigurations.put(SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_MINIMUM_CALLS, "1");
+    breakerConfigurations.put(SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_OPEN_DURATION, "50");
+    breakerConfigurations.put(SmsConfigurationConstants.CONF_SMS_CIRCUIT_BREAKER_HALF_OPEN_PROBES, "1");
+    primary.configure(breakerConfigurations);
+    assertFalse(primary.send("919999999999", "otp"));
+    Thread.sleep(60);
+    assertEquals(CircuitBreaker.State.HALF_OPEN, primary.getState());
+
+    stub.succeed = true;
+    stub.answerImmediately = false;
+    StubSmsProvider secondary = new StubSmsProvider("secondary");
+    HedgedSmsProvider provider = new HedgedSmsProvider("primary", primary, "secondary", secondary);
+    Map<String, String> configurations = new HashMap<>();
+    configurations.put(SmsConfigurationConstants.CONF_SMS_HEDGE_DELAY, "20");
+    configurations.put(SmsConfigurationConstants.CONF_SMS_HEDGE_BUDGET, "1");
+    provider.configure(configurations);
+    try {
+      assertEquals("secondary", provider.sendAsync("919999999999", "otp").join().getProviderMessageId());
+      assertEquals(CircuitBreaker.State.HALF_OPEN, primary.getState());
+
+      stub.pending.get(1).complete(SmsDeliveryResult.success("primary", TimeUnit.MILLISECONDS.toNanos(100)));
+      assertEquals(CircuitBreaker.State.CLOSED, primary.getState());
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testBudgetCapsHedges() throws Exception {
+    StubSmsProvider primary = new StubSmsProvider("primary");
+    primary.answerImmediately = false;
+    StubSmsProvider secondary = new StubSmsProvider("secondary");
+    HedgedSmsProvider provider = createProvider(primary, secondary, "1");
+    try {
+      assertTrue(provider.send("919999999999", "first"));
+      CompletableFuture<SmsDeliveryResult> second = provider.sendAsync("919999999999", "second");
+      Thread.sleep(100);
+      assertFalse(second.isDone());
+      assertEquals(1, secondary.calls);
+      assertEquals(1, provider.getHedgesOverBudget());
+
+      primary.pending.get(1).complete(SmsDeliveryResult.success("primary", TimeUnit.MILLISECONDS.toNanos(100)));
+      assertEquals("primary", second.join().getProviderMessageId());
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testFailedPrimaryFailsOverWithoutBudget() {
+    StubSmsProvider primary = new StubSmsProvider("primary");
+    primary.succeed = false;
+    StubSmsProvider secondary = new StubSmsProvider("secondary");
+    HedgedSmsProvider provider = createProvider(primary, secondary, "0");
+    try {
+      assertTrue(provider.send("919999999999", "otp"));
+      assertEquals(1, secondary.calls);
+      assertEquals(0, provider.getHedges());
+
+      secondary.succeed = false;
+      assertFalse(provider.send("919999999999", "otp"));
+
+      List<SmsMessage> messages = new ArrayList<>();
+      messages.add(new SmsMessage("919999999991", "one"));
+      secondary.succeed = true;
+      assertTrue(provider.sendBatch(messages).get(0).isSuccess());
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void testAdaptiveDelayFollowsPrimaryLatency() {
+    StubSmsProvider primary = new StubSmsProvider("primary");
+    primary.latencyMillis = 50;
+    HedgedSmsProvider provider = new HedgedSmsProvider("primary", primary, "secondary", new StubSmsProvider("secondary"));
+    Map<String, String> configurations = new HashMap<>();
+    configurations.put(SmsConfigurationConstants.CONF_SMS_HEDGE_INITIAL_DELAY, "3000");
+    configurations.put(SmsConfigurationConstants.CONF_SMS_HEDGE_MIN_DELAY, "1");
+    configurations.put(SmsConfigurationConstants.CONF_SMS_HEDGE_MIN_SAMPLES, "2");
+    provider.configure(configurations);
+    try {
+      assertEquals(TimeUnit.MILLISECONDS.toNanos(3000), provider.getHedgeDelayNanos());
+      for (int i = 0; i < 3; i++) {
+        provider.send("919999999999", "otp");
+      }
+      assertTrue(provider.getHedgeDelayNanos() < TimeUnit.MILLISECONDS.toNanos(3000));
+    } finally {
+      provider.close();
+    }
+  }
+
+  private static HedgedSmsProvider createProvider(StubSmsProvider primary, StubSmsProvider secondary, String budget) {
+    HedgedSmsProvider provider = new HedgedSmsProvider("primary", primary, "secondary", secondary);
+    Map<String, String> configurations = new HashMap<>();
+    configurations.put(SmsConfigurationConstants.CONF_SMS_HEDGE_DELAY, "20");
+    configurations.put(SmsConfigurationConstants.CONF_SMS_HEDGE_BUDGET, budget);
+    provider.configure(configurations);
+    return provider;
+  }
+}
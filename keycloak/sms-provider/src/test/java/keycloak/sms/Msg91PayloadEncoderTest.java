@@ -0,0 +1,60 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+import org.sunbird.sms.msg91.Msg91PayloadEncoder;
+import org.sunbird.sms.msg91.ProviderDetails;
+import org.sunbird.sms.msg91.Sms;
+import org.sunbird.utils.JsonUtil;
+
+public class Msg91PayloadEncoderTest {
+
+  private static final String[] TEXTS = {
+      "Your OTP is 123456",
+      "OTP: 98765432 for +919999999999, valid 10 min & don't share <it>!",
+      "\u0906\u092A\u0915\u093E \u0913\u091F\u0940\u092A\u0940 1234 \u0939\u0948 \uD83D\uDE00 \u2028 \"quoted\" \\ tab\t",
+      "broken \uD800 surrogate"
+  };
+
+  @Test
+  public void testSingleRequestMatchesGson() throws Exception {
+    Msg91PayloadEncoder encoder = new Msg91PayloadEncoder("http://api.msg91.com/api/v2/sendsms",
+        "key", "SENDER", "4", "91");
+    for (String text : TEXTS) {
+      HttpPost request = encoder.createRequest(text, "+91999\"9999999");
+      assertEquals(gson(text, "91999\"9999999"), EntityUtils.toString(request.getEntity(), "UTF-8"));
+      assertEquals("key", request.getFirstHeader("authkey").getValue());
+    }
+  }
+
+  @Test
+  public void testBatchRequestMatchesGson() throws Exception {
+    Msg91PayloadEncoder encoder = new Msg91PayloadEncoder("http://api.msg91.com/api/v2/sendsms",
+        "key", "SEN<DER>", "4", "91");
+    Map<String, List<String>> batch = new LinkedHashMap<>();
+    batch.put(TEXTS[0], Arrays.asList("+919999999991", "919999999992"));
+    batch.put(TEXTS[2], Arrays.asList("919999999993"));
+
+    List<Sms> smsList = new ArrayList<>();
+    smsList.add(new Sms(URLEncoder.encode(TEXTS[0], "UTF-8"), Arrays.asList("919999999991", "919999999992")));
+    smsList.add(new Sms(URLEncoder.encode(TEXTS[2], "UTF-8"), Arrays.asList("919999999993")));
+    String expected = JsonUtil.toJson(new ProviderDetails("SEN<DER>", "4", "91", smsList));
+
+    assertEquals(expected, EntityUtils.toString(encoder.createRequest(batch).getEntity(), "UTF-8"));
+  }
+
+  private static String gson(String text, String mobileNumber) throws Exception {
+    List<Sms> smsList = new ArrayList<>();
+    smsList.add(new Sms(URLEncoder.encode(text, "UTF-8"), Arrays.asList(mobileNumber)));
+    return JsonUtil.toJson(new ProviderDetails("SENDER", "4", "91", smsList));
+  }
+}
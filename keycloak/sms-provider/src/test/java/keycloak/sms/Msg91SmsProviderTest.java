@@ -0,0 +1,266 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.msg91.Msg91SmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+public class Msg91SmsProviderTest {
+
+  private HttpServer server;
+  private Msg91SmsProvider provider;
+
+  private final List<String> requests = new CopyOnWriteArrayList<>();
+  private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+  private volatile int status = 200;
+  private volatile CountDownLatch received = new CountDownLatch(0);
+  private volatile CountDownLatch respond = new CountDownLatch(0);
+  private volatile String response = "{\"message\":\"3763646c3058373530393138\",\"type\":\"success\"}";
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/api/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.add(exchange.getRequestURI() + " " + IOUtils.toString(exchange.getRequestBody(), "UTF-8"));
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        received.countDown();
+        try {
+          respond.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+    });
+    server.start();
+    provider = new Msg91SmsProvider();
+  }
+
+  @After
+  public void tearDown() {
+    provider.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testSequentialSendsReuseOneConnection() {
+    provider.configure(configuration("POST"));
+    for (int i = 0; i < 5; i++) {
+      assertTrue(provider.send("+919999999999", "Your OTP is " + i));
+    }
+
+    assertEquals(5, requests.size());
+    assertTrue(requests.get(0).startsWith("/api/v2/sendsms {"));
+    assertEquals(1, new HashSet<>(clientPorts).size());
+  }
+
+  @Test
+  public void testReconfigureReplacesPool() {
+    provider.configure(configuration("GET"));
+    assertTrue(provider.send("+919999999999", "Your OTP is 1234"));
+    Map<String, String> configuration = configuration("GET");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_SOCKET_TIMEOUT, "5000");
+    provider.configure(configuration);
+    assertTrue(provider.send("+919999999999", "Your OTP is 5678"));
+
+    assertTrue(requests.get(0).startsWith("/api/sendhttp.php?sender=SENDER&route=4&mobiles=919999999999"));
+    Set<Integer> ports = new HashSet<>(clientPorts);
+    assertEquals(2, ports.size());
+  }
+
+  @Test
+  public void testUnchangedConfigurationKeepsPool() {
+    provider.configure(configuration("GET"));
+    assertTrue(provider.send("+919999999999", "Your OTP is 1234"));
+    provider.configure(configuration("GET"));
+    assertTrue(provider.send("+919999999999", "Your OTP is 5678"));
+
+    assertEquals(1, new HashSet<>(clientPorts).size());
+  }
+
+  @Test
+  public void testReconfigureLetsSynchronousSendInFlightFinish() throws Exception {
+    provider.configure(configuration("POST"));
+    received = new CountDownLatch(1);
+    respond = new CountDownLatch(1);
+    CompletableFuture<Boolean> sent = CompletableFuture.supplyAsync(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return provider.send("+919999999999", "Your OTP is 1234");
+      }
+    });
+    assertTrue(received.await(5, TimeUnit.SECONDS));
+
+    Map<String, String> configuration = configuration("POST");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_SOCKET_TIMEOUT, "5000");
+    provider.configure(configuration);
+    respond.countDown();
+
+    assertTrue(sent.get(5, TimeUnit.SECONDS));
+    assertTrue(provider.send("+919999999999", "Your OTP is 5678"));
+  }
+
+  @Test
+  public void testErrorTypeIsFailure() {
+    provider.configure(configuration("POST"));
+    response = "{\"message\":\"Authentication failure\",\"type\":\"error\"}";
+    assertFalse(provider.send("+919999999999", "Your OTP is 1234"));
+
+    response = "{\"message\":\"3763646c3058373530393138\"}";
+    assertFalse(provider.send("+919999999999", "Your OTP is 1234"));
+
+    response = "{\"message\":\"3763646c3058373530393138\",\"type\":\"success\"}";
+    assertTrue(provider.send("+919999999999", "Your OTP is 1234"));
+  }
+
+  @Test
+  public void testSendAsyncReturnsRequestId() throws Exception {
+    provider.configure(configuration("POST"));
+    SmsDeliveryResult result = provider.sendAsync("+919999999999", "Your OTP is 1234").get(5, TimeUnit.SECONDS);
+
+    assertTrue(result.isSuccess());
+    assertEquals("3763646c3058373530393138", result.getProviderMessageId());
+  }
+
+  @Test
+  public void testSendAsyncCompletesOnFailure() throws Exception {
+    provider.configure(configuration("GET"));
+    status = 500;
+    SmsDeliveryResult result = provider.sendAsync("+919999999999", "Your OTP is 1234").get(5, TimeUnit.SECONDS);
+    assertFalse(result.isSuccess());
+    assertEquals(SmsDeliveryResult.ErrorClass.HTTP_ERROR, result.getErrorClass());
+    assertNull(result.getProviderMessageId());
+
+    server.stop(0);
+    result = provider.sendAsync("+919999999999", "Your OTP is 1234").get(5, TimeUnit.SECONDS);
+    assertFalse(result.isSuccess());
+    assertEquals(SmsDeliveryResult.ErrorClass.EXCEPTION, result.getErrorClass());
+
+    provider.close();
+    result = provider.sendAsync("+919999999999", "Your OTP is 1234").get(5, TimeUnit.SECONDS);
+    assertEquals(SmsDeliveryResult.ErrorClass.REJECTED, result.getErrorClass());
+  }
+
+  @Test
+  public void testPostBatchAtChunkLimitIsOneRequest() {
+    Map<String, String> configuration = configuration("POST");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_BATCH_MAX_RECIPIENTS, "3");
+    provider.configure(configuration);
+
+    List<SmsDeliveryResult> results = provider.sendBatch(messages("OTP 1", "OTP 2", "OTP 1"));
+
+    assertEquals(3, results.size());
+    assertEquals(1, requests.size());
+    assertTrue(requests.get(0).contains("\"message\":\"OTP+1\",\"to\":[\"919999999990\",\"919999999992\"]"));
+    assertTrue(requests.get(0).contains("\"message\":\"OTP+2\",\"to\":[\"919999999991\"]"));
+    for (SmsDeliveryResult result : results) {
+      assertTrue(result.isSuccess());
+    }
+  }
+
+  @Test
+  public void testPostBatchAboveChunkLimitIsSplit() {
+    Map<String, String> configuration = configuration("POST");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_BATCH_MAX_RECIPIENTS, "3");
+    provider.configure(configuration);
+
+    List<SmsDeliveryResult> results = provider.sendBatch(messages("OTP 1", "OTP 1", "OTP 2", "OTP 2", ""));
+
+    assertEquals(2, requests.size());
+    assertTrue(requests.get(0).contains("\"to\":[\"919999999990\",\"919999999991\"]"));
+    assertTrue(requests.get(0).contains("\"message\":\"OTP+2\",\"to\":[\"919999999992\"]"));
+    assertTrue(requests.get(1).contains("\"message\":\"OTP+2\",\"to\":[\"919999999993\"]"));
+    for (int i = 0; i < 4; i++) {
+      assertTrue(results.get(i).isSuccess());
+    }
+    assertEquals(SmsDeliveryResult.ErrorClass.INVALID_REQUEST, results.get(4).getErrorClass());
+  }
+
+  @Test
+  public void testGetBatchIsSplitPerTextAndChunk() {
+    Map<String, String> configuration = configuration("GET");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_BATCH_MAX_RECIPIENTS, "2");
+    provider.configure(configuration);
+    response = "3763646c3058373530393138";
+
+    List<SmsDeliveryResult> results = provider.sendBatch(messages("OTP 1", "OTP 1", "OTP 2", "OTP 1"));
+
+    assertEquals(3, requests.size());
+    assertTrue(requests.get(0).contains("&mobiles=919999999990,919999999991&"));
+    assertTrue(requests.get(1).contains("&mobiles=919999999993&"));
+    assertTrue(requests.get(2).contains("&mobiles=919999999992&"));
+    for (SmsDeliveryResult result : results) {
+      assertEquals("3763646c3058373530393138", result.getProviderMessageId());
+    }
+  }
+
+  @Test
+  public void testFailedChunkOnlyFailsItsRecipients() {
+    Map<String, String> configuration = configuration("POST");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_BATCH_MAX_RECIPIENTS, "2");
+    provider.configure(configuration);
+    response = "{\"message\":\"Insufficient balance\",\"type\":\"error\"}";
+
+    List<SmsDeliveryResult> results = provider.sendBatch(messages("OTP 1", "OTP 1", "OTP 1"));
+
+    assertEquals(2, requests.size());
+    for (SmsDeliveryResult result : results) {
+      assertFalse(result.isSuccess());
+      assertEquals("Insufficient balance", result.getErrorMessage());
+    }
+  }
+
+  // One message per text, to 91999999999<index>
+  private static List<SmsMessage> messages(String... texts) {
+    List<SmsMessage> messages = new ArrayList<>();
+    for (int i = 0; i < texts.length; i++) {
+      messages.add(new SmsMessage("+91999999999" + i, texts[i]));
+    }
+    return messages;
+  }
+
+  private Map<String, String> configuration(String method) {
+    Map<String, String> configuration = new HashMap<>();
+    configuration.put(SmsConfigurationConstants.CONF_SMS_BASE_URL,
+        "http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    configuration.put(SmsConfigurationConstants.CONF_AUTH_KEY, "key");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_SENDER, "SENDER");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_COUNTRY, "91");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_ROUTE, "4");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_METHOD_TYPE, method);
+    return configuration;
+  }
+}
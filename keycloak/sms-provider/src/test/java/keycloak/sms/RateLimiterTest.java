@@ -0,0 +1,87 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.ratelimit.DestinationRateLimiter;
+import org.sunbird.sms.ratelimit.RateLimitedSmsProvider;
+import org.sunbird.sms.ratelimit.StripedTokenBucket;
+import org.sunbird.sms.ratelimit.TokenBucket;
+import org.sunbird.utils.BoundedCache;
+
+public class RateLimiterTest {
+
+  @Test
+  public void testTokenBucketAllowsBurstThenRefills() throws Exception {
+    TokenBucket bucket = new TokenBucket(3, 1, 50, TimeUnit.MILLISECONDS);
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+
+    Thread.sleep(60);
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+  }
+
+  @Test
+  public void testStripedBucketHonoursTotalCapacity() {
+    StripedTokenBucket bucket = new StripedTokenBucket(8, 10, 10, 1, TimeUnit.HOURS);
+    int acquired = 0;
+    for (int i = 0; i < 20; i++) {
+      if (bucket.tryAcquire()) {
+        acquired++;
+      }
+    }
+    assertEquals(10, acquired);
+  }
+
+  @Test
+  public void testDestinationLimitIsPerNumber() {
+    DestinationRateLimiter limiter = new DestinationRateLimiter(2, 15, TimeUnit.MINUTES, 1000);
+    assertTrue(limiter.tryAcquire("919999999991"));
+    assertTrue(limiter.tryAcquire("919999999991"));
+    assertFalse(limiter.tryAcquire("919999999991"));
+    assertTrue(limiter.tryAcquire("919999999992"));
+  }
+
+  @Test
+  public void testReleaseRefundsOneToken() {
+    DestinationRateLimiter limiter = new DestinationRateLimiter(1, 15, TimeUnit.MINUTES, 1000);
+    assertTrue(limiter.tryAcquire("919999999991"));
+    limiter.release("919999999991");
+    assertTrue(limiter.tryAcquire("919999999991"));
+    assertFalse(limiter.tryAcquire("919999999991"));
+  }
+
+  @Test
+  public void testProviderLimitDoesNotUseDestinationTokens() throws Exception {
+    StripedTokenBucket providerLimit = new StripedTokenBucket(1, 1, 1, 1, TimeUnit.HOURS);
+    DestinationRateLimiter destinationLimit = new DestinationRateLimiter(1, 15, TimeUnit.MINUTES, 1000);
+    RateLimitedSmsProvider provider = new RateLimitedSmsProvider(mock(ISmsProvider.class), providerLimit,
+        destinationLimit);
+    assertTrue(providerLimit.tryAcquire());
+
+    SmsDeliveryResult result = provider.sendAsync("919999999991", "Your OTP is 1234").get();
+    assertEquals(SmsDeliveryResult.ErrorClass.RATE_LIMITED, result.getErrorClass());
+    assertEquals("Provider throughput limit reached", result.getErrorMessage());
+    assertTrue(destinationLimit.tryAcquire("919999999991"));
+  }
+
+  @Test
+  public void testBoundedCacheEvicts() {
+    BoundedCache<Integer, Integer> cache = new BoundedCache<>(160);
+    for (int i = 0; i < 10000; i++) {
+      cache.put(i, i);
+    }
+    assertTrue(cache.size() <= 160);
+    assertEquals(Integer.valueOf(9999), cache.get(9999));
+  }
+}
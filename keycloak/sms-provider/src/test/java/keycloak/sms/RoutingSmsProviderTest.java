@@ -0,0 +1,79 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+import org.sunbird.sms.routing.RoutingSmsProvider;
+
+public class RoutingSmsProviderTest {
+
+  @Test
+  public void testFailsOverAndRoutesAwayFromFailingProvider() {
+    StubSmsProvider primary = new StubSmsProvider("id", false);
+    StubSmsProvider secondary = new StubSmsProvider("id", true);
+    Map<String, ISmsProvider> providers = new LinkedHashMap<>();
+    providers.put("primary", primary);
+    providers.put("secondary", secondary);
+    RoutingSmsProvider router = new RoutingSmsProvider(providers);
+    router.configure(new HashMap<String, String>());
+
+    assertTrue(router.send("919999999999", "first"));
+    assertEquals(1, primary.calls);
+    assertEquals(1, secondary.calls);
+
+    assertTrue(router.send("919999999999", "second"));
+    assertEquals(1, primary.calls);
+    assertEquals(2, secondary.calls);
+  }
+
+  @Test
+  public void testBatchRetriesOnlyFailedMessages() {
+    StubSmsProvider primary = new StubSmsProvider("id", false);
+    StubSmsProvider secondary = new StubSmsProvider("id", true);
+    Map<String, ISmsProvider> providers = new LinkedHashMap<>();
+    providers.put("primary", primary);
+    providers.put("secondary", secondary);
+    RoutingSmsProvider router = new RoutingSmsProvider(providers);
+    router.configure(new HashMap<String, String>());
+
+    List<SmsMessage> messages = new ArrayList<>();
+    messages.add(new SmsMessage("919999999991", "one"));
+    messages.add(new SmsMessage("919999999992", "two"));
+    List<SmsDeliveryResult> results = router.sendBatch(messages);
+
+    assertEquals(2, results.size());
+    assertTrue(results.get(0).isSuccess());
+    assertTrue(results.get(1).isSuccess());
+    assertEquals(2, secondary.calls);
+  }
+
+  @Test
+  public void testFastFailingProviderDoesNotOutrankSlowerHealthyOne() {
+    // Connection refused in 2 ms next to a gateway that delivers in 400 ms
+    StubSmsProvider primary = new StubSmsProvider("id", false);
+    primary.reportedLatencyNanos = TimeUnit.MILLISECONDS.toNanos(2);
+    StubSmsProvider secondary = new StubSmsProvider("id", true);
+    secondary.reportedLatencyNanos = TimeUnit.MILLISECONDS.toNanos(400);
+    Map<String, ISmsProvider> providers = new LinkedHashMap<>();
+    providers.put("primary", primary);
+    providers.put("secondary", secondary);
+    RoutingSmsProvider router = new RoutingSmsProvider(providers);
+    router.configure(new HashMap<String, String>());
+
+    for (int i = 0; i < 5; i++) {
+      assertTrue(router.send("919999999999", "otp " + i));
+    }
+    assertEquals(1, primary.calls);
+    assertEquals(5, secondary.calls);
+  }
+}
@@ -0,0 +1,60 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sunbird.sms.SmsConfigurationWatcher;
+
+public class SmsConfigurationWatcherTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testKeepsSnapshotWhenFileIsUnreadable() throws Exception {
+    File file = folder.newFile("Msg91Creds.json");
+    write(file, "{\"auth_key\": \"first\"}");
+    SmsConfigurationWatcher watcher = new SmsConfigurationWatcher(file);
+    Map<String, String> first = watcher.getConfigurations();
+    assertEquals("first", first.get("auth_key"));
+
+    write(file, "{\"auth_key\": ");
+    assertFalse(watcher.reload());
+    assertTrue(first == watcher.getConfigurations());
+
+    write(file, "{\"auth_key\": \"second\"}");
+    assertTrue(watcher.reload());
+    assertEquals("second", watcher.getConfigurations().get("auth_key"));
+  }
+
+  @Test
+  public void testReloadsChangedFile() throws Exception {
+    File file = folder.newFile("Msg91Creds.json");
+    write(file, "{\"auth_key\": \"first\"}");
+    SmsConfigurationWatcher watcher = new SmsConfigurationWatcher(file);
+    watcher.start();
+    try {
+      write(file, "{\"auth_key\": \"second\"}");
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      while (!"second".equals(watcher.getConfigurations().get("auth_key")) && System.nanoTime() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals("second", watcher.getConfigurations().get("auth_key"));
+    } finally {
+      watcher.close();
+    }
+  }
+
+  private static void write(File file, String content) throws Exception {
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,82 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.queue.QueuedSms;
+import org.sunbird.sms.queue.SmsDispatcher;
+import org.sunbird.sms.queue.SmsJournal;
+
+public class SmsDispatcherTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testFailedAckDoesNotResend() throws Exception {
+    final AtomicInteger failedAcks = new AtomicInteger();
+    SmsJournal journal = new SmsJournal(folder.newFolder()) {
+      @Override
+      public void ack(QueuedSms sms) throws IOException {
+        if (failedAcks.incrementAndGet() <= 2) {
+          throw new IOException("disk full");
+        }
+        super.ack(sms);
+      }
+    };
+    ISmsProvider provider = mock(ISmsProvider.class);
+    when(provider.sendAsync(anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(SmsDeliveryResult.success("id", 0)));
+
+    SmsDispatcher dispatcher = new SmsDispatcher(journal, provider, 5, 1, 10, Long.MAX_VALUE, Long.MAX_VALUE);
+    dispatcher.start(1);
+    dispatcher.dispatch(journal.append("919999999991", "Your OTP is 1234", Long.MAX_VALUE));
+
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!journal.getPending().isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    dispatcher.stop();
+    journal.close();
+
+    assertTrue(journal.getPending().isEmpty());
+    assertEquals(3, failedAcks.get());
+    verify(provider, times(1)).sendAsync(anyString(), anyString());
+  }
+
+  @Test
+  public void testExpiredMessageIsDeadLetteredWithoutSending() throws Exception {
+    SmsJournal journal = new SmsJournal(folder.newFolder());
+    ISmsProvider provider = mock(ISmsProvider.class);
+    when(provider.sendAsync(anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(SmsDeliveryResult.success("id", 0)));
+
+    SmsDispatcher dispatcher = new SmsDispatcher(journal, provider, 5, 1, 10, Long.MAX_VALUE, Long.MAX_VALUE);
+    dispatcher.start(1);
+    dispatcher.dispatch(journal.append("919999999991", "Your OTP is 1234", System.currentTimeMillis() - 1));
+
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!journal.getPending().isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    dispatcher.stop();
+    journal.close();
+
+    assertTrue(journal.getPending().isEmpty());
+    verify(provider, never()).sendAsync(anyString(), anyString());
+  }
+}
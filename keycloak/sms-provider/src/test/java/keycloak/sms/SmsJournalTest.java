@@ -0,0 +1,184 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sunbird.sms.queue.QueuedSms;
+import org.sunbird.sms.queue.SmsJournal;
+
+public class SmsJournalTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReplayReturnsOnlyUnacknowledgedMessages() throws Exception {
+    File directory = folder.newFolder();
+    SmsJournal journal = new SmsJournal(directory);
+    QueuedSms delivered = journal.append("919999999991", "first", Long.MAX_VALUE);
+    QueuedSms dead = journal.append("919999999992", "second", Long.MAX_VALUE);
+    journal.append("919999999993", "third", Long.MAX_VALUE);
+    journal.ack(delivered);
+    journal.deadLetter(dead, "test");
+    journal.sync(journal.position());
+    journal.close();
+
+    SmsJournal reopened = new SmsJournal(directory);
+    List<QueuedSms> pending = reopened.getPending();
+    assertEquals(1, pending.size());
+    assertEquals("919999999993", pending.get(0).getPhoneNumber());
+    assertEquals("third", pending.get(0).getText());
+    assertEquals(4, reopened.append("919999999994", "fourth", Long.MAX_VALUE).getId());
+    reopened.close();
+  }
+
+  @Test
+  public void testReplayTruncatesTornRecord() throws Exception {
+    File directory = folder.newFolder();
+    SmsJournal journal = new SmsJournal(directory);
+    journal.append("919999999991", "first", Long.MAX_VALUE);
+    journal.append("919999999992", "second", Long.MAX_VALUE);
+    journal.sync(journal.position());
+    long size = journal.size();
+    journal.close();
+
+    try (RandomAccessFile file = new RandomAccessFile(new File(directory, "sms-journal.log"), "rw")) {
+      file.setLength(size - 3);
+    }
+
+    SmsJournal reopened = new SmsJournal(directory);
+    assertEquals(1, reopened.getPending().size());
+    assertEquals("first", reopened.getPending().get(0).getText());
+    reopened.close();
+  }
+
+  @Test
+  public void testMigratesPendingMessagesOfLegacyJournal() throws Exception {
+    File legacyDirectory = folder.newFolder();
+    SmsJournal legacy = new SmsJournal(legacyDirectory);
+    QueuedSms delivered = legacy.append("919999999991", "first", Long.MAX_VALUE);
+    legacy.append("919999999992", "second", Long.MAX_VALUE);
+    legacy.ack(delivered);
+    legacy.sync(legacy.position());
+    legacy.close();
+
+    File tenantDirectory = new File(legacyDirectory, "realm");
+    SmsJournal journal = new SmsJournal(tenantDirectory);
+    assertEquals(1, journal.migrateFrom(legacyDirectory));
+    assertEquals(0, journal.migrateFrom(legacyDirectory));
+    journal.close();
+    assertFalse(new File(legacyDirectory, "sms-journal.log").exists());
+
+    SmsJournal reopened = new SmsJournal(tenantDirectory);
+    assertEquals(1, reopened.getPending().size());
+    assertEquals("919999999992", reopened.getPending().get(0).getPhoneNumber());
+    assertEquals("second", reopened.getPending().get(0).getText());
+    reopened.close();
+  }
+
+  @Test
+  public void testJournalIsOnlyAccessibleByItsOwner() throws Exception {
+    File directory = folder.newFolder();
+    Assume.assumeTrue(Files.getFileStore(directory.toPath()).supportsFileAttributeView(PosixFileAttributeView.class));
+    Files.setPosixFilePermissions(directory.toPath(), PosixFilePermissions.fromString("rwxr-xr-x"));
+
+    SmsJournal journal = new SmsJournal(directory);
+    journal.append("919999999991", "Your OTP is 123456", Long.MAX_VALUE);
+    journal.sync(journal.position());
+    journal.close();
+
+    assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.toPath())));
+    for (String file : new String[] {"sms-journal.log", "sms-dead-letter.txt", "sms-journal.lock"}) {
+      assertEquals(file, "rw-------",
+          PosixFilePermissions.toString(Files.getPosixFilePermissions(new File(directory, file).toPath())));
+    }
+  }
+
+  @Test
+  public void testSecondJournalOnDirectoryFails() throws Exception {
+    File directory = folder.newFolder();
+    SmsJournal journal = new SmsJournal(directory);
+    try {
+      new SmsJournal(directory);
+      fail("Opened a second journal on " + directory);
+    } catch (IOException e) {
+      // Expected
+    }
+    journal.append("919999999991", "first", Long.MAX_VALUE);
+    journal.close();
+
+    SmsJournal reopened = new SmsJournal(directory);
+    assertEquals(1, reopened.getPending().size());
+    reopened.close();
+  }
+
+  @Test
+  public void testCompactionKeepsPendingMessages() throws Exception {
+    File directory = folder.newFolder();
+    SmsJournal journal = new SmsJournal(directory);
+    for (int i = 0; i < 10; i++) {
+      journal.ack(journal.append("91999999999" + i, "message " + i, Long.MAX_VALUE));
+    }
+    journal.append("919999999990", "pending", Long.MAX_VALUE);
+    journal.compactIfLarger(0);
+    journal.close();
+
+    SmsJournal reopened = new SmsJournal(directory);
+    assertEquals(1, reopened.getPending().size());
+    assertEquals("pending", reopened.getPending().get(0).getText());
+    reopened.close();
+  }
+
+  @Test
+  public void testDeadLetterKeepsNoTextAndRotates() throws Exception {
+    File directory = folder.newFolder();
+    SmsJournal journal = new SmsJournal(directory, 100);
+    for (int i = 0; i < 5; i++) {
+      journal.deadLetter(journal.append("91999999999" + i, "Your OTP is 123" + i, Long.MAX_VALUE), "test");
+    }
+    journal.close();
+
+    File deadLetter = new File(directory, "sms-dead-letter.txt");
+    File rotated = new File(directory, "sms-dead-letter.txt.1");
+    assertTrue(deadLetter.length() <= 100);
+    assertTrue(rotated.length() <= 100);
+    String contents = new String(Files.readAllBytes(deadLetter.toPath()), StandardCharsets.UTF_8)
+        + new String(Files.readAllBytes(rotated.toPath()), StandardCharsets.UTF_8);
+    assertTrue(contents.contains("919999999994"));
+    assertFalse(contents.contains("OTP"));
+  }
+
+  @Test
+  public void testCompactionDropsTextOfClosedMessagesOnceOld() throws Exception {
+    File directory = folder.newFolder();
+    SmsJournal journal = new SmsJournal(directory);
+    journal.ack(journal.append("919999999991", "Your OTP is 1234", Long.MAX_VALUE));
+    journal.append("919999999992", "pending", Long.MAX_VALUE);
+    journal.sync(journal.position());
+
+    journal.compactIfOlder(60000);
+    assertTrue(readJournal(directory).contains("1234"));
+    journal.compactIfOlder(0);
+    assertFalse(readJournal(directory).contains("1234"));
+    assertTrue(readJournal(directory).contains("pending"));
+    journal.close();
+  }
+
+  private static String readJournal(File directory) throws Exception {
+    return new String(Files.readAllBytes(new File(directory, "sms-journal.log").toPath()), StandardCharsets.ISO_8859_1);
+  }
+}
@@ -0,0 +1,81 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.sunbird.sms.metrics.InstrumentedSmsProvider;
+import org.sunbird.sms.metrics.LatencyHistogram;
+import org.sunbird.sms.metrics.PrometheusFormatter;
+import org.sunbird.sms.metrics.SmsMetrics;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+
+public class SmsMetricsTest {
+
+  @Test
+  public void testHistogramPercentilesWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i, TimeUnit.MILLISECONDS);
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500500000L, histogram.getSumMicros());
+    assertWithin(500000, histogram.getValueAtPercentile(50));
+    assertWithin(990000, histogram.getValueAtPercentile(99));
+    assertWithin(1000000, histogram.getValueAtPercentile(100));
+    assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+  }
+
+  @Test
+  public void testRecordsOutcomesPerProviderAndRealm() {
+    SmsMetrics metrics = new SmsMetrics();
+    ISmsProvider ok = new InstrumentedSmsProvider("ok", new StubSmsProvider("id"), metrics);
+    ISmsProvider failing = new InstrumentedSmsProvider("failing", new StubSmsProvider("id", false), metrics);
+
+    String previous = SmsMetrics.setRealm("sunbird");
+    try {
+      assertTrue(ok.send("919999999999", "text"));
+      assertTrue(ok.send("919999999999", "text"));
+      assertFalse(failing.send("919999999999", "text"));
+    } finally {
+      SmsMetrics.setRealm(previous);
+    }
+    ok.send("919999999999", "text");
+
+    SmsMetrics.ProviderMetrics sunbird = metrics.get("ok", "sunbird");
+    assertEquals(2, sunbird.getCount(SmsDeliveryResult.ErrorClass.NONE));
+    assertEquals(2, sunbird.getLatency().getCount());
+    assertEquals(0, sunbird.getInFlight());
+    assertEquals(1, metrics.get("failing", "sunbird").getCount(SmsDeliveryResult.ErrorClass.HTTP_ERROR));
+    assertEquals(1, metrics.get("ok", SmsMetrics.UNKNOWN_REALM).getCount(SmsDeliveryResult.ErrorClass.NONE));
+    assertEquals(3, metrics.getAll().size());
+  }
+
+  @Test
+  public void testPrometheusFormat() {
+    SmsMetrics metrics = new SmsMetrics();
+    ISmsProvider provider = new InstrumentedSmsProvider("msg91", new StubSmsProvider("id"), metrics);
+    String previous = SmsMetrics.setRealm("sun\"bird");
+    try {
+      provider.send("919999999999", "text");
+    } finally {
+      SmsMetrics.setRealm(previous);
+    }
+
+    String text = PrometheusFormatter.format(metrics.getAll());
+    assertTrue(text.contains("# TYPE sms_provider_send_duration_seconds histogram\n"));
+    assertTrue(text.contains("sms_provider_send_duration_seconds_bucket{provider=\"msg91\",realm=\"sun\\\"bird\",le=\"+Inf\"} 1\n"));
+    assertTrue(text.contains("sms_provider_sends_total{provider=\"msg91\",realm=\"sun\\\"bird\",outcome=\"success\"} 1\n"));
+    assertTrue(text.contains("sms_provider_sends_total{provider=\"msg91\",realm=\"sun\\\"bird\",outcome=\"http_error\"} 0\n"));
+    assertTrue(text.contains("sms_provider_in_flight{provider=\"msg91\",realm=\"sun\\\"bird\"} 0\n"));
+  }
+
+  private static void assertWithin(long expectedMicros, long actualMicros) {
+    assertTrue("expected about " + expectedMicros + " but was " + actualMicros,
+        Math.abs(actualMicros - expectedMicros) <= expectedMicros / 16);
+  }
+}
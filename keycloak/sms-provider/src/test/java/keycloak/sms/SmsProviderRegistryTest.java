@@ -0,0 +1,261 @@
+package keycloak.sms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.SmsProviderRegistry;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.ISmsProviderFactory;
+import org.sunbird.sms.queue.QueuedSmsProviderFactory;
+import org.sunbird.sms.queue.SmsJournal;
+
+public class SmsProviderRegistryTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final AtomicInteger created = new AtomicInteger();
+  private final List<StubFactory> factories = Collections.synchronizedList(new ArrayList<StubFactory>());
+  private volatile boolean failing;
+  private volatile CountDownLatch building;
+  private final List<StubSmsProvider> providers = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void testProviderPerTenantAndConfiguration() throws Exception {
+    SmsProviderRegistry registry = new SmsProviderRegistry(stubFactories(), 0);
+    try {
+      ISmsProvider first = registry.get("realm-a", configuration("msg91"));
+      assertSame(first, registry.get("realm-a", configuration("msg91")));
+      assertNotSame(first, registry.get("realm-b", configuration("msg91")));
+      assertEquals(2, registry.size());
+
+      ISmsProvider replaced = registry.get("realm-a", configuration("amazonsns"));
+      assertNotSame(first, replaced);
+      assertEquals(3, created.get());
+      for (int i = 0; i < 50 && !factories.get(0).closed; i++) {
+        Thread.sleep(10);
+      }
+      assertTrue(factories.get(0).closed);
+    } finally {
+      registry.close();
+    }
+    for (StubFactory factory : factories) {
+      assertTrue(factory.closed);
+    }
+  }
+
+  @Test
+  public void testConcurrentFirstLookupsBuildOneProvider() throws Exception {
+    final SmsProviderRegistry registry = new SmsProviderRegistry(stubFactories());
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<ISmsProvider>> lookups = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        lookups.add(executor.submit(new Callable<ISmsProvider>() {
+          @Override
+          public ISmsProvider call() throws Exception {
+            start.await();
+            return registry.get("realm", configuration("msg91"));
+          }
+        }));
+      }
+      start.countDown();
+
+      ISmsProvider provider = lookups.get(0).get();
+      for (Future<ISmsProvider> lookup : lookups) {
+        assertSame(provider, lookup.get());
+      }
+      assertEquals(1, created.get());
+    } finally {
+      executor.shutdownNow();
+      registry.close();
+    }
+  }
+
+  @Test
+  public void testFailedBuildReturnsNullAndIsRetried() throws Exception {
+    SmsProviderRegistry registry = new SmsProviderRegistry(stubFactories(), 0);
+    try {
+      failing = true;
+      assertNull(registry.get("realm", configuration("amazonsns")));
+      assertEquals(0, registry.size());
+      assertTrue(factories.get(0).closed);
+
+      failing = false;
+      assertNotNull(registry.get("realm", configuration("amazonsns")));
+      assertEquals(1, registry.size());
+    } finally {
+      registry.close();
+    }
+  }
+
+  @Test
+  public void testSlowBuildDoesNotBlockOtherTenants() throws Exception {
+    final SmsProviderRegistry registry = new SmsProviderRegistry(stubFactories(), 0);
+    final CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      building = release;
+      Future<ISmsProvider> slow = executor.submit(new Callable<ISmsProvider>() {
+        @Override
+        public ISmsProvider call() {
+          return registry.get("slow", configuration("amazonsns"));
+        }
+      });
+      for (int i = 0; i < 100 && created.get() == 0; i++) {
+        Thread.sleep(10);
+      }
+      building = null;
+
+      assertNotNull(registry.get("other", configuration("amazonsns")));
+      assertFalse(slow.isDone());
+      release.countDown();
+      assertNotNull(slow.get());
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+      registry.close();
+    }
+  }
+
+  @Test
+  public void testReplacedQueueHandsPendingMessagesOverOnce() throws Exception {
+    SmsProviderRegistry registry = new SmsProviderRegistry(new Supplier<ISmsProviderFactory>() {
+      @Override
+      public ISmsProviderFactory get() {
+        return new QueuedSmsProviderFactory(new StubFactory());
+      }
+    }, 60000);
+    File directory = folder.newFolder();
+    try {
+      failing = false;
+      ISmsProvider first = registry.get("realm", queueConfiguration(directory, "msg91"));
+      StubSmsProvider firstGateway = providers.get(0);
+      firstGateway.succeed = false;
+      for (int i = 0; i < 5; i++) {
+        assertTrue(first.send("919999999999", "otp " + i));
+      }
+      Thread.sleep(50);
+
+      registry.get("realm", queueConfiguration(directory, "amazonsns"));
+      firstGateway.succeed = true;
+      StubSmsProvider secondGateway = providers.get(1);
+      for (int i = 0; i < 200 && secondGateway.delivered.size() < 5; i++) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(100);
+
+      List<String> delivered = new ArrayList<>(firstGateway.delivered);
+      delivered.addAll(secondGateway.delivered);
+      Collections.sort(delivered);
+      assertEquals(Arrays.asList("otp 0", "otp 1", "otp 2", "otp 3", "otp 4"), delivered);
+    } finally {
+      registry.close();
+    }
+  }
+
+  @Test
+  public void testRemovedTenantReleasesItsQueue() throws Exception {
+    SmsProviderRegistry registry = new SmsProviderRegistry(new Supplier<ISmsProviderFactory>() {
+      @Override
+      public ISmsProviderFactory get() {
+        return new QueuedSmsProviderFactory(new StubFactory());
+      }
+    }, 60000);
+    File directory = folder.newFolder();
+    try {
+      registry.get("removed", queueConfiguration(directory, "msg91"));
+      registry.get("other", queueConfiguration(directory, "msg91"));
+      assertEquals(2, registry.size());
+
+      registry.remove("removed");
+      registry.remove("unknown");
+      assertEquals(1, registry.size());
+      // The journal is no longer locked by the removed tenant's queue
+      new SmsJournal(new File(directory, "removed")).close();
+    } finally {
+      registry.close();
+    }
+  }
+
+  private Supplier<ISmsProviderFactory> stubFactories() {
+    return new Supplier<ISmsProviderFactory>() {
+      @Override
+      public ISmsProviderFactory get() {
+        StubFactory factory = new StubFactory();
+        factories.add(factory);
+        return factory;
+      }
+    };
+  }
+
+  private static Map<String, String> queueConfiguration(File directory, String providers) {
+    Map<String, String> configuration = configuration(providers);
+    configuration.put(SmsConfigurationConstants.CONF_SMS_QUEUE_ENABLED, "true");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_QUEUE_DIRECTORY, directory.getPath());
+    configuration.put(SmsConfigurationConstants.CONF_SMS_QUEUE_MAX_ATTEMPTS, "1000");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_QUEUE_INITIAL_BACKOFF, "5");
+    configuration.put(SmsConfigurationConstants.CONF_SMS_QUEUE_MAX_BACKOFF, "10");
+    return configuration;
+  }
+
+  private static Map<String, String> configuration(String providers) {
+    Map<String, String> configuration = new HashMap<>();
+    configuration.put("sms_providers", providers);
+    return configuration;
+  }
+
+  private class StubFactory implements ISmsProviderFactory {
+
+    private volatile boolean closed;
+
+    @Override
+    public ISmsProvider create(Map<String, String> configurations) {
+      created.incrementAndGet();
+      CountDownLatch latch = building;
+      if (latch != null) {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failing) {
+        throw new IllegalStateException("gateway unavailable");
+      }
+      StubSmsProvider provider = new StubSmsProvider("id");
+      providers.add(provider);
+      return provider;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package keycloak.sms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+/**
+ * Provider that answers every message with the given message id, or fails it while {@code succeed} is false. With
+ * {@code answerImmediately} off the results stay pending until a test completes them. The results report
+ * {@code reportedLatencyNanos}, failures the error class {@code failureClass}. The texts it answered with
+ * success are kept in {@code delivered}.
+ */
+class StubSmsProvider implements ISmsProvider {
+
+  final List<CompletableFuture<SmsDeliveryResult>> pending = new ArrayList<>();
+  final List<String> delivered = new CopyOnWriteArrayList<>();
+  volatile boolean succeed = true;
+  volatile boolean answerImmediately = true;
+  volatile long latencyMillis;
+  volatile long reportedLatencyNanos = 1000000;
+  volatile SmsDeliveryResult.ErrorClass failureClass = SmsDeliveryResult.ErrorClass.HTTP_ERROR;
+  volatile int calls;
+
+  private final String messageId;
+
+  StubSmsProvider(String messageId) {
+    this.messageId = messageId;
+  }
+
+  StubSmsProvider(String messageId, boolean succeed) {
+    this(messageId);
+    this.succeed = succeed;
+  }
+
+  @Override
+  public void configure(Map<String, String> configurations) {}
+
+  @Override
+  public boolean send(String phoneNumber, String smsText) {
+    return sendAsync(phoneNumber, smsText).join().isSuccess();
+  }
+
+  @Override
+  public synchronized CompletableFuture<SmsDeliveryResult> sendAsync(String phoneNumber, String smsText) {
+    calls++;
+    CompletableFuture<SmsDeliveryResult> result = new CompletableFuture<>();
+    pending.add(result);
+    if (answerImmediately) {
+      if (latencyMillis > 0) {
+        try {
+          Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (succeed) {
+        delivered.add(smsText);
+      }
+      result.complete(succeed ? SmsDeliveryResult.success(messageId, reportedLatencyNanos)
+          : SmsDeliveryResult.failure(failureClass, "down", reportedLatencyNanos));
+    }
+    return result;
+  }
+
+  @Override
+  public List<SmsDeliveryResult> sendBatch(List<SmsMessage> messages) {
+    List<SmsDeliveryResult> results = new ArrayList<>(messages.size());
+    for (SmsMessage message : messages) {
+      results.add(sendAsync(message.getPhoneNumber(), message.getText()).join());
+    }
+    return results;
+  }
+
+  @Override
+  public void close() {}
+}